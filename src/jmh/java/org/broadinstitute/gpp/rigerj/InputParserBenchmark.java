@@ -0,0 +1,95 @@
+package org.broadinstitute.gpp.rigerj;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.broadinstitute.gpp.rigerj.impl.HairpinData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link HairpinInputFileParser} with the previous parser, which read lines with a
+ * {@link BufferedReader}, split them with {@link String#split(String)} and built a list of {@link HairpinData}.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InputParserBenchmark {
+
+    @Param({"1000000"})
+    public int numHairpins;
+
+    @Param({"5"})
+    public String geneSetSizes;
+
+    @Param({"binary"})
+    public String weights;
+
+    private File inputFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        inputFile = File.createTempFile("rigerj-benchmark", ".txt");
+        new SyntheticLibrary(numHairpins, geneSetSizes, weights, 1003).writeInputFile(inputFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        inputFile.delete();
+    }
+
+    @Benchmark
+    public List<HairpinData> splitLines() throws IOException {
+        final BufferedReader bufferedReader = new BufferedReader(new FileReader(inputFile));
+        try {
+            bufferedReader.readLine();
+            final List<HairpinData> hairpinDatas = new ArrayList<HairpinData>();
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                final String[] cells = line.split("\t", 0);
+                final int rank = Double.valueOf(cells[3]).intValue();
+                hairpinDatas.add(new HairpinData(rank,
+                                                 cells[0],
+                                                 Double.parseDouble(cells[2]),
+                                                 cells[1],
+                                                 cells.length == 5 ? Double.parseDouble(cells[4]) : 1));
+            }
+            return hairpinDatas;
+        }
+        finally {
+            bufferedReader.close();
+        }
+    }
+
+    @Benchmark
+    public HairpinInputColumns byteParser() throws IOException {
+        final FileInputStream fileInputStream = new FileInputStream(inputFile);
+        try {
+            return new HairpinInputFileParser(fileInputStream.getChannel()).parse();
+        }
+        finally {
+            fileInputStream.close();
+        }
+    }
+}
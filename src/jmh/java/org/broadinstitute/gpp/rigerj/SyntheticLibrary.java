@@ -0,0 +1,150 @@
+package org.broadinstitute.gpp.rigerj;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+import org.broadinstitute.gpp.rigerj.impl.HairpinData;
+
+/**
+ * A random hairpin library for the benchmarks, ranked by score like a real one. Genes are added until the library
+ * has the requested number of hairpins, each with a number of hairpins drawn from a gene set size distribution,
+ * given as a single size ("5"), or as an inclusive range of sizes that are all equally likely ("2-10"). The last
+ * gene may be cut short. The hairpin weights are "flat" (all 1), "binary" (0 or 1) or "uniform"
+ * (anywhere between 0 and 1). The same arguments always give the same library.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class SyntheticLibrary {
+
+    private final List<HairpinInput> hairpinInputs;
+
+    private final int numGenes;
+
+    public SyntheticLibrary(final int numHairpins, final String geneSetSizes, final String weights, final long seed) {
+        final String[] geneSetSizeRange = geneSetSizes.split("-");
+        final int minGeneSetSize = Integer.parseInt(geneSetSizeRange[0]);
+        final int maxGeneSetSize = Integer.parseInt(geneSetSizeRange[geneSetSizeRange.length - 1]);
+        final Random random = new Random(seed);
+
+        final List<double[]> scoresAndWeights = new ArrayList<double[]>();
+        final List<String> geneNames = new ArrayList<String>();
+        int gene = 0;
+        while (scoresAndWeights.size() < numHairpins) {
+            final int geneSetSize = minGeneSetSize + random.nextInt(maxGeneSetSize - minGeneSetSize + 1);
+            for (int i = 0; i < geneSetSize && scoresAndWeights.size() < numHairpins; i++) {
+                scoresAndWeights.add(new double[] { random.nextGaussian() * 2, createWeight(weights, random) });
+                geneNames.add("GENE" + gene);
+            }
+            gene++;
+        }
+        numGenes = gene;
+        final List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < scoresAndWeights.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i, Integer j) {
+                return Double.compare(scoresAndWeights.get(j)[0], scoresAndWeights.get(i)[0]);
+            }
+        });
+
+        hairpinInputs = new ArrayList<HairpinInput>();
+        for (int rank = 1; rank <= order.size(); rank++) {
+            final int i = order.get(rank - 1);
+            hairpinInputs.add(new HairpinData(rank,
+                                              "TRCN" + (10000000 + i),
+                                              scoresAndWeights.get(i)[0],
+                                              geneNames.get(i),
+                                              scoresAndWeights.get(i)[1]));
+        }
+    }
+
+    private static double createWeight(final String weights, final Random random) {
+        switch (weights) {
+        case "flat":
+            return 1;
+        case "binary":
+            return random.nextInt(2);
+        case "uniform":
+            return random.nextDouble();
+        default:
+            throw new RuntimeException("unrecognized weights: " + weights);
+        }
+    }
+
+    public int getNumHairpins() {
+        return hairpinInputs.size();
+    }
+
+    public int getNumGenes() {
+        return numGenes;
+    }
+
+    public List<HairpinInput> getHairpinInputs() {
+        return hairpinInputs;
+    }
+
+    /**
+     * Writes the library as an input file with hairpin weights
+     */
+    public void writeInputFile(final File inputFile) throws IOException {
+        final PrintWriter printWriter = new PrintWriter(inputFile);
+        try {
+            printWriter.println(HairpinInputFileParser.INPUT_HEADERS_WITH_WEIGHTS);
+            for (HairpinInput hairpinInput : hairpinInputs) {
+                printWriter.println(hairpinInput.getHairpinName() + "\t" +
+                                    hairpinInput.getGeneName() + "\t" +
+                                    String.format("%.4f", hairpinInput.getHairpinScore()) + "\t" +
+                                    hairpinInput.getHairpinRank() + "\t" +
+                                    hairpinInput.getHairpinWeight());
+            }
+        }
+        finally {
+            printWriter.close();
+        }
+    }
+
+    public RigerInputs createRigerInputs(final HairpinSetScoringMethod hairpinSetScoringMethod,
+                                         final NullDistributionMethod nullDistributionMethod,
+                                         final int numRandomScoresPerGeneSetSize) {
+        return new RigerInputs() {
+            public int getNumHairpins() {
+                return hairpinInputs.size();
+            }
+            public HairpinInput getHairpinInput(int i) {
+                return hairpinInputs.get(i);
+            }
+            public HairpinSetScoringMethod getHairpinSetScoringMethod() {
+                return hairpinSetScoringMethod;
+            }
+            public boolean flattenWeights() {
+                return false;
+            }
+            public int getNumRandomScoresPerGeneSetSize() {
+                return numRandomScoresPerGeneSetSize;
+            }
+            public double getAlpha() {
+                return 1.0;
+            }
+            public long getRandomSeed() {
+                return 1003;
+            }
+            public boolean adjustForHairpinSetSize() {
+                return true;
+            }
+            public NullDistributionMethod getNullDistributionMethod() {
+                return nullDistributionMethod;
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building a null distribution for one gene set size from its random scores, as a
+ * {@link SampledNullDistribution} (sorting the random scores) and as a {@link HistogramNullDistribution}
+ * (counting them), together with the gene set size adjustment, and looking up the p-values of the genes in each.
+ * The random and gene scores are computed ahead of time, so that only the null distributions are measured.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NullDistributionBenchmark {
+
+    @Param({"45000"})
+    public int numHairpins;
+
+    @Param({"5"})
+    public int geneSetSize;
+
+    @Param({"1000"})
+    public int numGenes;
+
+    @Param({"10000", "1000000"})
+    public int numRandomScores;
+
+    @Param({"KOLMOGOROV_SMIRNOV", "WEIGHTED_SUM", "SECOND_BEST_RANK"})
+    public HairpinSetScoringMethod hairpinSetScoringMethod;
+
+    private HairpinSetScoringAlgorithm algorithm;
+    private double[] randomScores;
+    private double[] geneScores;
+    private SampledNullDistribution sampledNullDistribution;
+    private HistogramNullDistribution histogramNullDistribution;
+
+    @Setup
+    public void setUp() {
+        algorithm = new HairpinSetScoringAlgorithmFactory().createHairpinSetScoringAlgorithm(hairpinSetScoringMethod);
+        final double[] hairpinSetWeights = new double[numHairpins];
+        final Random random = new Random(1003);
+        for (int i = 0; i < numHairpins; i++) {
+            hairpinSetWeights[i] = algorithm.computeHairpinSetWeight(random.nextGaussian(), 1, 1);
+        }
+        final RandomIndexGenerator randomIndexGenerator =
+            new RandomIndexGeneratorFactory().createRandomIndexGenerator(RandomNumberGeneratorType.LEGACY, 1003);
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(numHairpins);
+        final int[] indexes = new int[geneSetSize];
+        final double[] weights = new double[geneSetSize];
+        randomScores = new double[numRandomScores + numGenes];
+        for (int i = 0; i < randomScores.length; i++) {
+            sampler.pickSubset(randomIndexGenerator, indexes);
+            for (int j = 0; j < geneSetSize; j++) {
+                weights[j] = hairpinSetWeights[indexes[j]];
+            }
+            randomScores[i] = algorithm.scoreWeightedHairpinSet(numHairpins, indexes, weights);
+        }
+        geneScores = Arrays.copyOfRange(randomScores, numRandomScores, randomScores.length);
+        randomScores = Arrays.copyOf(randomScores, numRandomScores);
+        sampledNullDistribution = buildSampledNullDistribution();
+        histogramNullDistribution = buildHistogramNullDistribution();
+    }
+
+    @Benchmark
+    public GeneScoreAdjuster sortRandomScores() {
+        return buildSampledNullDistribution().computeGeneSetSizeAdjustment();
+    }
+
+    @Benchmark
+    public GeneScoreAdjuster countRandomScores() {
+        return buildHistogramNullDistribution().computeGeneSetSizeAdjustment();
+    }
+
+    @Benchmark
+    public double[] sampledPValues() {
+        return sampledNullDistribution.computePValues(geneScores);
+    }
+
+    @Benchmark
+    public double[] sampledPValuesOneByOne() {
+        final double[] pValues = new double[geneScores.length];
+        for (int i = 0; i < geneScores.length; i++) {
+            pValues[i] = sampledNullDistribution.computePValue(geneScores[i]);
+        }
+        return pValues;
+    }
+
+    @Benchmark
+    public double[] histogramPValues() {
+        return histogramNullDistribution.computePValues(geneScores);
+    }
+
+    private SampledNullDistribution buildSampledNullDistribution() {
+        final double[] sortedRandomScores = randomScores.clone();
+        Arrays.sort(sortedRandomScores);
+        return new SampledNullDistribution(sortedRandomScores, algorithm);
+    }
+
+    private HistogramNullDistribution buildHistogramNullDistribution() {
+        final RandomScoreHistogram histogram = new RandomScoreHistogram();
+        for (double randomScore : randomScores) {
+            histogram.add(randomScore);
+        }
+        return histogram.toNullDistribution(algorithm);
+    }
+}
@@ -0,0 +1,89 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.broadinstitute.gpp.rigerj.SyntheticLibrary;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RigerImpl#execute} end to end on a {@link SyntheticLibrary}, sequentially (numThreads 0) or on a
+ * thread pool. Null distribution methods that are not available for the scoring method are skipped by JMH, as
+ * the setup fails for them.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RigerImplBenchmark {
+
+    @Param({"45000"})
+    public int numHairpins;
+
+    @Param({"3-7"})
+    public String geneSetSizes;
+
+    @Param({"flat"})
+    public String weights;
+
+    @Param({"10000"})
+    public int numRandomScoresPerGeneSetSize;
+
+    @Param({"KOLMOGOROV_SMIRNOV", "WEIGHTED_SUM", "SECOND_BEST_RANK"})
+    public HairpinSetScoringMethod hairpinSetScoringMethod;
+
+    @Param({"SAMPLED", "HISTOGRAM", "EXACT", "PERMUTATION"})
+    public NullDistributionMethod nullDistributionMethod;
+
+    @Param({"0", "4"})
+    public int numThreads;
+
+    private RigerInputs rigerInputs;
+    private ExecutorService executorService;
+    private RigerImpl rigerImpl;
+
+    @Setup
+    public void setUp() {
+        if (nullDistributionMethod == NullDistributionMethod.EXACT &&
+            hairpinSetScoringMethod == HairpinSetScoringMethod.KOLMOGOROV_SMIRNOV) {
+            throw new IllegalStateException("there is no exact null distribution for " + hairpinSetScoringMethod);
+        }
+        rigerInputs = new SyntheticLibrary(numHairpins, geneSetSizes, weights, 1003).createRigerInputs(hairpinSetScoringMethod,
+                                                                                                        nullDistributionMethod,
+                                                                                                        numRandomScoresPerGeneSetSize);
+        executorService = numThreads == 0 ? null : Executors.newFixedThreadPool(numThreads);
+        rigerImpl = new RigerImpl(executorService);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public RigerOutputs execute() {
+        return rigerImpl.execute(rigerInputs);
+    }
+}
@@ -0,0 +1,107 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures scoring a single random hairpin set with each of the {@link HairpinSetScoringAlgorithm}s, the kernel
+ * that is run for every random score of every null distribution, one hairpin set at a time and a batch at a
+ * time. The hairpin sets are picked ahead of time, so that only the scoring is measured. Both report the time
+ * per hairpin set.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoringAlgorithmBenchmark {
+
+    private static final int NUM_HAIRPIN_SETS = 1024;
+
+    @Param({"45000"})
+    public int numHairpins;
+
+    @Param({"2", "5", "30"})
+    public int geneSetSize;
+
+    @Param({"KOLMOGOROV_SMIRNOV", "WEIGHTED_SUM", "SECOND_BEST_RANK"})
+    public HairpinSetScoringMethod hairpinSetScoringMethod;
+
+    private HairpinSetScoringAlgorithm algorithm;
+    private int[][] hairpinSetIndexes;
+    private double[][] hairpinSetWeights;
+    private int[] flatHairpinSetIndexes;
+    private double[] flatHairpinSetWeights;
+    private int[] sortedFlatHairpinSetIndexes;
+    private double[] hairpinSetScores;
+    private int nextHairpinSet;
+
+    @Setup
+    public void setUp() {
+        algorithm = new HairpinSetScoringAlgorithmFactory().createHairpinSetScoringAlgorithm(hairpinSetScoringMethod);
+        final Random random = new Random(1003);
+        final RandomIndexGenerator randomIndexGenerator = new RandomIndexGeneratorFactory().createRandomIndexGenerator(RandomNumberGeneratorType.LEGACY, 1003);
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(numHairpins);
+        hairpinSetIndexes = new int[NUM_HAIRPIN_SETS][geneSetSize];
+        hairpinSetWeights = new double[NUM_HAIRPIN_SETS][geneSetSize];
+        for (int i = 0; i < NUM_HAIRPIN_SETS; i++) {
+            sampler.pickSubset(randomIndexGenerator, hairpinSetIndexes[i]);
+            for (int j = 0; j < geneSetSize; j++) {
+                hairpinSetWeights[i][j] = algorithm.computeHairpinSetWeight(random.nextGaussian(), 1, 1);
+            }
+        }
+        flatHairpinSetIndexes = new int[NUM_HAIRPIN_SETS * geneSetSize];
+        flatHairpinSetWeights = new double[NUM_HAIRPIN_SETS * geneSetSize];
+        for (int i = 0; i < NUM_HAIRPIN_SETS; i++) {
+            System.arraycopy(hairpinSetIndexes[i], 0, flatHairpinSetIndexes, i * geneSetSize, geneSetSize);
+            System.arraycopy(hairpinSetWeights[i], 0, flatHairpinSetWeights, i * geneSetSize, geneSetSize);
+        }
+        sortedFlatHairpinSetIndexes = flatHairpinSetIndexes.clone();
+        for (int i = 0; i < NUM_HAIRPIN_SETS; i++) {
+            Arrays.sort(sortedFlatHairpinSetIndexes, i * geneSetSize, (i + 1) * geneSetSize);
+        }
+        hairpinSetScores = new double[NUM_HAIRPIN_SETS];
+    }
+
+    @Benchmark
+    public double scoreWeightedHairpinSet() {
+        final int hairpinSet = nextHairpinSet;
+        nextHairpinSet = (hairpinSet + 1) % NUM_HAIRPIN_SETS;
+        return algorithm.scoreWeightedHairpinSet(numHairpins, hairpinSetIndexes[hairpinSet], hairpinSetWeights[hairpinSet]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_HAIRPIN_SETS)
+    public double[] scoreWeightedHairpinSets() {
+        algorithm.scoreWeightedHairpinSets(numHairpins, geneSetSize, NUM_HAIRPIN_SETS, flatHairpinSetIndexes, flatHairpinSetWeights,
+                                           hairpinSetScores);
+        return hairpinSetScores;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_HAIRPIN_SETS)
+    public double[] scoreSortedWeightedHairpinSets() {
+        algorithm.scoreSortedWeightedHairpinSets(numHairpins, geneSetSize, NUM_HAIRPIN_SETS, sortedFlatHairpinSetIndexes,
+                                                 flatHairpinSetWeights, hairpinSetScores);
+        return hairpinSetScores;
+    }
+}
@@ -0,0 +1,114 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares picking a random hairpin subset with {@link RandomHairpinSubsetSampler} against the
+ * previous approach of allocating fresh arrays and a {@link HashSet} of boxed indexes for every pick,
+ * for each of the available random number generators. The set-based benchmark always uses
+ * {@link Random}, as it did before.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SubsetSamplerBenchmark {
+
+    @Param({"45000"})
+    public int numHairpins;
+
+    @Param({"2", "5", "30"})
+    public int geneSetSize;
+
+    @Param({"LEGACY", "SPLITTABLE", "XOSHIRO256", "PHILOX"})
+    public RandomNumberGeneratorType randomNumberGeneratorType;
+
+    private double[] hairpinScores;
+    private double[] hairpinWeights;
+    private Random random;
+    private RandomIndexGenerator randomIndexGenerator;
+    private RandomHairpinSubsetSampler sampler;
+    private int[] targetHairpinScoreIndexes;
+    private double[] targetHairpinScores;
+    private double[] targetHairpinWeights;
+
+    @Setup
+    public void setUp() {
+        random = new Random(1003);
+        hairpinScores = new double[numHairpins];
+        hairpinWeights = new double[numHairpins];
+        for (int i = 0; i < numHairpins; i++) {
+            hairpinScores[i] = random.nextGaussian();
+            hairpinWeights[i] = 1;
+        }
+        randomIndexGenerator = new RandomIndexGeneratorFactory().createRandomIndexGenerator(randomNumberGeneratorType, 1003);
+        sampler = new RandomHairpinSubsetSampler(numHairpins);
+        targetHairpinScoreIndexes = new int[geneSetSize];
+        targetHairpinScores = new double[geneSetSize];
+        targetHairpinWeights = new double[geneSetSize];
+    }
+
+    @Benchmark
+    public double[] hashSetRejectionSampling() {
+        final double[] scores = new double[geneSetSize];
+        final int[] indexes = new int[geneSetSize];
+        final double[] weights = new double[geneSetSize];
+        final Set<Integer> pickedHairpinScoreIndexes = new HashSet<Integer>();
+        while (pickedHairpinScoreIndexes.size() < geneSetSize) {
+            final int hairpinScoreIndex = random.nextInt(numHairpins);
+            if (pickedHairpinScoreIndexes.add(hairpinScoreIndex)) {
+                final int subsetIndex = pickedHairpinScoreIndexes.size() - 1;
+                scores[subsetIndex] = hairpinScores[hairpinScoreIndex];
+                indexes[subsetIndex] = hairpinScoreIndex;
+                weights[subsetIndex] = hairpinWeights[hairpinScoreIndex];
+            }
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public double[] reusableSampler() {
+        sampler.pickSubset(randomIndexGenerator, targetHairpinScoreIndexes);
+        for (int i = 0; i < geneSetSize; i++) {
+            targetHairpinScores[i] = hairpinScores[targetHairpinScoreIndexes[i]];
+            targetHairpinWeights[i] = hairpinWeights[targetHairpinScoreIndexes[i]];
+        }
+        return targetHairpinScores;
+    }
+
+    @Benchmark
+    public double[] sortedSampler() {
+        sampler.pickSortedSubset(randomIndexGenerator, targetHairpinScoreIndexes, 0, geneSetSize);
+        for (int i = 0; i < geneSetSize; i++) {
+            targetHairpinScores[i] = hairpinScores[targetHairpinScoreIndexes[i]];
+            targetHairpinWeights[i] = hairpinWeights[targetHairpinScoreIndexes[i]];
+        }
+        return targetHairpinScores;
+    }
+
+    @Benchmark
+    public int[] smallestTwoSampler() {
+        sampler.pickSmallestTwo(randomIndexGenerator, targetHairpinScoreIndexes, 0, geneSetSize);
+        return targetHairpinScoreIndexes;
+    }
+}
@@ -0,0 +1,191 @@
+// org.broadinstitute.gpp.rigerj.BinaryRigerOutputsReader
+
+package org.broadinstitute.gpp.rigerj;
+
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.CHARSET;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.FORMAT_VERSION;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.GENE_NAME_COLUMN;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.GENE_RANK_COLUMN;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.HAIRPIN_RANKS_COLUMN;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.MAGIC;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.P_VALUE_COLUMN;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.P_VALUE_RANK_COLUMN;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.SCORE_COLUMN;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.TYPE_FLOAT64;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.TYPE_INT32;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.TYPE_INT32_LIST;
+import static org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter.TYPE_STRING;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.broadinstitute.gpp.rigerj.api.GeneOutput;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+
+/**
+ * Reads the binary table written by {@link BinaryRigerOutputsWriter} (RigerJ's {@code -outputFormat binary})
+ * back into {@link RigerOutputs}. Columns are found by name, and columns this version does not know are
+ * skipped.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public final class BinaryRigerOutputsReader {
+
+    private final DataInputStream inputStream;
+
+    private int numGenes;
+    private int[] geneRanks;
+    private String[] geneNames;
+    private double[] geneScores;
+    private double[] pValues;
+    private int[] pValueRanks;
+    private int[] hairpinRankOffsets;
+    private int[] hairpinRanks;
+
+    private BinaryRigerOutputsReader(final InputStream inputStream) {
+        this.inputStream = new DataInputStream(new BufferedInputStream(inputStream, 1 << 16));
+    }
+
+    /**
+     * Reads a whole table from the stream. The stream is not closed.
+     */
+    public static RigerOutputs read(final InputStream inputStream) throws IOException {
+        return new BinaryRigerOutputsReader(inputStream).read();
+    }
+
+    private RigerOutputs read() throws IOException {
+        final byte[] magic = new byte[MAGIC.length];
+        inputStream.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("not a RigerJ binary output file");
+        }
+        final int formatVersion = inputStream.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("unsupported RigerJ binary output version " + formatVersion);
+        }
+        numGenes = inputStream.readInt();
+        final int numColumns = inputStream.readInt();
+        final String[] columnNames = new String[numColumns];
+        final byte[] columnTypes = new byte[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            columnNames[i] = readString();
+            columnTypes[i] = inputStream.readByte();
+        }
+        for (int i = 0; i < numColumns; i++) {
+            readColumn(columnNames[i], columnTypes[i]);
+        }
+        if (geneRanks == null || geneNames == null || geneScores == null || pValues == null ||
+            pValueRanks == null || hairpinRanks == null) {
+            throw new IOException("RigerJ binary output is missing columns");
+        }
+        return buildRigerOutputs();
+    }
+
+    private void readColumn(final String name, final byte type) throws IOException {
+        switch (type) {
+        case TYPE_INT32:
+            final int[] ints = readInts(numGenes);
+            if (GENE_RANK_COLUMN.equals(name)) {
+                geneRanks = ints;
+            }
+            else if (P_VALUE_RANK_COLUMN.equals(name)) {
+                pValueRanks = ints;
+            }
+            break;
+        case TYPE_FLOAT64:
+            final double[] doubles = new double[numGenes];
+            for (int i = 0; i < numGenes; i++) {
+                doubles[i] = inputStream.readDouble();
+            }
+            if (SCORE_COLUMN.equals(name)) {
+                geneScores = doubles;
+            }
+            else if (P_VALUE_COLUMN.equals(name)) {
+                pValues = doubles;
+            }
+            break;
+        case TYPE_STRING:
+            final String[] strings = new String[numGenes];
+            for (int i = 0; i < numGenes; i++) {
+                strings[i] = readString();
+            }
+            if (GENE_NAME_COLUMN.equals(name)) {
+                geneNames = strings;
+            }
+            break;
+        case TYPE_INT32_LIST:
+            final int[] offsets = readInts(numGenes + 1);
+            final int[] values = readInts(offsets[numGenes]);
+            if (HAIRPIN_RANKS_COLUMN.equals(name)) {
+                hairpinRankOffsets = offsets;
+                hairpinRanks = values;
+            }
+            break;
+        default:
+            throw new IOException("unknown type " + type + " for column " + name);
+        }
+    }
+
+    private int[] readInts(final int length) throws IOException {
+        final int[] ints = new int[length];
+        for (int i = 0; i < length; i++) {
+            ints[i] = inputStream.readInt();
+        }
+        return ints;
+    }
+
+    private String readString() throws IOException {
+        final byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private RigerOutputs buildRigerOutputs() {
+        return new RigerOutputs() {
+
+            public int getNumGenes() {
+                return numGenes;
+            }
+
+            public GeneOutput getGeneOutput(final int i) {
+                return new GeneOutput() {
+
+                    public int getGeneRank() {
+                        return geneRanks[i];
+                    }
+
+                    public String getGeneName() {
+                        return geneNames[i];
+                    }
+
+                    public double getGeneScore() {
+                        return geneScores[i];
+                    }
+
+                    public double getPValue() {
+                        return pValues[i];
+                    }
+
+                    public int getPValueRank() {
+                        return pValueRanks[i];
+                    }
+
+                    public String getHairpinRanks() {
+                        final StringBuilder stringBuilder = new StringBuilder();
+                        for (int hairpinRank : getSortedHairpinRanks()) {
+                            stringBuilder.append(hairpinRank).append(' ');
+                        }
+                        return stringBuilder.toString();
+                    }
+
+                    public int[] getSortedHairpinRanks() {
+                        return Arrays.copyOfRange(hairpinRanks, hairpinRankOffsets[i], hairpinRankOffsets[i + 1]);
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,123 @@
+// org.broadinstitute.gpp.rigerj.BinaryRigerOutputsWriter
+
+package org.broadinstitute.gpp.rigerj;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+
+/**
+ * Writes the outputs as a self-describing binary table, stored column by column, so that the results of many
+ * screens can be loaded without parsing text. All numbers are big-endian. The layout is:
+ *
+ * <pre>
+ * magic          4 bytes   "RGRJ"
+ * version        int32     currently 1
+ * numRows        int32     the number of genes
+ * numColumns     int32
+ * numColumns times:
+ *   name         int32 byte length, then UTF-8 bytes
+ *   type         int8      one of the TYPE_ constants
+ * numColumns times, in the same order, the values of the column:
+ *   TYPE_INT32       numRows int32
+ *   TYPE_FLOAT64     numRows float64
+ *   TYPE_STRING      numRows times an int32 byte length, then UTF-8 bytes
+ *   TYPE_INT32_LIST  numRows + 1 int32 offsets into the values, then offsets[numRows] int32 values
+ * </pre>
+ *
+ * The columns are those of the text format, in the same order, with the hairpin ranks as an int32 list.
+ * {@link BinaryRigerOutputsReader} reads the format back.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class BinaryRigerOutputsWriter implements RigerOutputsWriter {
+
+    static final byte[] MAGIC = { 'R', 'G', 'R', 'J' };
+    static final int FORMAT_VERSION = 1;
+
+    static final byte TYPE_INT32 = 1;
+    static final byte TYPE_FLOAT64 = 2;
+    static final byte TYPE_STRING = 3;
+    static final byte TYPE_INT32_LIST = 4;
+
+    static final String GENE_RANK_COLUMN = "Gene Rank";
+    static final String GENE_NAME_COLUMN = "Gene Name";
+    static final String SCORE_COLUMN = "Score";
+    static final String P_VALUE_COLUMN = "p-value";
+    static final String P_VALUE_RANK_COLUMN = "p-value Rank";
+    static final String HAIRPIN_RANKS_COLUMN = "Hairpin Ranks";
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataOutputStream outputStream;
+
+    BinaryRigerOutputsWriter(final OutputStream outputStream) {
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+    }
+
+    public void write(final RigerOutputs rigerOutputs) throws IOException {
+        final int numGenes = rigerOutputs.getNumGenes();
+        outputStream.write(MAGIC);
+        outputStream.writeInt(FORMAT_VERSION);
+        outputStream.writeInt(numGenes);
+        outputStream.writeInt(6);
+        writeColumnHeader(GENE_RANK_COLUMN, TYPE_INT32);
+        writeColumnHeader(GENE_NAME_COLUMN, TYPE_STRING);
+        writeColumnHeader(SCORE_COLUMN, TYPE_FLOAT64);
+        writeColumnHeader(P_VALUE_COLUMN, TYPE_FLOAT64);
+        writeColumnHeader(P_VALUE_RANK_COLUMN, TYPE_INT32);
+        writeColumnHeader(HAIRPIN_RANKS_COLUMN, TYPE_INT32_LIST);
+
+        for (int i = 0; i < numGenes; i++) {
+            outputStream.writeInt(rigerOutputs.getGeneOutput(i).getGeneRank());
+        }
+        for (int i = 0; i < numGenes; i++) {
+            writeString(rigerOutputs.getGeneOutput(i).getGeneName());
+        }
+        for (int i = 0; i < numGenes; i++) {
+            outputStream.writeDouble(rigerOutputs.getGeneOutput(i).getGeneScore());
+        }
+        for (int i = 0; i < numGenes; i++) {
+            outputStream.writeDouble(rigerOutputs.getGeneOutput(i).getPValue());
+        }
+        for (int i = 0; i < numGenes; i++) {
+            outputStream.writeInt(rigerOutputs.getGeneOutput(i).getPValueRank());
+        }
+        writeHairpinRanks(rigerOutputs);
+        outputStream.flush();
+    }
+
+    private void writeColumnHeader(final String name, final byte type) throws IOException {
+        writeString(name);
+        outputStream.writeByte(type);
+    }
+
+    private void writeString(final String string) throws IOException {
+        final byte[] bytes = string.getBytes(CHARSET);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private void writeHairpinRanks(final RigerOutputs rigerOutputs) throws IOException {
+        final int numGenes = rigerOutputs.getNumGenes();
+        final int[][] hairpinRanks = new int[numGenes][];
+        int offset = 0;
+        for (int i = 0; i < numGenes; i++) {
+            hairpinRanks[i] = rigerOutputs.getGeneOutput(i).getSortedHairpinRanks();
+            outputStream.writeInt(offset);
+            offset += hairpinRanks[i].length;
+        }
+        outputStream.writeInt(offset);
+        for (int[] geneHairpinRanks : hairpinRanks) {
+            for (int hairpinRank : geneHairpinRanks) {
+                outputStream.writeInt(hairpinRank);
+            }
+        }
+    }
+}
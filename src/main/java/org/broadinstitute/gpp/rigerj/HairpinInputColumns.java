@@ -0,0 +1,80 @@
+// org.broadinstitute.gpp.rigerj.HairpinInputColumns
+
+package org.broadinstitute.gpp.rigerj;
+
+import java.nio.charset.Charset;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.impl.HairpinData;
+
+/**
+ * The hairpins read from an input file by {@link HairpinInputFileParser}, stored column by column. Genes are
+ * stored as indexes into a dictionary of gene names. The hairpin names are kept as the raw bytes of the input,
+ * and only decoded into Strings when asked for, as most runs never need them.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class HairpinInputColumns {
+
+    private final int numHairpins;
+    private final Charset charset;
+
+    /**
+     * The name of hairpin i is in hairpinNameBytes from hairpinNameOffsets[i] up to hairpinNameOffsets[i + 1]
+     */
+    private final byte[] hairpinNameBytes;
+    private final int[] hairpinNameOffsets;
+    private final int[] geneIds;
+    private final String[] geneNames;
+    private final double[] hairpinScores;
+    private final int[] hairpinRanks;
+    private final double[] hairpinWeights;
+
+    HairpinInputColumns(final int numHairpins,
+                        final Charset charset,
+                        final byte[] hairpinNameBytes,
+                        final int[] hairpinNameOffsets,
+                        final int[] geneIds,
+                        final String[] geneNames,
+                        final double[] hairpinScores,
+                        final int[] hairpinRanks,
+                        final double[] hairpinWeights) {
+        this.numHairpins = numHairpins;
+        this.charset = charset;
+        this.hairpinNameBytes = hairpinNameBytes;
+        this.hairpinNameOffsets = hairpinNameOffsets;
+        this.geneIds = geneIds;
+        this.geneNames = geneNames;
+        this.hairpinScores = hairpinScores;
+        this.hairpinRanks = hairpinRanks;
+        this.hairpinWeights = hairpinWeights;
+    }
+
+    int getNumHairpins() {
+        return numHairpins;
+    }
+
+    String getHairpinName(final int i) {
+        return new String(hairpinNameBytes, hairpinNameOffsets[i], hairpinNameOffsets[i + 1] - hairpinNameOffsets[i], charset);
+    }
+
+    String getGeneName(final int i) {
+        return geneNames[geneIds[i]];
+    }
+
+    double getHairpinScore(final int i) {
+        return hairpinScores[i];
+    }
+
+    int getHairpinRank(final int i) {
+        return hairpinRanks[i];
+    }
+
+    double getHairpinWeight(final int i) {
+        return hairpinWeights[i];
+    }
+
+    HairpinInput getHairpinInput(final int i) {
+        return new HairpinData(hairpinRanks[i], getHairpinName(i), hairpinScores[i], getGeneName(i), hairpinWeights[i]);
+    }
+}
@@ -0,0 +1,416 @@
+// org.broadinstitute.gpp.rigerj.HairpinInputFileParser
+
+package org.broadinstitute.gpp.rigerj;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.broadinstitute.gpp.rigerj.api.RigerJInputException;
+
+/**
+ * Parses a tab-separated RigerJ input file from a byte channel, straight into {@link HairpinInputColumns}.
+ *
+ * <p>
+ *
+ * Lines are split on tab bytes in a reusable buffer. Numeric cells are parsed from the bytes without creating
+ * a String, unless they are in a form the fast path below does not handle, such as more than 15 significant
+ * digits, in which case {@link Double#parseDouble(String)} is used, so the parsed values are always exactly
+ * those Java would produce. Gene names are looked up in a dictionary keyed by their bytes, so only one String
+ * is created per distinct gene. Hairpin names are copied into a single byte array.
+ *
+ * <p>
+ *
+ * Malformed lines are reported as a {@link RigerJInputException} that names the line number.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class HairpinInputFileParser {
+
+    static final String INPUT_HEADERS_WITH_WEIGHTS = "Construct\tGeneSymbol\tNormalizedScore\tConstruct Rank\tHairpinWeight";
+    static final String INPUT_HEADERS_WITHOUT_WEIGHTS = "Construct\tGeneSymbol\tNormalizedScore\tConstruct Rank";
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+    private static final int INITIAL_NUM_HAIRPINS = 1 << 16;
+    private static final int MAX_NUM_FIELDS = 5;
+
+    /**
+     * Powers of ten that are exactly representable as doubles
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final ReadableByteChannel channel;
+    private byte[] bytes;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private int lineNumber;
+
+    private final int[] fieldStarts = new int[MAX_NUM_FIELDS];
+    private final int[] fieldEnds = new int[MAX_NUM_FIELDS];
+
+    private int numHairpins;
+    private byte[] hairpinNameBytes = new byte[INITIAL_NUM_HAIRPINS * 16];
+    private int numHairpinNameBytes;
+    private int[] hairpinNameOffsets = new int[INITIAL_NUM_HAIRPINS + 1];
+    private int[] geneIds = new int[INITIAL_NUM_HAIRPINS];
+    private double[] hairpinScores = new double[INITIAL_NUM_HAIRPINS];
+    private int[] hairpinRanks = new int[INITIAL_NUM_HAIRPINS];
+    private double[] hairpinWeights = new double[INITIAL_NUM_HAIRPINS];
+
+    private final GeneNameDictionary geneNameDictionary = new GeneNameDictionary();
+
+    HairpinInputFileParser(final ReadableByteChannel channel) {
+        this(channel, INITIAL_BUFFER_SIZE);
+    }
+
+    /**
+     * @param initialBufferSize the initial size of the read buffer. It grows as needed to hold the longest line.
+     */
+    HairpinInputFileParser(final ReadableByteChannel channel, final int initialBufferSize) {
+        this.channel = channel;
+        this.bytes = new byte[initialBufferSize];
+    }
+
+    HairpinInputColumns parse() throws IOException {
+        parseHeaders();
+        int lineEnd;
+        while ((lineEnd = nextLineEnd()) >= 0) {
+            parseLine(position, lineEnd);
+            position = lineEnd < limit ? lineEnd + 1 : lineEnd;
+        }
+        return new HairpinInputColumns(numHairpins,
+                                       CHARSET,
+                                       Arrays.copyOf(hairpinNameBytes, numHairpinNameBytes),
+                                       Arrays.copyOf(hairpinNameOffsets, numHairpins + 1),
+                                       Arrays.copyOf(geneIds, numHairpins),
+                                       geneNameDictionary.getGeneNames(),
+                                       Arrays.copyOf(hairpinScores, numHairpins),
+                                       Arrays.copyOf(hairpinRanks, numHairpins),
+                                       Arrays.copyOf(hairpinWeights, numHairpins));
+    }
+
+    private void parseHeaders() throws IOException {
+        final int lineEnd = nextLineEnd();
+        final String headers = lineEnd < 0 ? "" : new String(bytes, position, trimCarriageReturn(position, lineEnd) - position, CHARSET);
+        if (!headers.equals(INPUT_HEADERS_WITH_WEIGHTS) &&
+            !headers.equals(INPUT_HEADERS_WITHOUT_WEIGHTS)) {
+            throw new RigerJInputException("header line mismatch. " +
+                                           "expected: " + INPUT_HEADERS_WITH_WEIGHTS + "\n" +
+                                           "or: " + INPUT_HEADERS_WITHOUT_WEIGHTS + "\n" +
+                                           "got: " + headers);
+        }
+        position = lineEnd < limit ? lineEnd + 1 : lineEnd;
+    }
+
+    /**
+     * Makes sure the next line is entirely in the buffer, starting at {@link #position}, reading more input as
+     * needed.
+     *
+     * @return the index of the newline ending the line, or {@link #limit} if the input ends without one, or -1
+     * if there are no more lines
+     */
+    private int nextLineEnd() throws IOException {
+        int scanFrom = position;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    lineNumber++;
+                    return i;
+                }
+            }
+            if (endOfInput) {
+                if (position < limit) {
+                    lineNumber++;
+                    return limit;
+                }
+                return -1;
+            }
+            scanFrom = limit - position;
+            fillBuffer();
+        }
+    }
+
+    /**
+     * Moves the unparsed bytes to the front of the buffer, growing it if it is already full, and reads more input
+     * after them.
+     */
+    private void fillBuffer() throws IOException {
+        final int numUnparsed = limit - position;
+        if (numUnparsed == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        else {
+            System.arraycopy(bytes, position, bytes, 0, numUnparsed);
+        }
+        position = 0;
+        limit = numUnparsed;
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, limit, bytes.length - limit);
+        final int numRead = channel.read(byteBuffer);
+        if (numRead < 0) {
+            endOfInput = true;
+        }
+        else {
+            limit += numRead;
+        }
+    }
+
+    private int trimCarriageReturn(final int lineStart, final int lineEnd) {
+        return lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private void parseLine(final int lineStart, final int untrimmedLineEnd) {
+        final int lineEnd = trimCarriageReturn(lineStart, untrimmedLineEnd);
+        if (lineEnd == lineStart) {
+            return;
+        }
+        final int numFields = splitFields(lineStart, lineEnd);
+        if (numFields != 4 && numFields != 5) {
+            throw malformedLine("expected 4 or 5 tab-separated fields, got " + (numFields > MAX_NUM_FIELDS ? "more" : numFields));
+        }
+        ensureHairpinCapacity();
+        appendHairpinName(fieldStarts[0], fieldEnds[0]);
+        geneIds[numHairpins] = geneNameDictionary.lookUp(bytes, fieldStarts[1], fieldEnds[1]);
+        hairpinScores[numHairpins] = parseDouble(2, "NormalizedScore");
+        hairpinRanks[numHairpins] = parseRank(3);
+        hairpinWeights[numHairpins] = numFields == 5 ? parseDouble(4, "HairpinWeight") : 1;
+        numHairpins++;
+    }
+
+    /**
+     * Finds the fields of the line, ignoring trailing empty fields, as {@link String#split(String)} does.
+     *
+     * @return the number of fields, or {@link #MAX_NUM_FIELDS} + 1 if there are too many
+     */
+    private int splitFields(final int lineStart, final int lineEnd) {
+        int numFields = 0;
+        int fieldStart = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i == lineEnd || bytes[i] == '\t') {
+                if (numFields == MAX_NUM_FIELDS) {
+                    if (i > fieldStart) {
+                        return MAX_NUM_FIELDS + 1;
+                    }
+                }
+                else {
+                    fieldStarts[numFields] = fieldStart;
+                    fieldEnds[numFields] = i;
+                    numFields++;
+                }
+                fieldStart = i + 1;
+            }
+        }
+        while (numFields > 0 && fieldStarts[numFields - 1] == fieldEnds[numFields - 1]) {
+            numFields--;
+        }
+        return numFields;
+    }
+
+    private void ensureHairpinCapacity() {
+        if (numHairpins == hairpinScores.length) {
+            final int capacity = hairpinScores.length * 2;
+            hairpinNameOffsets = Arrays.copyOf(hairpinNameOffsets, capacity + 1);
+            geneIds = Arrays.copyOf(geneIds, capacity);
+            hairpinScores = Arrays.copyOf(hairpinScores, capacity);
+            hairpinRanks = Arrays.copyOf(hairpinRanks, capacity);
+            hairpinWeights = Arrays.copyOf(hairpinWeights, capacity);
+        }
+    }
+
+    private void appendHairpinName(final int start, final int end) {
+        final int length = end - start;
+        if (numHairpinNameBytes + length > hairpinNameBytes.length) {
+            hairpinNameBytes = Arrays.copyOf(hairpinNameBytes, Math.max(hairpinNameBytes.length * 2, numHairpinNameBytes + length));
+        }
+        System.arraycopy(bytes, start, hairpinNameBytes, numHairpinNameBytes, length);
+        numHairpinNameBytes += length;
+        hairpinNameOffsets[numHairpins + 1] = numHairpinNameBytes;
+    }
+
+    /**
+     * Ranks are usually plain integers. Anything else is parsed as a double and truncated, as earlier versions did.
+     */
+    private int parseRank(final int field) {
+        final int start = fieldStarts[field];
+        final int end = fieldEnds[field];
+        if (end > start && end - start <= 9) {
+            int rank = 0;
+            int i = start;
+            for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                rank = rank * 10 + (bytes[i] - '0');
+            }
+            if (i == end) {
+                return rank;
+            }
+        }
+        return (int) parseDoubleSlowly(field, "Construct Rank");
+    }
+
+    /**
+     * Parses decimals of at most 15 significant digits with a decimal exponent of at most 22 in magnitude from
+     * the bytes. Both the mantissa and the power of ten are then exact doubles, so a single multiplication or
+     * division gives the correctly rounded result, the same as {@link Double#parseDouble(String)}.
+     */
+    private double parseDouble(final int field, final String fieldName) {
+        final int start = fieldStarts[field];
+        final int end = fieldEnds[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            final byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                numDigits++;
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    return parseDoubleSlowly(field, fieldName);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenPoint) {
+                    exponent--;
+                }
+            }
+            else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            }
+            else {
+                break;
+            }
+        }
+        if (numDigits == 0) {
+            return parseDoubleSlowly(field, fieldName);
+        }
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            int numExponentDigits = 0;
+            for (; i < end && bytes[i] >= '0' && bytes[i] <= '9' && numExponentDigits < 4; i++, numExponentDigits++) {
+                explicitExponent = explicitExponent * 10 + (bytes[i] - '0');
+            }
+            if (numExponentDigits == 0) {
+                return parseDoubleSlowly(field, fieldName);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end || exponent < -22 || exponent > 22) {
+            return parseDoubleSlowly(field, fieldName);
+        }
+        double value = mantissa;
+        if (exponent < 0) {
+            value /= EXACT_POWERS_OF_TEN[-exponent];
+        }
+        else {
+            value *= EXACT_POWERS_OF_TEN[exponent];
+        }
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlowly(final int field, final String fieldName) {
+        final String cell = new String(bytes, fieldStarts[field], fieldEnds[field] - fieldStarts[field], CHARSET);
+        try {
+            return Double.parseDouble(cell);
+        }
+        catch (NumberFormatException e) {
+            throw malformedLine("cannot parse " + fieldName + " \"" + cell + "\" as a number");
+        }
+    }
+
+    private RigerJInputException malformedLine(final String problem) {
+        return new RigerJInputException("malformed input on line " + lineNumber + ": " + problem);
+    }
+
+    /**
+     * An open-addressing hash table from the bytes of a gene name to the gene id, which is the index of the gene
+     * name in the order genes were first seen
+     */
+    private static final class GeneNameDictionary {
+
+        private byte[][] keys = new byte[1 << 12][];
+        private int[] values = new int[1 << 12];
+        private String[] geneNames = new String[1 << 11];
+        private int size;
+
+        int lookUp(final byte[] bytes, final int start, final int end) {
+            final int mask = keys.length - 1;
+            int slot = hash(bytes, start, end) & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], bytes, start, end)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            final int geneId = size;
+            if (geneId == geneNames.length) {
+                geneNames = Arrays.copyOf(geneNames, geneNames.length * 2);
+            }
+            geneNames[geneId] = new String(bytes, start, end - start, CHARSET);
+            keys[slot] = Arrays.copyOfRange(bytes, start, end);
+            values[slot] = geneId;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return geneId;
+        }
+
+        String[] getGeneNames() {
+            return Arrays.copyOf(geneNames, size);
+        }
+
+        private static int hash(final byte[] bytes, final int start, final int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean matches(final byte[] key, final byte[] bytes, final int start, final int end) {
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != bytes[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            final byte[][] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new int[oldKeys.length * 2];
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = hash(oldKeys[i], 0, oldKeys[i].length) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
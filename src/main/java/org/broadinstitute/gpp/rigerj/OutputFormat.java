@@ -0,0 +1,31 @@
+// org.broadinstitute.gpp.rigerj.OutputFormat
+
+package org.broadinstitute.gpp.rigerj;
+
+/**
+ * An enumeration of the formats {@link RigerJMain} can write its results in.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+enum OutputFormat {
+
+    /**
+     * Tab-separated text, one line per gene. See {@link TextRigerOutputsWriter}.
+     */
+    TEXT("text"),
+
+    /**
+     * A self-describing binary table, stored column by column. See {@link BinaryRigerOutputsWriter}.
+     */
+    BINARY("binary");
+
+    private final String parameterName;
+
+    OutputFormat(final String parameterName) {
+        this.parameterName = parameterName;
+    }
+
+    public String getParameterName() {
+        return parameterName;
+    }
+}
@@ -0,0 +1,95 @@
+// org.broadinstitute.gpp.rigerj.ProfilingRigerMetricsListener
+
+package org.broadinstitute.gpp.rigerj;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.broadinstitute.gpp.rigerj.api.RigerMetricsListener;
+import org.broadinstitute.gpp.rigerj.api.RigerPhase;
+
+/**
+ * Collects the metrics of one RIGER execution, together with the time it took to read its input and write
+ * its output, for the timing breakdown {@link RigerJMain} prints with -profile.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class ProfilingRigerMetricsListener implements RigerMetricsListener {
+
+    private long readNanos;
+    private long executeNanos;
+    private long writeNanos;
+    private final Map<RigerPhase,Long> phaseNanos = new EnumMap<RigerPhase,Long>(RigerPhase.class);
+    private final Map<Integer,String> nullDistributionReports = new TreeMap<Integer,String>();
+    private long numRandomScores;
+    private long numRejectedDraws;
+    private long numBytesAllocated;
+    private long nullDistributionNanos;
+
+    void readFinished(final long elapsedNanos) {
+        readNanos = elapsedNanos;
+    }
+
+    void executeFinished(final long elapsedNanos) {
+        executeNanos = elapsedNanos;
+    }
+
+    void writeFinished(final long elapsedNanos) {
+        writeNanos = elapsedNanos;
+    }
+
+    long getReadNanos() {
+        return readNanos;
+    }
+
+    long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    long getWriteNanos() {
+        return writeNanos;
+    }
+
+    public synchronized void phaseFinished(final RigerPhase phase, final long elapsedNanos) {
+        phaseNanos.put(phase, elapsedNanos);
+    }
+
+    public synchronized void nullDistributionComputed(final int geneSetSize,
+                                                      final int numRandomScores,
+                                                      final long numRejectedDraws,
+                                                      final long numBytesAllocated,
+                                                      final long elapsedNanos) {
+        this.numRandomScores += numRandomScores;
+        this.numRejectedDraws += numRejectedDraws;
+        this.numBytesAllocated += numBytesAllocated;
+        this.nullDistributionNanos += elapsedNanos;
+        nullDistributionReports.put(geneSetSize, "gene set size " + geneSetSize + ": " +
+                                                 numRandomScores + " random scores, " +
+                                                 numRejectedDraws + " rejected draws, " +
+                                                 numBytesAllocated / 1024 + " KB, " +
+                                                 elapsedNanos / 1000000 + " ms");
+    }
+
+    /**
+     * @return the lines of the timing breakdown
+     */
+    synchronized List<String> getReport() {
+        final List<String> report = new ArrayList<String>();
+        report.add("read input: " + readNanos / 1000000 + " ms");
+        report.add("execute: " + executeNanos / 1000000 + " ms");
+        for (Map.Entry<RigerPhase,Long> entry : phaseNanos.entrySet()) {
+            report.add("    " + entry.getKey().getDescription() + ": " + entry.getValue() / 1000000 + " ms");
+        }
+        report.add("write output: " + writeNanos / 1000000 + " ms");
+        report.add("null distributions: " + nullDistributionReports.size() + " computed, " +
+                   numRandomScores + " random scores, " +
+                   numRejectedDraws + " rejected draws, " +
+                   numBytesAllocated / (1024 * 1024) + " MB, " +
+                   nullDistributionNanos / 1000000 + " ms over all threads");
+        report.addAll(nullDistributionReports.values());
+        return report;
+    }
+}
@@ -3,14 +3,26 @@
 package org.broadinstitute.gpp.rigerj;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -18,13 +30,15 @@ import org.apache.commons.cli.GnuParser;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.broadinstitute.gpp.rigerj.api.GeneOutput;
 import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetSamplingMethod;
 import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
 import org.broadinstitute.gpp.rigerj.api.RigerInputs;
 import org.broadinstitute.gpp.rigerj.api.RigerJInputException;
 import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
-import org.broadinstitute.gpp.rigerj.impl.HairpinData;
+import org.broadinstitute.gpp.rigerj.impl.NullDistributionCache;
 import org.broadinstitute.gpp.rigerj.impl.RigerImpl;
 
 /**
@@ -38,16 +52,31 @@ public class RigerJMain {
         "RigerJ 2.0.1\n\n" +
         "For usage instructions, see https://github.com/broadinstitute/rigerj";
 
-    private static final String INPUT_HEADERS_WITH_WEIGHTS = "Construct\tGeneSymbol\tNormalizedScore\tConstruct Rank\tHairpinWeight";
-    private static final String INPUT_HEADERS_WITHOUT_WEIGHTS = "Construct\tGeneSymbol\tNormalizedScore\tConstruct Rank";
-    private static final String OUTPUT_HEADERS = "Gene Rank\tGene Name\tScore\tp-value\tp-value Rank\tHairpin Ranks";
-    
     private static final String DEFAULT_SCORING_METHOD = HairpinSetScoringMethod.KOLMOGOROV_SMIRNOV.getParameterName();
     private static final boolean DEFAULT_FLATTEN_WEIGHTS = true;
     private static final int DEFAULT_NUM_RANDOM_GENES_PER_SET_SIZE = 10000;
     private static final double DEFAULT_ALPHA = 1.0;
     private static final long DEFAULT_RANDOM_SEED = new Date().getTime();
     private static final boolean DEFAULT_ADJUST_FOR_HAIRPIN_SET_SIZE = true;
+    private static final String DEFAULT_RANDOM_NUMBER_GENERATOR = RandomNumberGeneratorType.LEGACY.getParameterName();
+    private static final String DEFAULT_HAIRPIN_SET_SAMPLING_METHOD = HairpinSetSamplingMethod.REJECTION.getParameterName();
+    private static final String DEFAULT_NULL_DISTRIBUTION_METHOD = NullDistributionMethod.SAMPLED.getParameterName();
+    private static final double DEFAULT_ADAPTIVE_PRECISION = 0.1;
+    private static final int DEFAULT_MAX_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE = 1000000;
+    private static final int DEFAULT_NUM_PERMUTATIONS = 1000;
+    private static final String DEFAULT_OUTPUT_FORMAT = OutputFormat.TEXT.getParameterName();
+    private static final int DEFAULT_NUM_JOBS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_NULL_DISTRIBUTION_CACHE_SIZE = 256;
+
+    /**
+     * The options that are not passed on to the jobs of a batch: those that configure the batch as a whole, and the
+     * files that every job must give itself
+     */
+    private static final List<String> BATCH_OPTIONS = Arrays.asList("help", "version", "batchFile", "numJobs", "numThreads",
+                                                                    "inputFile", "outputFile",
+                                                                    "splitGeneSetSizes",
+                                                                    "nullDistributionCacheDir", "nullDistributionCacheSize",
+                                                                    "profile");
 
     private static CommandLine commandLine;
 
@@ -123,6 +152,88 @@ public class RigerJMain {
                           .type(Number.class)
                           .required(false)
                           .build());
+        options.addOption(Option.builder()
+                          .longOpt("rng")
+                          .hasArg(true)
+                          .type(String.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("sampling")
+                          .hasArg(true)
+                          .type(String.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("nullDistribution")
+                          .hasArg(true)
+                          .type(String.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("adaptivePrecision")
+                          .hasArg(true)
+                          .type(Number.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("maxNumRandomScoresPerGeneSetSize")
+                          .hasArg(true)
+                          .type(Number.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("numPermutations")
+                          .hasArg(true)
+                          .type(Number.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("outputFormat")
+                          .hasArg(true)
+                          .type(String.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("numThreads")
+                          .hasArg(true)
+                          .type(Number.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("splitGeneSetSizes")
+                          .hasArg(false)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("batchFile")
+                          .hasArg(true)
+                          .type(String.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("numJobs")
+                          .hasArg(true)
+                          .type(Number.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("nullDistributionCacheDir")
+                          .hasArg(true)
+                          .type(String.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("nullDistributionCacheSize")
+                          .hasArg(true)
+                          .type(Number.class)
+                          .required(false)
+                          .build());
+        options.addOption(Option.builder()
+                          .longOpt("profile")
+                          .hasArg(false)
+                          .required(false)
+                          .build());
         return options;
     }
 
@@ -140,33 +251,286 @@ public class RigerJMain {
     }
 
     private static void runRigerJ() throws Exception {
-        final RigerInputs rigerInputs = buildRigerInputs();
-        final RigerImpl rigerImpl = new RigerImpl();
+        if (commandLine.hasOption("batchFile")) {
+            runBatch();
+            return;
+        }
+        final ExecutorService executorService = createExecutorService(commandLine);
+        final NullDistributionCache nullDistributionCache = createNullDistributionCache(false);
+        final RigerImpl rigerImpl = new RigerImpl(executorService, nullDistributionCache, commandLine.hasOption("splitGeneSetSizes"));
         try {
-            final RigerOutputs rigerOutputs = rigerImpl.execute(rigerInputs);
-            writeRigerOutputsToFile(rigerOutputs);
+            final ProfilingRigerMetricsListener metricsListener = new ProfilingRigerMetricsListener();
+            final RigerOutputs rigerOutputs = runJob(rigerImpl, commandLine, metricsListener);
+            if (getNullDistributionMethod(commandLine) == NullDistributionMethod.ADAPTIVE) {
+                reportNumRandomScores(rigerOutputs);
+            }
+            if (commandLine.hasOption("profile")) {
+                for (String line : metricsListener.getReport()) {
+                    System.err.println(line);
+                }
+                reportNullDistributionCache(nullDistributionCache);
+            }
         }
         catch (RigerJInputException e) {
             System.err.println(e.getMessage());
             System.exit(1);
         }
+        finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @return a thread pool of the size requested with -numThreads, or null if the option was not
+     * given, in which case the null distributions are computed sequentially
+     */
+    private static ExecutorService createExecutorService(final CommandLine commandLine) throws ParseException {
+        final Number numThreads = (Number) commandLine.getParsedOptionValue("numThreads");
+        if (numThreads == null) {
+            return null;
+        }
+        if (numThreads.intValue() < 1) {
+            System.err.println("numThreads must be at least 1, got " + numThreads);
+            System.exit(1);
+        }
+        return Executors.newFixedThreadPool(numThreads.intValue());
+    }
+
+    /**
+     * Reads the input, executes RIGER on it and writes the output, reporting the metrics of all three to the listener
+     */
+    private static RigerOutputs runJob(final RigerImpl rigerImpl,
+                                       final CommandLine commandLine,
+                                       final ProfilingRigerMetricsListener metricsListener) throws Exception {
+        final long startTime = System.nanoTime();
+        final HairpinInputColumns hairpinInputColumns = readHairpinInputColumns(commandLine);
+        metricsListener.readFinished(System.nanoTime() - startTime);
+        final long readTime = System.nanoTime();
+        final RigerOutputs rigerOutputs = rigerImpl.execute(buildRigerInputs(commandLine, hairpinInputColumns), metricsListener);
+        final long executeTime = System.nanoTime();
+        metricsListener.executeFinished(executeTime - readTime);
+        writeRigerOutputsToFile(commandLine, rigerOutputs);
+        metricsListener.writeFinished(System.nanoTime() - executeTime);
+        return rigerOutputs;
+    }
+
+    private static void reportNullDistributionCache(final NullDistributionCache nullDistributionCache) {
+        if (nullDistributionCache != null) {
+            System.err.println("null distribution cache: " + nullDistributionCache.getNumHits() + " hits, " +
+                               nullDistributionCache.getNumMisses() + " misses");
+        }
+    }
+
+    private static void reportNumRandomScores(final RigerOutputs rigerOutputs) {
+        for (Map.Entry<Integer,Integer> entry : rigerOutputs.getNumRandomScoresByGeneSetSize().entrySet()) {
+            System.err.println("gene set size " + entry.getKey() + ": " + entry.getValue() + " random scores");
+        }
+    }
+
+    /**
+     * Runs all the jobs listed in the -batchFile in this JVM, sharing one {@link RigerImpl}. Every line of the
+     * batch file, other than blank lines and lines starting with #, holds the options of one job, separated by
+     * whitespace. Options given on the command line apply to every job that does not give them itself. Up to
+     * -numJobs jobs run at once, and the timings of each job are reported on STDERR when it is done.
+     */
+    private static void runBatch() throws Exception {
+        final List<CommandLine> jobCommandLines = readBatchFile(commandLine.getOptionValue("batchFile"));
+        final ExecutorService executorService = createExecutorService(commandLine);
+        final ExecutorService jobExecutorService = Executors.newFixedThreadPool(getNumJobs(commandLine));
+        final NullDistributionCache nullDistributionCache = createNullDistributionCache(true);
+        final RigerImpl rigerImpl = new RigerImpl(executorService, nullDistributionCache, commandLine.hasOption("splitGeneSetSizes"));
+        boolean allJobsSucceeded = true;
+        try {
+            final List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (final CommandLine jobCommandLine : jobCommandLines) {
+                futures.add(jobExecutorService.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return runBatchJob(rigerImpl, jobCommandLine);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    System.err.println("job " + (i + 1) + ": " + futures.get(i).get());
+                }
+                catch (ExecutionException e) {
+                    allJobsSucceeded = false;
+                    final Throwable cause = e.getCause();
+                    System.err.println("job " + (i + 1) + " failed: " +
+                                       (cause instanceof RigerJInputException ? cause.getMessage() : cause.toString()));
+                }
+            }
+        }
+        finally {
+            jobExecutorService.shutdownNow();
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+        if (commandLine.hasOption("profile")) {
+            reportNullDistributionCache(nullDistributionCache);
+        }
+        if (!allJobsSucceeded) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return a description of the job and the time it spent reading, executing and writing, followed by the
+     * timing breakdown of the job with -profile
+     */
+    private static String runBatchJob(final RigerImpl rigerImpl, final CommandLine jobCommandLine) throws Exception {
+        final ProfilingRigerMetricsListener metricsListener = new ProfilingRigerMetricsListener();
+        final RigerOutputs rigerOutputs = runJob(rigerImpl, jobCommandLine, metricsListener);
+        final StringBuilder description = new StringBuilder();
+        description.append(jobCommandLine.getOptionValue("inputFile") + " -> " + jobCommandLine.getOptionValue("outputFile") +
+                           ": read " + metricsListener.getReadNanos() / 1000000 + " ms" +
+                           ", execute " + metricsListener.getExecuteNanos() / 1000000 + " ms" +
+                           ", write " + metricsListener.getWriteNanos() / 1000000 + " ms" +
+                           ", " + countRandomScores(rigerOutputs) + " random scores");
+        if (commandLine.hasOption("profile")) {
+            for (String line : metricsListener.getReport()) {
+                description.append(System.lineSeparator()).append("    ").append(line);
+            }
+        }
+        return description.toString();
+    }
+
+    private static long countRandomScores(final RigerOutputs rigerOutputs) {
+        long numRandomScores = 0;
+        for (int numRandomScoresForGeneSetSize : rigerOutputs.getNumRandomScoresByGeneSetSize().values()) {
+            numRandomScores += numRandomScoresForGeneSetSize;
+        }
+        return numRandomScores;
+    }
+
+    private static List<CommandLine> readBatchFile(final String batchFilename) throws IOException, ParseException {
+        final Options options = initializeOptions();
+        final List<CommandLine> jobCommandLines = new ArrayList<CommandLine>();
+        final Map<String, Integer> outputFileLineNumbers = new HashMap<String, Integer>();
+        final BufferedReader bufferedReader = new BufferedReader(new FileReader(batchFilename));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = bufferedReader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final CommandLine jobCommandLine = parseCommandLine(buildJobArgs(line.split("\\s+"), options), options);
+                checkBatchJobOptions(jobCommandLine, batchFilename, lineNumber);
+                final String outputFile = new File(jobCommandLine.getOptionValue("outputFile")).getCanonicalPath();
+                final Integer otherLineNumber = outputFileLineNumbers.put(outputFile, lineNumber);
+                if (otherLineNumber != null) {
+                    System.err.println("batch jobs on lines " + otherLineNumber + " and " + lineNumber + " of " +
+                                       batchFilename + " both write to " + outputFile);
+                    System.exit(1);
+                }
+                jobCommandLines.add(jobCommandLine);
+            }
+        }
+        finally {
+            bufferedReader.close();
+        }
+        return jobCommandLines;
+    }
+
+    /**
+     * @return the options of the job, followed by those of the command line options the job does not give itself
+     */
+    private static String[] buildJobArgs(final String[] jobArgs, final Options options) throws ParseException {
+        final CommandLine jobOnlyCommandLine = parseCommandLine(jobArgs, options);
+        final List<String> args = new ArrayList<String>(Arrays.asList(jobArgs));
+        for (Option option : commandLine.getOptions()) {
+            final String name = option.getLongOpt();
+            if (!BATCH_OPTIONS.contains(name) && !jobOnlyCommandLine.hasOption(name)) {
+                args.add("-" + name);
+                if (option.hasArg()) {
+                    args.add(option.getValue());
+                }
+            }
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * Reads all the options of the job up front, so that a bad option stops the batch before any job is run.
+     */
+    private static void checkBatchJobOptions(final CommandLine jobCommandLine,
+                                             final String batchFilename,
+                                             final int lineNumber) throws ParseException {
+        if (!jobCommandLine.hasOption("inputFile") || !jobCommandLine.hasOption("outputFile")) {
+            System.err.println("batch job on line " + lineNumber + " of " + batchFilename +
+                               " must give both an inputFile and an outputFile");
+            System.exit(1);
+        }
+        getHairpinSetScoringMethod(jobCommandLine);
+        getFlattenWeights(jobCommandLine);
+        getNumRandomGenesPerSetSize(jobCommandLine);
+        getAlpha(jobCommandLine);
+        getRandomSeed(jobCommandLine);
+        getAdjustForHairpinSetSize(jobCommandLine);
+        getRandomNumberGeneratorType(jobCommandLine);
+        getHairpinSetSamplingMethod(jobCommandLine);
+        getNullDistributionMethod(jobCommandLine);
+        getAdaptivePrecision(jobCommandLine);
+        getMaxNumRandomScoresPerGeneSetSize(jobCommandLine);
+        getNumPermutations(jobCommandLine);
+        getOutputFormat(jobCommandLine);
+    }
+
+    private static int getNumJobs(final CommandLine commandLine) throws ParseException {
+        final Number numJobs = (Number) commandLine.getParsedOptionValue("numJobs");
+        if (numJobs == null) {
+            return DEFAULT_NUM_JOBS;
+        }
+        if (numJobs.intValue() < 1) {
+            System.err.println("numJobs must be at least 1, got " + numJobs);
+            System.exit(1);
+        }
+        return numJobs.intValue();
+    }
+
+    /**
+     * The jobs of a batch share an in-memory cache of null distributions. Null distributions are also stored
+     * in the -nullDistributionCacheDir, if given, so that later runs can use them.
+     *
+     * @return the cache, or null if null distributions are not to be cached
+     */
+    private static NullDistributionCache createNullDistributionCache(final boolean batch) throws ParseException {
+        final String directoryName = commandLine.getOptionValue("nullDistributionCacheDir");
+        if (directoryName == null && !batch) {
+            return null;
+        }
+        final Number cacheSize = (Number) commandLine.getParsedOptionValue("nullDistributionCacheSize");
+        final int maxEntries = cacheSize == null ? DEFAULT_NULL_DISTRIBUTION_CACHE_SIZE : cacheSize.intValue();
+        return new NullDistributionCache(maxEntries, directoryName == null ? null : new File(directoryName));
     }
 
-    private static RigerInputs buildRigerInputs() throws Exception {
-        final List<HairpinData> hairpinDatas = createHairpinDatas();
-        final HairpinSetScoringMethod hairpinSetScoringMethod = getHairpinSetScoringMethod();
-        final boolean flattenWeights = getFlattenWeights();
-        final int numRandomScoresPerGeneSetSize = getNumRandomGenesPerSetSize();
-        final double alpha = getAlpha();
-        final long randomSeed = getRandomSeed();
-        final boolean adjustForHairpinSetSize = getAdjustForHairpinSetSize();
+    private static RigerInputs buildRigerInputs(final CommandLine commandLine,
+                                                final HairpinInputColumns hairpinInputColumns) throws Exception {
+        final HairpinSetScoringMethod hairpinSetScoringMethod = getHairpinSetScoringMethod(commandLine);
+        final boolean flattenWeights = getFlattenWeights(commandLine);
+        final int numRandomScoresPerGeneSetSize = getNumRandomGenesPerSetSize(commandLine);
+        final double alpha = getAlpha(commandLine);
+        final long randomSeed = getRandomSeed(commandLine);
+        final boolean adjustForHairpinSetSize = getAdjustForHairpinSetSize(commandLine);
+        final RandomNumberGeneratorType randomNumberGeneratorType = getRandomNumberGeneratorType(commandLine);
+        final HairpinSetSamplingMethod hairpinSetSamplingMethod = getHairpinSetSamplingMethod(commandLine);
+        final NullDistributionMethod nullDistributionMethod = getNullDistributionMethod(commandLine);
+        final double adaptivePrecision = getAdaptivePrecision(commandLine);
+        final int maxNumRandomScoresPerGeneSetSize = getMaxNumRandomScoresPerGeneSetSize(commandLine);
+        final int numPermutations = getNumPermutations(commandLine);
 
         return new RigerInputs() {
             public int getNumHairpins() {
-                return hairpinDatas.size();
+                return hairpinInputColumns.getNumHairpins();
             }
             public HairpinInput getHairpinInput(int i) {
-                return hairpinDatas.get(i);
+                return hairpinInputColumns.getHairpinInput(i);
             }
             public HairpinSetScoringMethod getHairpinSetScoringMethod() {
                 return hairpinSetScoringMethod;
@@ -186,53 +550,48 @@ public class RigerJMain {
             public boolean adjustForHairpinSetSize() {
                 return adjustForHairpinSetSize;
             }
+            public RandomNumberGeneratorType getRandomNumberGeneratorType() {
+                return randomNumberGeneratorType;
+            }
+            public HairpinSetSamplingMethod getHairpinSetSamplingMethod() {
+                return hairpinSetSamplingMethod;
+            }
+            public NullDistributionMethod getNullDistributionMethod() {
+                return nullDistributionMethod;
+            }
+            public double getAdaptiveRelativePrecision() {
+                return adaptivePrecision;
+            }
+            public int getMaxNumRandomScoresPerGeneSetSize() {
+                return maxNumRandomScoresPerGeneSetSize;
+            }
+            public int getNumPermutations() {
+                return numPermutations;
+            }
         };
     }
 
-    private static List<HairpinData> createHairpinDatas() throws IOException {
-        BufferedReader bufferedReader = getBufferedReader();
-        parseHeaders(bufferedReader);
-        List<HairpinData> hairpinDatas = new ArrayList<HairpinData>();
-        while (true) {
-            String line = bufferedReader.readLine();
-            if (line == null) {
-                break;
-            }
-            String[] cells = line.split("\t", 0);
-            int rank = Double.valueOf(cells[3]).intValue();
-            hairpinDatas.add(new HairpinData(rank,
-                                             cells[0],
-                                             Double.parseDouble(cells[2]),
-                                             cells[1],
-                                             cells.length == 5 ? Double.parseDouble(cells[4]) : 1));
-            
+    private static HairpinInputColumns readHairpinInputColumns(final CommandLine commandLine) throws IOException {
+        final ReadableByteChannel channel = getInputChannel(commandLine);
+        try {
+            return new HairpinInputFileParser(channel).parse();
+        }
+        finally {
+            channel.close();
         }
-        return hairpinDatas;
     }
 
-    private static BufferedReader getBufferedReader() throws FileNotFoundException {
+    private static ReadableByteChannel getInputChannel(final CommandLine commandLine) throws FileNotFoundException {
         String inputFilename = commandLine.getOptionValue("inputFile");
         if (inputFilename != null) {
-            return new BufferedReader(new FileReader(inputFilename));
+            return new FileInputStream(inputFilename).getChannel();
         }
         else {
-            return new BufferedReader(new InputStreamReader(System.in));            
-        }
-    }
-
-    private static void parseHeaders(BufferedReader bufferedReader) throws IOException {
-        String headers = bufferedReader.readLine();
-        if (!headers.equals(INPUT_HEADERS_WITH_WEIGHTS) &&
-            !headers.equals(INPUT_HEADERS_WITHOUT_WEIGHTS)) {
-            System.err.println("header line mismatch. " +
-                               "expected: " + INPUT_HEADERS_WITH_WEIGHTS + "\n" +
-                               "or: " + INPUT_HEADERS_WITHOUT_WEIGHTS + "\n" +
-                               "got: " + headers);
-            System.exit(1);
+            return Channels.newChannel(System.in);
         }
     }
 
-    private static HairpinSetScoringMethod getHairpinSetScoringMethod() {
+    private static HairpinSetScoringMethod getHairpinSetScoringMethod(final CommandLine commandLine) {
         String scoringMethodParameter = commandLine.getOptionValue("scoringMethod");
         if (scoringMethodParameter == null) {
             scoringMethodParameter = DEFAULT_SCORING_METHOD;
@@ -247,7 +606,7 @@ public class RigerJMain {
         return null;
     }
 
-    private static boolean getFlattenWeights() throws ParseException {
+    private static boolean getFlattenWeights(final CommandLine commandLine) throws ParseException {
         final Number flattenWeights = (Number) commandLine.getParsedOptionValue("flattenWeights");
         if (flattenWeights == null) {
             return DEFAULT_FLATTEN_WEIGHTS;
@@ -255,7 +614,7 @@ public class RigerJMain {
         return flattenWeights.intValue() != 0;
     }
 
-    private static int getNumRandomGenesPerSetSize() throws ParseException {
+    private static int getNumRandomGenesPerSetSize(final CommandLine commandLine) throws ParseException {
         final Number numRandomGenesperSetSize = (Number) commandLine.getParsedOptionValue("numRandomScoresPerGeneSetSize");
         if (numRandomGenesperSetSize == null) {
             return DEFAULT_NUM_RANDOM_GENES_PER_SET_SIZE;
@@ -263,7 +622,7 @@ public class RigerJMain {
         return numRandomGenesperSetSize.intValue();
     }
 
-    private static double getAlpha() throws ParseException {
+    private static double getAlpha(final CommandLine commandLine) throws ParseException {
         final Number alpha = (Number) commandLine.getParsedOptionValue("alpha");
         if (alpha == null) {
             return DEFAULT_ALPHA;
@@ -271,7 +630,7 @@ public class RigerJMain {
         return alpha.doubleValue();
     }
 
-    private static long getRandomSeed() throws ParseException {
+    private static long getRandomSeed(final CommandLine commandLine) throws ParseException {
         final Number randomSeed = (Number) commandLine.getParsedOptionValue("randomSeed");
         if (randomSeed == null) {
             return DEFAULT_RANDOM_SEED;
@@ -279,7 +638,7 @@ public class RigerJMain {
         return randomSeed.longValue();
     }
 
-    private static boolean getAdjustForHairpinSetSize() throws ParseException {
+    private static boolean getAdjustForHairpinSetSize(final CommandLine commandLine) throws ParseException {
         final Number adjustForHairpinSetSize = (Number) commandLine.getParsedOptionValue("adjustForHairpinSetSize");
         if (adjustForHairpinSetSize == null) {
             return DEFAULT_ADJUST_FOR_HAIRPIN_SET_SIZE;
@@ -287,28 +646,127 @@ public class RigerJMain {
         return adjustForHairpinSetSize.intValue() != 0;
     }
 
-    private static void writeRigerOutputsToFile(final RigerOutputs rigerOutputs) throws Exception {
-        PrintStream printStream = getPrintStream();
-        printStream.println(OUTPUT_HEADERS);
-        for (int i = 0; i < rigerOutputs.getNumGenes(); i++) {
-            GeneOutput geneOutput = rigerOutputs.getGeneOutput(i);
-            printStream.println(geneOutput.getGeneRank() + "\t" +
-                                      geneOutput.getGeneName() + "\t" +
-                                      geneOutput.getGeneScore() + "\t" +
-                                      geneOutput.getPValue() + "\t" +
-                                      geneOutput.getPValueRank() + "\t" +
-                                      geneOutput.getHairpinRanks());
+    private static RandomNumberGeneratorType getRandomNumberGeneratorType(final CommandLine commandLine) {
+        String rngParameter = commandLine.getOptionValue("rng");
+        if (rngParameter == null) {
+            rngParameter = DEFAULT_RANDOM_NUMBER_GENERATOR;
+        }
+        for (RandomNumberGeneratorType type : RandomNumberGeneratorType.values()) {
+            if (type.getParameterName().equals(rngParameter)) {
+                return type;
+            }
+        }
+        System.err.println("unrecognized random number generator " + rngParameter);
+        System.exit(1);
+        return null;
+    }
+
+    private static HairpinSetSamplingMethod getHairpinSetSamplingMethod(final CommandLine commandLine) {
+        String samplingParameter = commandLine.getOptionValue("sampling");
+        if (samplingParameter == null) {
+            samplingParameter = DEFAULT_HAIRPIN_SET_SAMPLING_METHOD;
+        }
+        for (HairpinSetSamplingMethod method : HairpinSetSamplingMethod.values()) {
+            if (method.getParameterName().equals(samplingParameter)) {
+                return method;
+            }
+        }
+        System.err.println("unrecognized sampling " + samplingParameter);
+        System.exit(1);
+        return null;
+    }
+
+    private static NullDistributionMethod getNullDistributionMethod(final CommandLine commandLine) {
+        String nullDistributionParameter = commandLine.getOptionValue("nullDistribution");
+        if (nullDistributionParameter == null) {
+            nullDistributionParameter = DEFAULT_NULL_DISTRIBUTION_METHOD;
+        }
+        for (NullDistributionMethod method : NullDistributionMethod.values()) {
+            if (method.getParameterName().equals(nullDistributionParameter)) {
+                return method;
+            }
+        }
+        System.err.println("unrecognized null distribution " + nullDistributionParameter);
+        System.exit(1);
+        return null;
+    }
+
+    private static double getAdaptivePrecision(final CommandLine commandLine) throws ParseException {
+        final Number adaptivePrecision = (Number) commandLine.getParsedOptionValue("adaptivePrecision");
+        if (adaptivePrecision == null) {
+            return DEFAULT_ADAPTIVE_PRECISION;
+        }
+        if (adaptivePrecision.doubleValue() <= 0) {
+            System.err.println("adaptivePrecision must be positive, got " + adaptivePrecision);
+            System.exit(1);
+        }
+        return adaptivePrecision.doubleValue();
+    }
+
+    private static int getMaxNumRandomScoresPerGeneSetSize(final CommandLine commandLine) throws ParseException {
+        final Number maxNumRandomScoresPerGeneSetSize = (Number) commandLine.getParsedOptionValue("maxNumRandomScoresPerGeneSetSize");
+        if (maxNumRandomScoresPerGeneSetSize == null) {
+            return DEFAULT_MAX_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE;
+        }
+        return maxNumRandomScoresPerGeneSetSize.intValue();
+    }
+
+    private static int getNumPermutations(final CommandLine commandLine) throws ParseException {
+        final Number numPermutations = (Number) commandLine.getParsedOptionValue("numPermutations");
+        if (numPermutations == null) {
+            return DEFAULT_NUM_PERMUTATIONS;
+        }
+        if (numPermutations.intValue() < 1) {
+            System.err.println("numPermutations must be at least 1, got " + numPermutations);
+            System.exit(1);
+        }
+        return numPermutations.intValue();
+    }
+
+    private static OutputFormat getOutputFormat(final CommandLine commandLine) {
+        String outputFormatParameter = commandLine.getOptionValue("outputFormat");
+        if (outputFormatParameter == null) {
+            outputFormatParameter = DEFAULT_OUTPUT_FORMAT;
+        }
+        for (OutputFormat outputFormat : OutputFormat.values()) {
+            if (outputFormat.getParameterName().equals(outputFormatParameter)) {
+                return outputFormat;
+            }
+        }
+        System.err.println("unrecognized output format " + outputFormatParameter);
+        System.exit(1);
+        return null;
+    }
+
+    private static void writeRigerOutputsToFile(final CommandLine commandLine, final RigerOutputs rigerOutputs) throws Exception {
+        final OutputStream outputStream = getOutputStream(commandLine);
+        try {
+            createRigerOutputsWriter(getOutputFormat(commandLine), outputStream).write(rigerOutputs);
+        }
+        finally {
+            outputStream.close();
+        }
+    }
+
+    private static RigerOutputsWriter createRigerOutputsWriter(final OutputFormat outputFormat,
+                                                               final OutputStream outputStream) {
+        switch (outputFormat) {
+        case TEXT:
+            return new TextRigerOutputsWriter(outputStream);
+        case BINARY:
+            return new BinaryRigerOutputsWriter(outputStream);
+        default:
+            throw new RuntimeException("unrecognized OutputFormat: " + outputFormat);
         }
-        printStream.close();
     }
 
-    private static PrintStream getPrintStream() throws FileNotFoundException {
+    private static OutputStream getOutputStream(final CommandLine commandLine) throws FileNotFoundException {
         String outputFilename = commandLine.getOptionValue("outputFile");
         if (outputFilename != null) {
-            return new PrintStream(outputFilename);
+            return new FileOutputStream(outputFilename);
         }
         else {
-            return new PrintStream(System.out);
+            return System.out;
         }
     }
 }
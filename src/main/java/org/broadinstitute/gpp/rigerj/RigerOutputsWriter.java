@@ -0,0 +1,20 @@
+// org.broadinstitute.gpp.rigerj.RigerOutputsWriter
+
+package org.broadinstitute.gpp.rigerj;
+
+import java.io.IOException;
+
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+
+/**
+ * Writes the results of a RIGER run in one of the {@link OutputFormat OutputFormats}.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+interface RigerOutputsWriter {
+
+    /**
+     * Writes all the genes of the outputs, and flushes the underlying stream. The stream is not closed.
+     */
+    void write(RigerOutputs rigerOutputs) throws IOException;
+}
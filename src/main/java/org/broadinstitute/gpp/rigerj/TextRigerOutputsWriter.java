@@ -0,0 +1,68 @@
+// org.broadinstitute.gpp.rigerj.TextRigerOutputsWriter
+
+package org.broadinstitute.gpp.rigerj;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.broadinstitute.gpp.rigerj.api.GeneOutput;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+
+/**
+ * Writes the outputs as tab-separated text, one line per gene, in the format RigerJ has always written.
+ * Each line is built in a single reused StringBuilder, and written through a large buffer.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class TextRigerOutputsWriter implements RigerOutputsWriter {
+
+    static final String OUTPUT_HEADERS = "Gene Rank\tGene Name\tScore\tp-value\tp-value Rank\tHairpin Ranks";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer writer;
+    private final String lineSeparator = System.lineSeparator();
+    private final StringBuilder line = new StringBuilder(256);
+    private char[] lineChars = new char[256];
+
+    TextRigerOutputsWriter(final OutputStream outputStream) {
+        this(outputStream, Charset.defaultCharset());
+    }
+
+    TextRigerOutputsWriter(final OutputStream outputStream, final Charset charset) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, charset), BUFFER_SIZE);
+    }
+
+    public void write(final RigerOutputs rigerOutputs) throws IOException {
+        writer.write(OUTPUT_HEADERS);
+        writer.write(lineSeparator);
+        for (int i = 0; i < rigerOutputs.getNumGenes(); i++) {
+            writeGeneOutput(rigerOutputs.getGeneOutput(i));
+        }
+        writer.flush();
+    }
+
+    private void writeGeneOutput(final GeneOutput geneOutput) throws IOException {
+        line.setLength(0);
+        line.append(geneOutput.getGeneRank()).append('\t')
+            .append(geneOutput.getGeneName()).append('\t')
+            .append(geneOutput.getGeneScore()).append('\t')
+            .append(geneOutput.getPValue()).append('\t')
+            .append(geneOutput.getPValueRank()).append('\t');
+        for (int hairpinRank : geneOutput.getSortedHairpinRanks()) {
+            line.append(hairpinRank).append(' ');
+        }
+        line.append(lineSeparator);
+
+        final int length = line.length();
+        if (length > lineChars.length) {
+            lineChars = new char[Math.max(length, lineChars.length * 2)];
+        }
+        line.getChars(0, length, lineChars, 0);
+        writer.write(lineChars, 0, length);
+    }
+}
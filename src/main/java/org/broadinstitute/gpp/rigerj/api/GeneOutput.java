@@ -23,4 +23,21 @@ public interface GeneOutput {
      * @return space-separated list of the hairpin ranks from smallest to largest
      */
     String getHairpinRanks();
+
+    /**
+     * @return the hairpin ranks from smallest to largest. The default implementation parses
+     * {@link #getHairpinRanks()}; implementations that hold the ranks should return them directly.
+     */
+    default int[] getSortedHairpinRanks() {
+        final String hairpinRanks = getHairpinRanks().trim();
+        if (hairpinRanks.isEmpty()) {
+            return new int[0];
+        }
+        final String[] rankStrings = hairpinRanks.split(" +");
+        final int[] ranks = new int[rankStrings.length];
+        for (int i = 0; i < rankStrings.length; i++) {
+            ranks[i] = Integer.parseInt(rankStrings[i]);
+        }
+        return ranks;
+    }
 }
@@ -0,0 +1,43 @@
+// org.broadinstitute.gpp.rigerj.api.HairpinSetSamplingMethod
+
+package org.broadinstitute.gpp.rigerj.api;
+
+/**
+ * An enumeration of the ways RIGER can pick the random hairpin sets its null distributions are built from.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public enum HairpinSetSamplingMethod {
+
+    /**
+     * Draw hairpins one at a time, drawing again whenever a hairpin is already in the set. This is how RIGER has
+     * always picked random hairpin sets, and reproduces the results of earlier versions for the same random seed.
+     */
+    REJECTION("rejection"),
+
+    /**
+     * Vitter's sequential sampling (Method D, "An efficient algorithm for sequential random sampling", ACM
+     * Transactions on Mathematical Software, 1987), which picks the hairpins of a set in ascending order of score
+     * index, so the scoring methods need not sort them. The hairpin sets are as random as with
+     * {@link #REJECTION}, but different for the same random seed.
+     */
+    SORTED("sorted"),
+
+    /**
+     * Only draw the best two hairpins of every random hairpin set, as its smallest two score indexes, with the
+     * first two steps of {@link #SORTED}. That takes the same time for any hairpin set size. Only available for
+     * {@link HairpinSetScoringMethod#SECOND_BEST_RANK} and {@link HairpinSetScoringMethod#WEIGHTED_SUM}, which
+     * score a hairpin set by its best two hairpins alone.
+     */
+    ORDER_STATISTICS("orderStatistics");
+
+    private final String parameterName;
+
+    HairpinSetSamplingMethod(final String parameterName) {
+        this.parameterName = parameterName;
+    }
+
+    public String getParameterName() {
+        return parameterName;
+    }
+}
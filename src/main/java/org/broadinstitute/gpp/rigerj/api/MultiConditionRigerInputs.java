@@ -0,0 +1,167 @@
+// org.broadinstitute.gpp.rigerj.api.MultiConditionRigerInputs
+
+package org.broadinstitute.gpp.rigerj.api;
+
+/**
+ * An API for a provider of the inputs to RIGER for several conditions screened with one hairpin library: the
+ * hairpins, their genes and weights once, and the hairpin scores and ranks of every condition. The parameters
+ * are the same for all the conditions, with the same defaults as in {@link RigerInputs}.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public interface MultiConditionRigerInputs {
+
+    int getNumHairpins();
+
+    String getHairpinName(int i);
+
+    String getGeneName(int i);
+
+    double getHairpinWeight(int i);
+
+    int getNumConditions();
+
+    double getHairpinScore(int condition, int i);
+
+    int getHairpinRank(int condition, int i);
+
+    HairpinSetScoringMethod getHairpinSetScoringMethod();
+
+    boolean flattenWeights();
+
+    int getNumRandomScoresPerGeneSetSize();
+
+    double getAlpha();
+
+    long getRandomSeed();
+
+    boolean adjustForHairpinSetSize();
+
+    /**
+     * @see RigerInputs#getRandomNumberGeneratorType()
+     */
+    default RandomNumberGeneratorType getRandomNumberGeneratorType() {
+        return RandomNumberGeneratorType.LEGACY;
+    }
+
+    /**
+     * @see RigerInputs#getHairpinSetSamplingMethod()
+     */
+    default HairpinSetSamplingMethod getHairpinSetSamplingMethod() {
+        return HairpinSetSamplingMethod.REJECTION;
+    }
+
+    /**
+     * @see RigerInputs#getNullDistributionMethod()
+     */
+    default NullDistributionMethod getNullDistributionMethod() {
+        return NullDistributionMethod.SAMPLED;
+    }
+
+    /**
+     * @see RigerInputs#getAdaptiveRelativePrecision()
+     */
+    default double getAdaptiveRelativePrecision() {
+        return 0.1;
+    }
+
+    /**
+     * @see RigerInputs#getMaxNumRandomScoresPerGeneSetSize()
+     */
+    default int getMaxNumRandomScoresPerGeneSetSize() {
+        return 1000000;
+    }
+
+    /**
+     * @see RigerInputs#getNumPermutations()
+     */
+    default int getNumPermutations() {
+        return 1000;
+    }
+
+    /**
+     * @return a view of the inputs for a single condition, which reads through to these inputs
+     */
+    default RigerInputs getConditionInputs(final int condition) {
+        final MultiConditionRigerInputs inputs = this;
+        return new RigerInputs() {
+
+            public int getNumHairpins() {
+                return inputs.getNumHairpins();
+            }
+
+            public HairpinInput getHairpinInput(final int i) {
+                return new HairpinInput() {
+
+                    public int getHairpinRank() {
+                        return inputs.getHairpinRank(condition, i);
+                    }
+
+                    public String getHairpinName() {
+                        return inputs.getHairpinName(i);
+                    }
+
+                    public double getHairpinScore() {
+                        return inputs.getHairpinScore(condition, i);
+                    }
+
+                    public String getGeneName() {
+                        return inputs.getGeneName(i);
+                    }
+
+                    public double getHairpinWeight() {
+                        return inputs.getHairpinWeight(i);
+                    }
+                };
+            }
+
+            public HairpinSetScoringMethod getHairpinSetScoringMethod() {
+                return inputs.getHairpinSetScoringMethod();
+            }
+
+            public boolean flattenWeights() {
+                return inputs.flattenWeights();
+            }
+
+            public int getNumRandomScoresPerGeneSetSize() {
+                return inputs.getNumRandomScoresPerGeneSetSize();
+            }
+
+            public double getAlpha() {
+                return inputs.getAlpha();
+            }
+
+            public long getRandomSeed() {
+                return inputs.getRandomSeed();
+            }
+
+            public boolean adjustForHairpinSetSize() {
+                return inputs.adjustForHairpinSetSize();
+            }
+
+            public RandomNumberGeneratorType getRandomNumberGeneratorType() {
+                return inputs.getRandomNumberGeneratorType();
+            }
+
+            public HairpinSetSamplingMethod getHairpinSetSamplingMethod() {
+                return inputs.getHairpinSetSamplingMethod();
+            }
+
+            public NullDistributionMethod getNullDistributionMethod() {
+                return inputs.getNullDistributionMethod();
+            }
+
+            public double getAdaptiveRelativePrecision() {
+                return inputs.getAdaptiveRelativePrecision();
+            }
+
+            public int getMaxNumRandomScoresPerGeneSetSize() {
+                return inputs.getMaxNumRandomScoresPerGeneSetSize();
+            }
+
+            public int getNumPermutations() {
+                return inputs.getNumPermutations();
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+// org.broadinstitute.gpp.rigerj.api.NullDistributionMethod
+
+package org.broadinstitute.gpp.rigerj.api;
+
+/**
+ * An enumeration of the ways RIGER can build the null distribution of gene scores for a gene set size,
+ * against which the p-values of the genes are computed.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public enum NullDistributionMethod {
+
+    /**
+     * Scores {@link RigerInputs#getNumRandomScoresPerGeneSetSize()} random hairpin sets. This is what RIGER has
+     * always done, and is available for every scoring method.
+     */
+    SAMPLED("sampled"),
+
+    /**
+     * Scores {@link RigerInputs#getNumRandomScoresPerGeneSetSize()} random hairpin sets, and then keeps doubling
+     * their number until the p-values of all the genes with the gene set size are known to
+     * {@link RigerInputs#getAdaptiveRelativePrecision()}, or {@link RigerInputs#getMaxNumRandomScoresPerGeneSetSize()}
+     * random hairpin sets have been scored. Available for every scoring method.
+     */
+    ADAPTIVE("adaptive"),
+
+    /**
+     * Scores the same random hairpin sets as {@link #SAMPLED}, and gives the same results, but only counts how often
+     * each distinct random score occurs, instead of keeping all the random scores and sorting them. This makes very
+     * large numbers of random scores per gene set size affordable. Available for every scoring method.
+     */
+    HISTOGRAM("histogram"),
+
+    /**
+     * Computes the null distribution exactly, from the distribution of the best two ranks in a random hairpin set.
+     * Only available for {@link HairpinSetScoringMethod#SECOND_BEST_RANK} and
+     * {@link HairpinSetScoringMethod#WEIGHTED_SUM}. The p-values do not depend on the random seed.
+     */
+    EXACT("exact"),
+
+    /**
+     * Shuffles which gene every hairpin belongs to {@link RigerInputs#getNumPermutations()} times, keeping the number
+     * of hairpins of every gene, and scores every gene on the hairpins it is given. Every permutation gives a random
+     * score for every gene, so a gene set size gets as many random scores per permutation as it has genes, and one
+     * pass over the hairpins gives random scores for all the gene set sizes at once. Available for every scoring
+     * method.
+     */
+    PERMUTATION("permutation");
+
+    private final String parameterName;
+
+    NullDistributionMethod(final String parameterName) {
+        this.parameterName = parameterName;
+    }
+
+    public String getParameterName() {
+        return parameterName;
+    }
+}
@@ -0,0 +1,44 @@
+// org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType
+
+package org.broadinstitute.gpp.rigerj.api;
+
+/**
+ * An enumeration of the random number generators available to RIGER for building null distributions.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public enum RandomNumberGeneratorType {
+
+    /**
+     * {@link java.util.Random}. This is the generator RIGER has always used, and reproduces the results of
+     * earlier versions for the same random seed.
+     */
+    LEGACY("legacy"),
+
+    /**
+     * {@link java.util.SplittableRandom}
+     */
+    SPLITTABLE("splittable"),
+
+    /**
+     * The xoshiro256** generator of Blackman and Vigna
+     */
+    XOSHIRO256("xoshiro256"),
+
+    /**
+     * The Philox4x32-10 counter based generator of Salmon et al. The random numbers of every random hairpin set
+     * are a function of the random seed, the gene set size and the index of the hairpin set alone, so the results
+     * are the same in the sequential and the parallel modes, however the work is split between threads.
+     */
+    PHILOX("philox");
+
+    private final String parameterName;
+
+    RandomNumberGeneratorType(final String parameterName) {
+        this.parameterName = parameterName;
+    }
+
+    public String getParameterName() {
+        return parameterName;
+    }
+}
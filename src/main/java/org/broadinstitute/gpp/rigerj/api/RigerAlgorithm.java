@@ -2,6 +2,9 @@
 
 package org.broadinstitute.gpp.rigerj.api;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * An API for implementations of the RIGER algorithm.
  *
@@ -10,4 +13,18 @@ package org.broadinstitute.gpp.rigerj.api;
 public interface RigerAlgorithm {
 
     RigerOutputs execute(RigerInputs rigerInputs);
+
+    /**
+     * Executes RIGER for every condition of the inputs. By default, this executes the
+     * {@link MultiConditionRigerInputs#getConditionInputs(int) inputs of each condition} one after the other.
+     *
+     * @return the outputs of each condition, in the order of the conditions
+     */
+    default List<RigerOutputs> execute(MultiConditionRigerInputs multiConditionRigerInputs) {
+        final List<RigerOutputs> rigerOutputs = new ArrayList<RigerOutputs>();
+        for (int condition = 0; condition < multiConditionRigerInputs.getNumConditions(); condition++) {
+            rigerOutputs.add(execute(multiConditionRigerInputs.getConditionInputs(condition)));
+        }
+        return rigerOutputs;
+    }
 }
@@ -24,4 +24,51 @@ public interface RigerInputs {
     long getRandomSeed();
     
     boolean adjustForHairpinSetSize();
+
+    /**
+     * @return the random number generator to build null distributions with. Defaults to
+     * {@link RandomNumberGeneratorType#LEGACY}, which reproduces the results of earlier versions.
+     */
+    default RandomNumberGeneratorType getRandomNumberGeneratorType() {
+        return RandomNumberGeneratorType.LEGACY;
+    }
+
+    /**
+     * @return how to pick the random hairpin sets of the null distributions. Defaults to
+     * {@link HairpinSetSamplingMethod#REJECTION}, which reproduces the results of earlier versions.
+     */
+    default HairpinSetSamplingMethod getHairpinSetSamplingMethod() {
+        return HairpinSetSamplingMethod.REJECTION;
+    }
+
+    /**
+     * @return how to build the null distributions. Defaults to {@link NullDistributionMethod#SAMPLED}.
+     */
+    default NullDistributionMethod getNullDistributionMethod() {
+        return NullDistributionMethod.SAMPLED;
+    }
+
+    /**
+     * @return the relative standard error the {@link NullDistributionMethod#ADAPTIVE adaptive null distributions}
+     * aim for in every p-value. Defaults to 0.1.
+     */
+    default double getAdaptiveRelativePrecision() {
+        return 0.1;
+    }
+
+    /**
+     * @return the most random scores per gene set size the {@link NullDistributionMethod#ADAPTIVE adaptive null
+     * distributions} may use. Defaults to 1,000,000.
+     */
+    default int getMaxNumRandomScoresPerGeneSetSize() {
+        return 1000000;
+    }
+
+    /**
+     * @return the number of times the {@link NullDistributionMethod#PERMUTATION permutation null distributions}
+     * shuffle the genes of the hairpins. Defaults to 1,000.
+     */
+    default int getNumPermutations() {
+        return 1000;
+    }
 }
@@ -0,0 +1,46 @@
+// org.broadinstitute.gpp.rigerj.api.RigerMetricsListener
+
+package org.broadinstitute.gpp.rigerj.api;
+
+/**
+ * Receives timings and counters from a RIGER execution, to see where the time of a run goes. All the methods
+ * do nothing unless overridden, so a listener only needs to implement what it is interested in.
+ *
+ * <p>
+ *
+ * The null distributions of the different gene set sizes may be computed concurrently, so
+ * {@link #nullDistributionComputed} may be called from several threads at once. The phase methods are
+ * always called from the thread that called execute.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public interface RigerMetricsListener {
+
+    default void phaseStarted(RigerPhase phase) {
+    }
+
+    /**
+     * @param elapsedNanos the wall clock time the phase took
+     */
+    default void phaseFinished(RigerPhase phase, long elapsedNanos) {
+    }
+
+    /**
+     * Called once for every null distribution computed during the {@link RigerPhase#SCORE_GENES} phase, but not for
+     * those found in a cache.
+     *
+     * @param geneSetSize the gene set size of the null distribution
+     * @param numRandomScores the number of random hairpin sets scored, 0 for exact null distributions
+     * @param numRejectedDraws the number of random hairpins drawn that were already in the hairpin set being picked,
+     * and had to be drawn again
+     * @param numBytesAllocated an estimate of the memory allocated for the null distribution, not counting the
+     * scratch buffers of the scoring algorithm
+     * @param elapsedNanos the time it took to compute the null distribution, on whichever thread computed it
+     */
+    default void nullDistributionComputed(int geneSetSize,
+                                          int numRandomScores,
+                                          long numRejectedDraws,
+                                          long numBytesAllocated,
+                                          long elapsedNanos) {
+    }
+}
@@ -2,6 +2,9 @@
 
 package org.broadinstitute.gpp.rigerj.api;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * An API for a provider of the full set of outputs to the RIGER algorithm.
  *
@@ -12,4 +15,12 @@ public interface RigerOutputs {
     public int getNumGenes();
 
     public GeneOutput getGeneOutput(int i);
+
+    /**
+     * @return the number of random scores the null distribution of each gene set size was sampled from, by
+     * gene set size in ascending order. Empty if the null distributions were not sampled.
+     */
+    default Map<Integer,Integer> getNumRandomScoresByGeneSetSize() {
+        return Collections.emptyMap();
+    }
 }
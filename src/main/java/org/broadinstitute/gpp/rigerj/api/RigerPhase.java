@@ -0,0 +1,52 @@
+// org.broadinstitute.gpp.rigerj.api.RigerPhase
+
+package org.broadinstitute.gpp.rigerj.api;
+
+/**
+ * An enumeration of the phases of a RIGER execution, in the order they run, as reported to a
+ * {@link RigerMetricsListener}.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public enum RigerPhase {
+
+    /**
+     * Checks the parameters, and creates the random number generator and the scoring algorithm
+     */
+    INITIALIZE("initialize"),
+
+    /**
+     * Orders the hairpins by score, and computes their hairpin set weights
+     */
+    ORDER_HAIRPINS("order hairpins"),
+
+    /**
+     * Groups the hairpins by gene, and the genes by gene set size
+     */
+    MAP_GENES("map genes"),
+
+    /**
+     * Computes the null distribution for every gene set size, and scores the genes against them
+     */
+    SCORE_GENES("score genes"),
+
+    /**
+     * Ranks the genes by score and by p-value
+     */
+    RANK_GENES("rank genes"),
+
+    /**
+     * Builds the {@link RigerOutputs}
+     */
+    BUILD_OUTPUTS("build outputs");
+
+    private final String description;
+
+    RigerPhase(final String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
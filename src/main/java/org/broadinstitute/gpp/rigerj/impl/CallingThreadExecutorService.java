@@ -0,0 +1,46 @@
+// org.broadinstitute.gpp.rigerj.impl.CallingThreadExecutorService
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link java.util.concurrent.ExecutorService} that runs every task on the thread that submits it, before
+ * returning. A {@link RigerRun} given one computes its null distributions exactly as in the parallel mode, with a
+ * random number generator per gene set size, but without handing them to other threads. That lets a run that is
+ * itself one task on an executor get the results of the parallel mode without waiting on that same executor.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class CallingThreadExecutorService extends AbstractExecutorService {
+
+    private volatile boolean shutdown;
+
+    public void execute(final Runnable command) {
+        command.run();
+    }
+
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        return Collections.emptyList();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public boolean isTerminated() {
+        return shutdown;
+    }
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+        return shutdown;
+    }
+}
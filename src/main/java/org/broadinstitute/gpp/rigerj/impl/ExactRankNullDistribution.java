@@ -0,0 +1,187 @@
+// org.broadinstitute.gpp.rigerj.impl.ExactRankNullDistribution
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerJInputException;
+
+/**
+ * The exact {@link NullDistribution} of the rank based scoring methods, for hairpin sets of size k drawn
+ * without replacement from N hairpins. Both methods only look at the two smallest hairpin indexes
+ * X1 &lt; X2 in the set. For 0 &lt;= a &lt; b, the set holds a and b, and k - 2 of the N - 1 - b indexes
+ * above b, so
+ *
+ * <pre>
+ * P(X1 = a, X2 = b) = w(b) = C(N - 1 - b, k - 2) / C(N, k)
+ * </pre>
+ *
+ * which does not depend on a. The cumulative sums of w(b) and b w(b) then give the distributions of both
+ * scores in constant time per gene.
+ *
+ * <p>
+ *
+ * The p-value of a gene score g is P(S &lt;= g) for the score S of a random hairpin set, which is what the
+ * sampled null distribution estimates. The gene set size adjustment is the smallest score s with
+ * P(S &lt;= s) &gt; 0.9, the limit of the 90th percentile of the sampled scores.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+abstract class ExactRankNullDistribution implements NullDistribution {
+
+    private static final double GENE_SET_SIZE_ADJUSTMENT_PROBABILITY = 0.9;
+
+    /**
+     * cumulativeWeights[b] is the sum of w(c) for c &lt; b
+     */
+    final double[] cumulativeWeights;
+
+    /**
+     * cumulativeIndexWeights[b] is the sum of c w(c) for c &lt; b, which is P(X2 &lt; b)
+     */
+    final double[] cumulativeIndexWeights;
+
+    ExactRankNullDistribution(final int numHairpins, final int geneSetSize) {
+        cumulativeWeights = new double[numHairpins + 1];
+        cumulativeIndexWeights = new double[numHairpins + 1];
+
+        // w(0) = C(N - 1, k - 2) / C(N, k), and w(b + 1) / w(b) = (N - 1 - b - (k - 2)) / (N - 1 - b)
+        double weight = (double) geneSetSize * (geneSetSize - 1) / ((double) numHairpins * (numHairpins - geneSetSize + 1));
+        for (int b = 0; b < numHairpins; b++) {
+            cumulativeWeights[b + 1] = cumulativeWeights[b] + weight;
+            cumulativeIndexWeights[b + 1] = cumulativeIndexWeights[b] + b * weight;
+            weight *= Math.max(0, numHairpins - b - geneSetSize + 1) / (double) (numHairpins - 1 - b);
+        }
+    }
+
+    /**
+     * @throws RigerJInputException if there is no exact null distribution for the scoring method
+     */
+    static ExactRankNullDistribution create(final HairpinSetScoringMethod hairpinSetScoringMethod,
+                                            final int numHairpins,
+                                            final int geneSetSize) {
+        switch (hairpinSetScoringMethod) {
+        case SECOND_BEST_RANK:
+            return new SecondBestRank(numHairpins, geneSetSize);
+        case WEIGHTED_SUM:
+            return new WeightedSum(numHairpins, geneSetSize);
+        default:
+            throw new RigerJInputException("the exact null distribution is not available for scoring method " +
+                                           hairpinSetScoringMethod);
+        }
+    }
+
+    public double computePValue(final double geneScore) {
+        return computeCumulativeProbability(geneScore);
+    }
+
+    public double[] computePValues(final double[] geneScores) {
+        final double[] pValues = new double[geneScores.length];
+        for (int i = 0; i < geneScores.length; i++) {
+            pValues[i] = computePValue(geneScores[i]);
+        }
+        return pValues;
+    }
+
+    public GeneScoreAdjuster computeGeneSetSizeAdjustment() {
+        final double adjustmentFactor = computeQuantile(GENE_SET_SIZE_ADJUSTMENT_PROBABILITY);
+        return new GeneScoreAdjuster() {
+
+            public double adjustGeneScore(double unadjustedScore) {
+                return unadjustedScore / adjustmentFactor;
+            }
+        };
+    }
+
+    /**
+     * @return P(S &lt;= score)
+     */
+    abstract double computeCumulativeProbability(double score);
+
+    /**
+     * @return the smallest score s with P(S &lt;= s) &gt; probability
+     */
+    abstract double computeQuantile(double probability);
+
+    /**
+     * @return the sum of the values in the cumulative sums from index from (inclusive) to index to (exclusive),
+     * with both indexes clamped to the cumulative sums
+     */
+    static double sum(final double[] cumulativeSums, final long from, final long to) {
+        final int last = cumulativeSums.length - 1;
+        final int clampedFrom = (int) Math.max(0, Math.min(last, from));
+        final int clampedTo = (int) Math.max(0, Math.min(last, to));
+        return clampedTo <= clampedFrom ? 0 : cumulativeSums[clampedTo] - cumulativeSums[clampedFrom];
+    }
+
+    /**
+     * The score is X2 + 1
+     */
+    static final class SecondBestRank extends ExactRankNullDistribution {
+
+        SecondBestRank(final int numHairpins, final int geneSetSize) {
+            super(numHairpins, geneSetSize);
+        }
+
+        double computeCumulativeProbability(final double score) {
+            return Math.min(1, sum(cumulativeIndexWeights, 0, (long) Math.floor(score)));
+        }
+
+        double computeQuantile(final double probability) {
+            int low = 0;
+            int high = cumulativeIndexWeights.length - 1;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (cumulativeIndexWeights[middle + 1] > probability) {
+                    high = middle;
+                }
+                else {
+                    low = middle + 1;
+                }
+            }
+            return low + 1;
+        }
+    }
+
+    /**
+     * The score is 0.25 X1 + 0.75 X2 + 1, so all the scores are 1 plus a quarter of an integer t = X1 + 3 X2.
+     * For a given b, the a &lt; b with a + 3 b &lt;= t are all b of them if b &lt;= (t + 1) / 4, and t + 1 - 3 b
+     * of them if (t + 1) / 4 &lt; b &lt;= t / 3.
+     */
+    static final class WeightedSum extends ExactRankNullDistribution {
+
+        WeightedSum(final int numHairpins, final int geneSetSize) {
+            super(numHairpins, geneSetSize);
+        }
+
+        double computeCumulativeProbability(final double score) {
+            return computeCumulativeProbability((long) Math.floor(4 * (score - 1)));
+        }
+
+        private double computeCumulativeProbability(final long t) {
+            if (t < 0) {
+                return 0;
+            }
+            final long lastFullIndex = (t + 1) / 4;
+            final long lastPartialIndex = t / 3;
+            final double probability = sum(cumulativeIndexWeights, 0, lastFullIndex + 1) +
+                                       (t + 1) * sum(cumulativeWeights, lastFullIndex + 1, lastPartialIndex + 1) -
+                                       3 * sum(cumulativeIndexWeights, lastFullIndex + 1, lastPartialIndex + 1);
+            return Math.max(0, Math.min(1, probability));
+        }
+
+        double computeQuantile(final double probability) {
+            long low = 0;
+            long high = 4L * cumulativeWeights.length;
+            while (low < high) {
+                final long middle = (low + high) >>> 1;
+                if (computeCumulativeProbability(middle) > probability) {
+                    high = middle;
+                }
+                else {
+                    low = middle + 1;
+                }
+            }
+            return 0.25 * low + 1;
+        }
+    }
+}
@@ -3,7 +3,7 @@
 package org.broadinstitute.gpp.rigerj.impl;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import org.broadinstitute.gpp.rigerj.api.GeneOutput;
@@ -16,6 +16,13 @@ import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
  * can use the setters to construct the algorithm outputs. Exposed to the users as a
  * {@link GeneOutput}, only the getters are available for use.
  *
+ * <p>
+ *
+ * The hairpins of a gene of a run are kept as positions in the {@link HairpinTable} of the run. The
+ * {@link HairpinData HairpinDatas} are only created if {@link #getHairpinDatas()} is called, and from then on
+ * the hairpins are those of the list. A GeneData created without a table starts with an empty list, which
+ * {@link #addHairpinData(HairpinData)} adds to.
+ *
  * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
  */
 public class GeneData implements GeneOutput {
@@ -25,7 +32,19 @@ public class GeneData implements GeneOutput {
     double geneScore;
     double pValue;
     int pValueRank;
-    List<HairpinData> hairpinDatas = new ArrayList<HairpinData>();
+    HairpinTable hairpinTable;
+    int geneId;
+    List<HairpinData> hairpinDatas;
+
+    public GeneData() {
+        hairpinDatas = new ArrayList<HairpinData>();
+    }
+
+    GeneData(HairpinTable hairpinTable, int geneId) {
+        this.hairpinTable = hairpinTable;
+        this.geneId = geneId;
+        this.geneName = hairpinTable.getGeneName(geneId);
+    }
 
     public int getGeneRank() {
         return geneRank;
@@ -67,22 +86,47 @@ public class GeneData implements GeneOutput {
         this.pValueRank = pValueRank;
     }
 
+    int getGeneId() {
+        return geneId;
+    }
+
+    public int getNumHairpins() {
+        return hairpinDatas != null ? hairpinDatas.size() : hairpinTable.getGeneSetSize(geneId);
+    }
+
+    /**
+     * @return the hairpins of the gene, ordered by score from smallest to largest
+     */
     public List<HairpinData> getHairpinDatas() {
+        if (hairpinDatas == null) {
+            final int numHairpins = hairpinTable.getGeneSetSize(geneId);
+            hairpinDatas = new ArrayList<HairpinData>(numHairpins);
+            for (int i = 0; i < numHairpins; i++) {
+                hairpinDatas.add(hairpinTable.createHairpinData(hairpinTable.getGeneHairpinPosition(geneId, i)));
+            }
+        }
         return hairpinDatas;
     }
 
     public void addHairpinData(HairpinData hairpinData) {
-        hairpinDatas.add(hairpinData);
+        getHairpinDatas().add(hairpinData);
     }
 
-    public String getHairpinRanks() {
-        List<Integer> hairpinRanks = new ArrayList<Integer>();
-        for (HairpinData hairpinData : hairpinDatas) {
-            hairpinRanks.add(hairpinData.getHairpinRank());
+    public int[] getSortedHairpinRanks() {
+        final int numHairpins = getNumHairpins();
+        final int[] hairpinRanks = new int[numHairpins];
+        for (int i = 0; i < numHairpins; i++) {
+            hairpinRanks[i] = hairpinDatas != null ?
+                              hairpinDatas.get(i).getHairpinRank() :
+                              hairpinTable.getRanks()[hairpinTable.getGeneHairpinPosition(geneId, i)];
         }
-        Collections.sort(hairpinRanks);
+        Arrays.sort(hairpinRanks);
+        return hairpinRanks;
+    }
+
+    public String getHairpinRanks() {
         StringBuilder stringBuilder = new StringBuilder();
-        for (Integer hairpinRank : hairpinRanks) {
+        for (int hairpinRank : getSortedHairpinRanks()) {
             stringBuilder.append(hairpinRank);
             stringBuilder.append(" ");
         }
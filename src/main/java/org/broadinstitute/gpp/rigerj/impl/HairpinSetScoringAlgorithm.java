@@ -27,6 +27,81 @@ public interface HairpinSetScoringAlgorithm {
                            double[] targetHairpinWeights,
                            double alpha);
 
+    /**
+     * Computes the weight a single hairpin contributes to any hairpin set it is part of. This depends only on
+     * the hairpin itself, so callers scoring many hairpin sets can compute it once per hairpin and use
+     * {@link #scoreWeightedHairpinSet(int, int[], double[])}.
+     *
+     * @param hairpinScore the score for the hairpin
+     * @param hairpinWeight the weight factor for the hairpin. should be a value between 0 and 1 (both inclusive)
+     * @param alpha see {@link #scoreHairpinSet(int, double[], int[], double[], double)}
+     *
+     * @return the weight of the hairpin within a hairpin set
+     */
+    double computeHairpinSetWeight(double hairpinScore, double hairpinWeight, double alpha);
+
+    /**
+     * Equivalent to {@link #scoreHairpinSet(int, double[], int[], double[], double)}, with the hairpin scores,
+     * weights and alpha already combined by {@link #computeHairpinSetWeight(double, double, double)}.
+     *
+     * @param numTotalHairpinScores the total number of hairpins in the input
+     * @param targetHairpinScoreIndexes the indexes of the target hairpin scores in the allHairpinScores array
+     * @param targetHairpinSetWeights the {@link #computeHairpinSetWeight(double, double, double) hairpin set weights}
+     * of the target hairpins, in the same order as the indexes
+     *
+     * @return the score for the hairpin set
+     */
+    double scoreWeightedHairpinSet(int numTotalHairpinScores,
+                                   int[] targetHairpinScoreIndexes,
+                                   double[] targetHairpinSetWeights);
+
+    /**
+     * Scores many hairpin sets of the same size at once, which lets implementations share their setup and scratch
+     * buffers between the sets. Equivalent to {@link #scoreWeightedHairpinSet(int, int[], double[])} on each of the
+     * hairpin sets in turn, which is what this does unless overridden.
+     *
+     * @param numTotalHairpinScores the total number of hairpins in the input
+     * @param hairpinSetSize the number of hairpins in every hairpin set
+     * @param numHairpinSets the number of hairpin sets to score
+     * @param targetHairpinScoreIndexes the indexes of the target hairpins of all the hairpin sets, one after the other,
+     * so that hairpin set i takes up positions i * hairpinSetSize up to (i + 1) * hairpinSetSize. Not modified.
+     * @param targetHairpinSetWeights the hairpin set weights of the target hairpins, laid out like the indexes
+     * @param hairpinSetScores receives the score of hairpin set i at position i
+     */
+    default void scoreWeightedHairpinSets(int numTotalHairpinScores,
+                                          int hairpinSetSize,
+                                          int numHairpinSets,
+                                          int[] targetHairpinScoreIndexes,
+                                          double[] targetHairpinSetWeights,
+                                          double[] hairpinSetScores) {
+        final int[] indexes = new int[hairpinSetSize];
+        final double[] weights = new double[hairpinSetSize];
+        for (int i = 0; i < numHairpinSets; i++) {
+            System.arraycopy(targetHairpinScoreIndexes, i * hairpinSetSize, indexes, 0, hairpinSetSize);
+            System.arraycopy(targetHairpinSetWeights, i * hairpinSetSize, weights, 0, hairpinSetSize);
+            hairpinSetScores[i] = scoreWeightedHairpinSet(numTotalHairpinScores, indexes, weights);
+        }
+    }
+
+    /**
+     * Equivalent to {@link #scoreWeightedHairpinSets(int, int, int, int[], double[], double[])}, for hairpin sets whose
+     * target hairpin score indexes are each in ascending order already, which lets implementations skip sorting them.
+     * Unless overridden, this scores them like any other hairpin sets.
+     */
+    default void scoreSortedWeightedHairpinSets(int numTotalHairpinScores,
+                                                int hairpinSetSize,
+                                                int numHairpinSets,
+                                                int[] targetHairpinScoreIndexes,
+                                                double[] targetHairpinSetWeights,
+                                                double[] hairpinSetScores) {
+        scoreWeightedHairpinSets(numTotalHairpinScores,
+                                 hairpinSetSize,
+                                 numHairpinSets,
+                                 targetHairpinScoreIndexes,
+                                 targetHairpinSetWeights,
+                                 hairpinSetScores);
+    }
+
     /**
      * Given the list of sorted random scores for hairpin sets of a given size, compute an adjustment factor for that gene set size.
      * 
@@ -36,6 +111,29 @@ public interface HairpinSetScoringAlgorithm {
      */
     GeneScoreAdjuster computeGeneSetSizeAdjustment(double[] sortedRandomScores);
 
+    /**
+     * Equivalent to {@link #computeGeneSetSizeAdjustment(double[])}, with the random scores given as their distinct
+     * values and how often each occurs. Unless overridden, this lays the random scores out in full.
+     *
+     * @param sortedDistinctRandomScores the distinct random scores for hairpin sets of a given size, sorted
+     * @param randomScoreCounts how often each of the distinct random scores occurs
+     *
+     * @return an adjustment factor for that gene set size
+     */
+    default GeneScoreAdjuster computeGeneSetSizeAdjustment(double[] sortedDistinctRandomScores, int[] randomScoreCounts) {
+        int numRandomScores = 0;
+        for (int randomScoreCount : randomScoreCounts) {
+            numRandomScores += randomScoreCount;
+        }
+        final double[] sortedRandomScores = new double[numRandomScores];
+        for (int i = 0, j = 0; i < sortedDistinctRandomScores.length; i++) {
+            for (int k = 0; k < randomScoreCounts[i]; k++) {
+                sortedRandomScores[j++] = sortedDistinctRandomScores[i];
+            }
+        }
+        return computeGeneSetSizeAdjustment(sortedRandomScores);
+    }
+
     /**
      * @return true whenever a low score produced by the scoring algorithm is a better score. Generally speaking, algorithms
      * that score by rank produce rank-like scores, in which case, low scores are better scores. For other algorithms,
@@ -0,0 +1,287 @@
+// org.broadinstitute.gpp.rigerj.impl.HairpinTable
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+
+/**
+ * The hairpins of a RIGER run, stored column by column in primitive arrays, ordered by score from smallest
+ * to largest. Genes are identified by their index into a dictionary of gene names. The hairpins of each gene
+ * are available as a contiguous run of ordered positions, so the gene grouping needs no per-gene collections.
+ *
+ * <p>
+ *
+ * Hairpin names are not copied. They are looked up in the original {@link RigerInputs} when a
+ * {@link HairpinData} is {@link #createHairpinData(int) materialized} for output.
+ *
+ * <p>
+ *
+ * The arrays returned by the getters are the table's own, and must not be modified.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class HairpinTable {
+
+    private final RigerInputs rigerInputs;
+
+    /**
+     * For each ordered position, the index of the hairpin in the {@link RigerInputs}
+     */
+    private final int[] inputIndexes;
+
+    private final double[] scores;
+    private final double[] weights;
+    private final int[] ranks;
+    private final int[] geneIds;
+    private final String[] geneNames;
+
+    /**
+     * The ordered positions of the hairpins of gene g are geneHairpinPositions[geneHairpinOffsets[g]] up to,
+     * but not including, geneHairpinPositions[geneHairpinOffsets[g + 1]], in ascending order
+     */
+    private final int[] geneHairpinOffsets;
+    private final int[] geneHairpinPositions;
+
+    private HairpinTable(final RigerInputs rigerInputs,
+                         final int[] inputIndexes,
+                         final double[] scores,
+                         final double[] weights,
+                         final int[] ranks,
+                         final int[] geneIds,
+                         final String[] geneNames) {
+        this.rigerInputs = rigerInputs;
+        this.inputIndexes = inputIndexes;
+        this.scores = scores;
+        this.weights = weights;
+        this.ranks = ranks;
+        this.geneIds = geneIds;
+        this.geneNames = geneNames;
+        this.geneHairpinOffsets = new int[geneNames.length + 1];
+        this.geneHairpinPositions = new int[scores.length];
+        initializeGeneHairpinPositions();
+    }
+
+    /**
+     * Builds the table for the hairpins in the inputs, {@link #flattenHairpinScore(double) flattening} the scores
+     * first if {@link RigerInputs#flattenWeights()} says so. Hairpins with equal scores keep their input order.
+     */
+    static HairpinTable build(final RigerInputs rigerInputs) {
+        return build(rigerInputs, null);
+    }
+
+    /**
+     * Builds the table like {@link #build(RigerInputs)}, with the genes of the hairpins given by the gene dictionary.
+     *
+     * @param geneDictionary the gene dictionary of the inputs, or null to build one along with the table
+     */
+    static HairpinTable build(final RigerInputs rigerInputs, final GeneDictionary geneDictionary) {
+        final int numHairpins = rigerInputs.getNumHairpins();
+        final boolean flattenWeights = rigerInputs.flattenWeights();
+        final double[] unorderedScores = new double[numHairpins];
+        final double[] unorderedWeights = new double[numHairpins];
+        final int[] unorderedRanks = new int[numHairpins];
+        final int[] unorderedGeneIds = geneDictionary == null ? new int[numHairpins] : geneDictionary.geneIds;
+        final Map<String,Integer> geneNameToGeneIdMap = new HashMap<String,Integer>();
+        for (int i = 0; i < numHairpins; i++) {
+            final HairpinInput hairpinInput = rigerInputs.getHairpinInput(i);
+            final double hairpinScore = hairpinInput.getHairpinScore();
+            unorderedScores[i] = flattenWeights ? flattenHairpinScore(hairpinScore) : hairpinScore;
+            unorderedWeights[i] = hairpinInput.getHairpinWeight();
+            unorderedRanks[i] = hairpinInput.getHairpinRank();
+            if (geneDictionary == null) {
+                unorderedGeneIds[i] = getGeneId(geneNameToGeneIdMap, hairpinInput.getGeneName());
+            }
+        }
+        final String[] geneNames = geneDictionary == null ? getGeneNames(geneNameToGeneIdMap) : geneDictionary.geneNames;
+
+        final int[] inputIndexes = sortIndexesByAscendingScore(unorderedScores);
+        final double[] scores = new double[numHairpins];
+        final double[] weights = new double[numHairpins];
+        final int[] ranks = new int[numHairpins];
+        final int[] geneIds = new int[numHairpins];
+        for (int position = 0; position < numHairpins; position++) {
+            final int inputIndex = inputIndexes[position];
+            scores[position] = unorderedScores[inputIndex];
+            weights[position] = unorderedWeights[inputIndex];
+            ranks[position] = unorderedRanks[inputIndex];
+            geneIds[position] = unorderedGeneIds[inputIndex];
+        }
+        return new HairpinTable(rigerInputs, inputIndexes, scores, weights, ranks, geneIds, geneNames);
+    }
+
+    /**
+     * @return the id of the gene name, adding it to the map with the next id if it is not there yet
+     */
+    private static int getGeneId(final Map<String,Integer> geneNameToGeneIdMap, final String geneName) {
+        Integer geneId = geneNameToGeneIdMap.get(geneName);
+        if (geneId == null) {
+            geneId = geneNameToGeneIdMap.size();
+            geneNameToGeneIdMap.put(geneName, geneId);
+        }
+        return geneId;
+    }
+
+    /**
+     * @return the gene names, indexed by gene id
+     */
+    private static String[] getGeneNames(final Map<String,Integer> geneNameToGeneIdMap) {
+        final String[] geneNames = new String[geneNameToGeneIdMap.size()];
+        for (Map.Entry<String,Integer> entry : geneNameToGeneIdMap.entrySet()) {
+            geneNames[entry.getValue()] = entry.getKey();
+        }
+        return geneNames;
+    }
+
+    /**
+     * Scores between -0.5 and 0 are converted to -0.5; scores between 0 and 0.5 are converted to 0.5
+     */
+    static double flattenHairpinScore(final double hairpinScore) {
+        // TODO: maybe use -0.00001 and 0.00001 instead of 0 and 0 below
+        if (-0.5 < hairpinScore && hairpinScore < 0) {
+            return -0.5;
+        }
+        else if (0 < hairpinScore && hairpinScore < 0.5) {
+            return 0.5;
+        }
+        return hairpinScore;
+    }
+
+    /**
+     * A stable merge sort of the indexes of the scores, ordered as by {@link Double#compare(double, double)},
+     * which places NaNs last.
+     */
+    static int[] sortIndexesByAscendingScore(final double[] scores) {
+        int[] indexes = new int[scores.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        int[] buffer = new int[scores.length];
+        for (int width = 1; width < indexes.length; width *= 2) {
+            for (int low = 0; low < indexes.length; low += 2 * width) {
+                final int middle = Math.min(low + width, indexes.length);
+                final int high = Math.min(low + 2 * width, indexes.length);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    if (left < middle && (right >= high || Double.compare(scores[indexes[left]], scores[indexes[right]]) <= 0)) {
+                        buffer[i] = indexes[left++];
+                    }
+                    else {
+                        buffer[i] = indexes[right++];
+                    }
+                }
+            }
+            final int[] swap = indexes;
+            indexes = buffer;
+            buffer = swap;
+        }
+        return indexes;
+    }
+
+    private void initializeGeneHairpinPositions() {
+        for (int position = 0; position < geneIds.length; position++) {
+            geneHairpinOffsets[geneIds[position] + 1]++;
+        }
+        for (int geneId = 0; geneId < geneNames.length; geneId++) {
+            geneHairpinOffsets[geneId + 1] += geneHairpinOffsets[geneId];
+        }
+        final int[] nextSlots = new int[geneNames.length];
+        System.arraycopy(geneHairpinOffsets, 0, nextSlots, 0, geneNames.length);
+        for (int position = 0; position < geneIds.length; position++) {
+            geneHairpinPositions[nextSlots[geneIds[position]]++] = position;
+        }
+    }
+
+    int getNumHairpins() {
+        return scores.length;
+    }
+
+    int getNumGenes() {
+        return geneNames.length;
+    }
+
+    /**
+     * @return the (possibly flattened) hairpin scores, in ascending order
+     */
+    double[] getScores() {
+        return scores;
+    }
+
+    double[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * @return the 1-based hairpin ranks, as given in the inputs
+     */
+    int[] getRanks() {
+        return ranks;
+    }
+
+    int[] getGeneIds() {
+        return geneIds;
+    }
+
+    String getGeneName(final int geneId) {
+        return geneNames[geneId];
+    }
+
+    int getGeneSetSize(final int geneId) {
+        return geneHairpinOffsets[geneId + 1] - geneHairpinOffsets[geneId];
+    }
+
+    /**
+     * @return the ordered position of the i-th hairpin of the gene. Positions increase with i.
+     */
+    int getGeneHairpinPosition(final int geneId, final int i) {
+        return geneHairpinPositions[geneHairpinOffsets[geneId] + i];
+    }
+
+    /**
+     * @return true if the other table has the same hairpin scores, weights and ranks, in the same order, whichever
+     * genes the hairpins belong to
+     */
+    boolean hasSameOrderedHairpins(final HairpinTable other) {
+        return Arrays.equals(scores, other.scores) && Arrays.equals(weights, other.weights) && Arrays.equals(ranks, other.ranks);
+    }
+
+    /**
+     * @return a new {@link HairpinData} for the hairpin at the ordered position, with its flattened score
+     */
+    HairpinData createHairpinData(final int position) {
+        final String hairpinName = rigerInputs.getHairpinInput(inputIndexes[position]).getHairpinName();
+        return new HairpinData(ranks[position],
+                               hairpinName,
+                               scores[position],
+                               geneNames[geneIds[position]],
+                               weights[position]);
+    }
+
+    /**
+     * The genes of the hairpins of some inputs, every gene name numbered in the order the gene first appears in the
+     * inputs, as {@link HairpinTable#build(RigerInputs)} does. It only depends on the gene names of the hairpins, so
+     * inputs that differ in nothing else, such as the conditions of one screen, can share one dictionary.
+     */
+    static final class GeneDictionary {
+
+        /**
+         * The gene id of each hairpin, by index in the inputs
+         */
+        private final int[] geneIds;
+        private final String[] geneNames;
+
+        GeneDictionary(final RigerInputs rigerInputs) {
+            final Map<String,Integer> geneNameToGeneIdMap = new HashMap<String,Integer>();
+            geneIds = new int[rigerInputs.getNumHairpins()];
+            for (int i = 0; i < geneIds.length; i++) {
+                geneIds[i] = getGeneId(geneNameToGeneIdMap, rigerInputs.getHairpinInput(i).getGeneName());
+            }
+            geneNames = getGeneNames(geneNameToGeneIdMap);
+        }
+    }
+}
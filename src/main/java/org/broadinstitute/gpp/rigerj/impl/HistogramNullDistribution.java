@@ -0,0 +1,82 @@
+// org.broadinstitute.gpp.rigerj.impl.HistogramNullDistribution
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Arrays;
+
+/**
+ * A {@link NullDistribution} made of the distinct scores of random hairpin sets, and how often each occurs.
+ * It holds exactly the information of the sorted random scores of a {@link SampledNullDistribution}, and gives
+ * exactly the same p-values and gene set size adjustments, in memory proportional to the number of distinct
+ * scores rather than to the number of random scores.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class HistogramNullDistribution implements NullDistribution {
+
+    private final double[] sortedDistinctRandomScores;
+    private final int[] randomScoreCounts;
+
+    /**
+     * cumulativeCounts[i] is the number of random scores below sortedDistinctRandomScores[i]
+     */
+    private final int[] cumulativeCounts;
+
+    private final HairpinSetScoringAlgorithm algorithm;
+
+    HistogramNullDistribution(final double[] sortedDistinctRandomScores,
+                              final int[] randomScoreCounts,
+                              final HairpinSetScoringAlgorithm algorithm) {
+        this.sortedDistinctRandomScores = sortedDistinctRandomScores;
+        this.randomScoreCounts = randomScoreCounts;
+        this.cumulativeCounts = new int[randomScoreCounts.length + 1];
+        for (int i = 0; i < randomScoreCounts.length; i++) {
+            cumulativeCounts[i + 1] = cumulativeCounts[i] + randomScoreCounts[i];
+        }
+        this.algorithm = algorithm;
+    }
+
+    int getNumRandomScores() {
+        return cumulativeCounts[cumulativeCounts.length - 1];
+    }
+
+    int getNumDistinctRandomScores() {
+        return sortedDistinctRandomScores.length;
+    }
+
+    /**
+     * Ties are found with ==, as in {@link SampledNullDistribution}, so a gene score of 0.0 or -0.0 is tied with
+     * random scores of both.
+     */
+    public double computePValue(final double geneScore) {
+        int numDistinctAtOrBelow = Arrays.binarySearch(sortedDistinctRandomScores, geneScore);
+        final boolean found = numDistinctAtOrBelow >= 0;
+        if (found) {
+            numDistinctAtOrBelow++;
+            while (numDistinctAtOrBelow < sortedDistinctRandomScores.length &&
+                   sortedDistinctRandomScores[numDistinctAtOrBelow] == geneScore) {
+                numDistinctAtOrBelow++;
+            }
+        }
+        else {
+            numDistinctAtOrBelow = -1 * numDistinctAtOrBelow - 1;
+        }
+        final int numBetterRandomScores = SampledNullDistribution.computeNumberBetterRandomScores(found,
+                                                                                                 cumulativeCounts[numDistinctAtOrBelow],
+                                                                                                 getNumRandomScores(),
+                                                                                                 algorithm);
+        return (double) numBetterRandomScores / getNumRandomScores();
+    }
+
+    public double[] computePValues(final double[] geneScores) {
+        final double[] pValues = new double[geneScores.length];
+        for (int i = 0; i < geneScores.length; i++) {
+            pValues[i] = computePValue(geneScores[i]);
+        }
+        return pValues;
+    }
+
+    public GeneScoreAdjuster computeGeneSetSizeAdjustment() {
+        return algorithm.computeGeneSetSizeAdjustment(sortedDistinctRandomScores, randomScoreCounts);
+    }
+}
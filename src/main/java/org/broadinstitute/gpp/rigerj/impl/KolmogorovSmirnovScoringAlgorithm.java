@@ -3,49 +3,150 @@
 package org.broadinstitute.gpp.rigerj.impl;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The Kolmogorov Smirnov hairpin set scoring algorithm.
  *
+ * <p>
+ *
+ * The target hairpins are sorted by index together with their weighted scores in scratch buffers
+ * owned by the algorithm, so scoring a hairpin set does not allocate. As a consequence, instances
+ * are not thread-safe.
+ *
  * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
  */
 public class KolmogorovSmirnovScoringAlgorithm implements HairpinSetScoringAlgorithm {
 
+    /**
+     * Hairpin sets up to this size are sorted with an insertion sort. Larger ones are sorted by packing
+     * the index and the position within the set into a single long.
+     */
+    private static final int MAX_INSERTION_SORT_SIZE = 48;
+
+    private int[] orderedTargetHairpinScoreIndexes = new int[0];
+    private double[] orderedWeightedTargetSetScores = new double[0];
+    private double[] unorderedTargetHairpinSetWeights = new double[0];
+    private long[] packedTargetHairpinScoreIndexes = new long[0];
+
     public double scoreHairpinSet(final int numTotalHairpinScores,
                                   final double[] targetHairpinScores,
                                   final int[] targetHairpinScoreIndexes,
                                   double[] targetHairpinWeights,
                                   final double alpha) {
+        final int numTargetHairpins = targetHairpinScores.length;
+        ensureScratchCapacity(numTargetHairpins);
+        final double[] targetHairpinSetWeights = unorderedTargetHairpinSetWeights;
+        for (int i = 0; i < numTargetHairpins; i++) {
+            targetHairpinSetWeights[i] = computeHairpinSetWeight(targetHairpinScores[i], targetHairpinWeights[i], alpha);
+        }
+        return scoreWeightedHairpinSet(numTotalHairpinScores, targetHairpinScoreIndexes, targetHairpinSetWeights, 0, numTargetHairpins, false);
+    }
 
-        double nonTargetSetScoreWeight = (double) -1 / (numTotalHairpinScores - targetHairpinScores.length);
+    /**
+     * The absolute weighted score of the hairpin, raised to the power alpha. Math.pow(x, 1) is x, and
+     * Math.pow(x, 0) is 1, exactly, so skipping the call for the common alphas does not change any scores.
+     */
+    public double computeHairpinSetWeight(final double hairpinScore, final double hairpinWeight, final double alpha) {
+        final double weightedTargetHairpinScore = hairpinScore * hairpinWeight;
+        if (alpha == 1) {
+            return Math.abs(weightedTargetHairpinScore);
+        }
+        if (alpha == 0) {
+            return 1;
+        }
+        return Math.pow(Math.abs(weightedTargetHairpinScore), alpha);
+    }
 
-        double[] weightedTargetSetScores = new double[targetHairpinScores.length];
+    public double scoreWeightedHairpinSet(final int numTotalHairpinScores,
+                                          final int[] targetHairpinScoreIndexes,
+                                          final double[] targetHairpinSetWeights) {
+        final int numTargetHairpins = targetHairpinScoreIndexes.length;
+        ensureScratchCapacity(numTargetHairpins);
+        return scoreWeightedHairpinSet(numTotalHairpinScores, targetHairpinScoreIndexes, targetHairpinSetWeights, 0, numTargetHairpins, false);
+    }
+
+    /**
+     * Sizes the scratch buffers once for all the hairpin sets, and scores each of them where it lies in the
+     * flat arrays, without copying it out
+     */
+    public void scoreWeightedHairpinSets(final int numTotalHairpinScores,
+                                         final int hairpinSetSize,
+                                         final int numHairpinSets,
+                                         final int[] targetHairpinScoreIndexes,
+                                         final double[] targetHairpinSetWeights,
+                                         final double[] hairpinSetScores) {
+        ensureScratchCapacity(hairpinSetSize);
+        for (int i = 0; i < numHairpinSets; i++) {
+            hairpinSetScores[i] = scoreWeightedHairpinSet(numTotalHairpinScores,
+                                                          targetHairpinScoreIndexes,
+                                                          targetHairpinSetWeights,
+                                                          i * hairpinSetSize,
+                                                          hairpinSetSize,
+                                                          false);
+        }
+    }
+
+    /**
+     * Walks the target hairpins of each hairpin set in the order they are given, without sorting them
+     */
+    public void scoreSortedWeightedHairpinSets(final int numTotalHairpinScores,
+                                               final int hairpinSetSize,
+                                               final int numHairpinSets,
+                                               final int[] targetHairpinScoreIndexes,
+                                               final double[] targetHairpinSetWeights,
+                                               final double[] hairpinSetScores) {
+        ensureScratchCapacity(hairpinSetSize);
+        for (int i = 0; i < numHairpinSets; i++) {
+            hairpinSetScores[i] = scoreWeightedHairpinSet(numTotalHairpinScores,
+                                                          targetHairpinScoreIndexes,
+                                                          targetHairpinSetWeights,
+                                                          i * hairpinSetSize,
+                                                          hairpinSetSize,
+                                                          true);
+        }
+    }
+
+    /**
+     * Scores the hairpin set at positions offset up to offset + numTargetHairpins of the index and weight arrays.
+     * If indexesSorted, the target hairpin score indexes are in ascending order already.
+     */
+    private double scoreWeightedHairpinSet(final int numTotalHairpinScores,
+                                           final int[] targetHairpinScoreIndexes,
+                                           final double[] targetHairpinSetWeights,
+                                           final int offset,
+                                           final int numTargetHairpins,
+                                           final boolean indexesSorted) {
+        double nonTargetSetScoreWeight = (double) -1 / (numTotalHairpinScores - numTargetHairpins);
+
+        // the sum is taken in the original order of the target hairpins, so that the normalized scores
+        // do not depend on how the hairpins are sorted below
+        final double[] weightedTargetSetScores = orderedWeightedTargetSetScores;
         double sumOfWeightedTargetSetScores = 0;
-        for (int i = 0; i < targetHairpinScores.length; i++) {
-            final double rawTargetHairpinScore = targetHairpinScores[i];
-            final double weightedTargetHairpinScore = rawTargetHairpinScore * targetHairpinWeights[i];
-            final double weightedTargetSetScore = Math.pow(Math.abs(weightedTargetHairpinScore), alpha);
+        for (int i = 0; i < numTargetHairpins; i++) {
+            final double weightedTargetSetScore = targetHairpinSetWeights[offset + i];
             weightedTargetSetScores[i] = weightedTargetSetScore;
             sumOfWeightedTargetSetScores += weightedTargetSetScore;
         }
-        
-        Map<Integer,Double> targetHairpinIndexToScoreMap = new HashMap<Integer,Double>();
-        for (int i = 0; i < targetHairpinScores.length; i++) {
-            targetHairpinIndexToScoreMap.put(targetHairpinScoreIndexes[i],
-                                             weightedTargetSetScores[i] / sumOfWeightedTargetSetScores);
-        }
 
-        final int[] orderedTargetHairpinScoreIndexes = copyAndSortTargetHairpinScoreIndexes(targetHairpinScoreIndexes);
+        final int[] orderedIndexes;
+        final int orderedOffset;
+        if (indexesSorted) {
+            orderedIndexes = targetHairpinScoreIndexes;
+            orderedOffset = offset;
+        }
+        else {
+            sortTargetHairpinsByIndex(targetHairpinScoreIndexes, offset, numTargetHairpins);
+            orderedIndexes = orderedTargetHairpinScoreIndexes;
+            orderedOffset = 0;
+        }
 
         double cumulativeScore = 0;
         double maxCumulativeScore = 0;
         double minCumulativeScore = 0;
 
         int lastTargetHairpinIndex = -1;
-        for (int i = 0; i < orderedTargetHairpinScoreIndexes.length; i++) {
-            int targetHairpinIndex = orderedTargetHairpinScoreIndexes[i];
+        for (int i = 0; i < numTargetHairpins; i++) {
+            int targetHairpinIndex = orderedIndexes[orderedOffset + i];
             int numSkippedNonTargetSetScores = targetHairpinIndex - lastTargetHairpinIndex - 1;
 
             // because nonTargetSetScoreWeight is negative, no need to update maxCumulativeScore here
@@ -53,7 +154,7 @@ public class KolmogorovSmirnovScoringAlgorithm implements HairpinSetScoringAlgor
             minCumulativeScore = Math.min(minCumulativeScore, cumulativeScore);
 
             // because the target hairpin score is positive, no need to update minCumulativeScore here
-            cumulativeScore += targetHairpinIndexToScoreMap.get(targetHairpinIndex);
+            cumulativeScore += weightedTargetSetScores[i] / sumOfWeightedTargetSetScores;
             maxCumulativeScore = Math.max(maxCumulativeScore, cumulativeScore);
             
             lastTargetHairpinIndex = targetHairpinIndex;
@@ -74,16 +175,75 @@ public class KolmogorovSmirnovScoringAlgorithm implements HairpinSetScoringAlgor
         return roundToSignificantFigures(hairpinSetScore, 5);
     }
 
-    private int[] copyAndSortTargetHairpinScoreIndexes(final int[] targetHairpinScoreIndexes) {
-        
-        // could probably use Object#clone() for this. cannot use Arrays.copyOf as it is not Java5-compliant
-        final int[] orderedTargetHairpinScoreIndexes = new int[targetHairpinScoreIndexes.length];
-        for (int i = 0; i < targetHairpinScoreIndexes.length; i++) {
-            orderedTargetHairpinScoreIndexes[i] = targetHairpinScoreIndexes[i];
+    private void ensureScratchCapacity(final int numTargetHairpins) {
+        if (orderedTargetHairpinScoreIndexes.length < numTargetHairpins) {
+            orderedTargetHairpinScoreIndexes = new int[numTargetHairpins];
+            orderedWeightedTargetSetScores = new double[numTargetHairpins];
+            unorderedTargetHairpinSetWeights = new double[numTargetHairpins];
+        }
+        if (numTargetHairpins > MAX_INSERTION_SORT_SIZE && packedTargetHairpinScoreIndexes.length < numTargetHairpins) {
+            packedTargetHairpinScoreIndexes = new long[numTargetHairpins];
         }
+    }
+
+    /**
+     * Fills {@link #orderedTargetHairpinScoreIndexes} with the target hairpin score indexes in ascending order,
+     * and reorders {@link #orderedWeightedTargetSetScores} to match. The target hairpin score indexes are read from
+     * position offset onwards, and the caller's index array is not modified.
+     */
+    private void sortTargetHairpinsByIndex(final int[] targetHairpinScoreIndexes, final int offset, final int numTargetHairpins) {
+        final int[] orderedIndexes = orderedTargetHairpinScoreIndexes;
+        final double[] orderedScores = orderedWeightedTargetSetScores;
+        if (numTargetHairpins <= MAX_INSERTION_SORT_SIZE) {
+            for (int i = 0; i < numTargetHairpins; i++) {
+                final int index = targetHairpinScoreIndexes[offset + i];
+                final double score = orderedScores[i];
+                int j = i - 1;
+                while (j >= 0 && orderedIndexes[j] > index) {
+                    orderedIndexes[j + 1] = orderedIndexes[j];
+                    orderedScores[j + 1] = orderedScores[j];
+                    j--;
+                }
+                orderedIndexes[j + 1] = index;
+                orderedScores[j + 1] = score;
+            }
+        }
+        else {
+            final long[] packed = packedTargetHairpinScoreIndexes;
+            for (int i = 0; i < numTargetHairpins; i++) {
+                packed[i] = ((long) targetHairpinScoreIndexes[offset + i] << 32) | i;
+            }
+            Arrays.sort(packed, 0, numTargetHairpins);
+            for (int i = 0; i < numTargetHairpins; i++) {
+                orderedIndexes[i] = (int) (packed[i] >>> 32);
+            }
+            permuteScores(packed, numTargetHairpins);
+        }
+    }
 
-        Arrays.sort(orderedTargetHairpinScoreIndexes);
-        return orderedTargetHairpinScoreIndexes;
+    /**
+     * Reorders {@link #orderedWeightedTargetSetScores} in place so that position i holds the score originally at
+     * the position packed into the low bits of packed[i]. Uses the packed array to mark visited positions.
+     */
+    private void permuteScores(final long[] packed, final int numTargetHairpins) {
+        final double[] scores = orderedWeightedTargetSetScores;
+        for (int start = 0; start < numTargetHairpins; start++) {
+            if (packed[start] < 0) {
+                continue;
+            }
+            final double startScore = scores[start];
+            int i = start;
+            while (true) {
+                final int source = (int) (packed[i] & 0xFFFFFFFFL);
+                packed[i] |= Long.MIN_VALUE;
+                if (source == start) {
+                    scores[i] = startScore;
+                    break;
+                }
+                scores[i] = scores[source];
+                i = source;
+            }
+        }
     }
 
     // thanks to http://stackoverflow.com/questions/202302/rounding-to-an-arbitrary-number-of-significant-digits
@@ -119,9 +279,38 @@ public class KolmogorovSmirnovScoringAlgorithm implements HairpinSetScoringAlgor
                 numNegativeRandomScores++;
             }
         }
-        final double positiveScoreAdjustmentFactor = sumOfPositiveRandomScores / ((double) numPositiveRandomScores); 
-        final double negativeScoreAdjustmentFactor = ((double) -1) * sumOfNegativeRandomScores / ((double) numNegativeRandomScores);
+        return createGeneScoreAdjuster(sumOfPositiveRandomScores / ((double) numPositiveRandomScores),
+                                       ((double) -1) * sumOfNegativeRandomScores / ((double) numNegativeRandomScores));
+    }
+
+    /**
+     * Adds every random score as many times as it occurs, in order, so that the means come out exactly as
+     * they do from the sorted random scores
+     */
+    public GeneScoreAdjuster computeGeneSetSizeAdjustment(double[] sortedDistinctRandomScores, int[] randomScoreCounts) {
+        double sumOfPositiveRandomScores = 0;
+        int numPositiveRandomScores = 0;
+        double sumOfNegativeRandomScores = 0;
+        int numNegativeRandomScores = 0;
+        for (int i = 0; i < sortedDistinctRandomScores.length; i++) {
+            final double randomScore = sortedDistinctRandomScores[i];
+            for (int j = 0; j < randomScoreCounts[i]; j++) {
+                if (randomScore >= 0) {
+                    sumOfPositiveRandomScores += randomScore;
+                    numPositiveRandomScores++;
+                }
+                else {
+                    sumOfNegativeRandomScores += randomScore;
+                    numNegativeRandomScores++;
+                }
+            }
+        }
+        return createGeneScoreAdjuster(sumOfPositiveRandomScores / ((double) numPositiveRandomScores),
+                                       ((double) -1) * sumOfNegativeRandomScores / ((double) numNegativeRandomScores));
+    }
 
+    private static GeneScoreAdjuster createGeneScoreAdjuster(final double positiveScoreAdjustmentFactor,
+                                                             final double negativeScoreAdjustmentFactor) {
         return new GeneScoreAdjuster() {
             
             public double adjustGeneScore(double unadjustedScore) {
@@ -0,0 +1,27 @@
+// org.broadinstitute.gpp.rigerj.impl.NullDistribution
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+/**
+ * The distribution of the scores of random hairpin sets of one gene set size, against which the
+ * genes with that gene set size are scored.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+interface NullDistribution {
+
+    /**
+     * @return the p-value of an unadjusted gene score
+     */
+    double computePValue(double geneScore);
+
+    /**
+     * @return the p-values of all the unadjusted gene scores of a gene set size, in the same order
+     */
+    double[] computePValues(double[] geneScores);
+
+    /**
+     * @return the adjuster for the scores of genes with this gene set size
+     */
+    GeneScoreAdjuster computeGeneSetSizeAdjustment();
+}
@@ -0,0 +1,177 @@
+// org.broadinstitute.gpp.rigerj.impl.NullDistributionCache
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the sorted random scores that make up the null distribution for a gene set size, shared
+ * between the executions of a {@link RigerImpl}. The null distribution for a gene set size depends
+ * only on the scoring method, the hairpin set weights of the hairpins ordered by score, the random
+ * number generator and its seed, and the number of random scores. It does not depend on which gene
+ * owns which hairpin, so reruns of a library, even with a new gene mapping, can skip sampling entirely.
+ * The keys are computed by {@link RigerRun}.
+ *
+ * <p>
+ *
+ * The most recently used null distributions are kept in memory. If a directory is given, every null
+ * distribution is also stored there, one file per key, so that it can be reused by later processes.
+ * The cache is thread safe. The arrays it hands out are shared, and must not be modified.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class NullDistributionCache {
+
+    private static final int FILE_FORMAT_VERSION = 1;
+    private static final String FILE_SUFFIX = ".nulldist";
+
+    private final Map<String,double[]> sortedRandomScoresByKey;
+    private final File directory;
+    private final AtomicLong numHits = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+
+    /**
+     * Creates a cache that keeps up to maxEntries null distributions in memory only.
+     */
+    public NullDistributionCache(final int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    /**
+     * Creates a cache that keeps up to maxEntries null distributions in memory, and all of them in the
+     * directory, which is created if need be.
+     */
+    public NullDistributionCache(final int maxEntries, final File directory) {
+        this.sortedRandomScoresByKey = new LinkedHashMap<String,double[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(final Map.Entry<String,double[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.directory = directory;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("could not create null distribution cache directory " + directory);
+        }
+    }
+
+    /**
+     * @return the number of lookups that found a null distribution, in memory or on disk
+     */
+    public long getNumHits() {
+        return numHits.get();
+    }
+
+    /**
+     * @return the number of lookups that found no null distribution
+     */
+    public long getNumMisses() {
+        return numMisses.get();
+    }
+
+    /**
+     * @return the sorted random scores stored for the key, or null if there are none
+     */
+    double[] get(final String key) {
+        double[] sortedRandomScores;
+        synchronized (sortedRandomScoresByKey) {
+            sortedRandomScores = sortedRandomScoresByKey.get(key);
+        }
+        if (sortedRandomScores == null && directory != null) {
+            sortedRandomScores = readFile(key);
+            if (sortedRandomScores != null) {
+                synchronized (sortedRandomScoresByKey) {
+                    sortedRandomScoresByKey.put(key, sortedRandomScores);
+                }
+            }
+        }
+        if (sortedRandomScores == null) {
+            numMisses.incrementAndGet();
+        }
+        else {
+            numHits.incrementAndGet();
+        }
+        return sortedRandomScores;
+    }
+
+    void put(final String key, final double[] sortedRandomScores) {
+        synchronized (sortedRandomScoresByKey) {
+            sortedRandomScoresByKey.put(key, sortedRandomScores);
+        }
+        if (directory != null) {
+            writeFile(key, sortedRandomScores);
+        }
+    }
+
+    /**
+     * @return the scores in the file for the key, or null if there is no such file, or it cannot be read.
+     * A file that cannot be read is only a cache miss, as the scores can always be computed again.
+     */
+    private double[] readFile(final String key) {
+        final File file = new File(directory, key + FILE_SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (inputStream.readInt() != FILE_FORMAT_VERSION) {
+                    return null;
+                }
+                final double[] sortedRandomScores = new double[inputStream.readInt()];
+                for (int i = 0; i < sortedRandomScores.length; i++) {
+                    sortedRandomScores[i] = inputStream.readDouble();
+                }
+                return sortedRandomScores;
+            }
+            finally {
+                inputStream.close();
+            }
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the scores to a temporary file first, and then moves it into place, so that other processes
+     * sharing the directory never see a partly written file. Failing to write is not an error, as the
+     * cache is only an optimization.
+     */
+    private void writeFile(final String key, final double[] sortedRandomScores) {
+        File temporaryFile = null;
+        try {
+            temporaryFile = File.createTempFile(key, ".tmp", directory);
+            final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            try {
+                outputStream.writeInt(FILE_FORMAT_VERSION);
+                outputStream.writeInt(sortedRandomScores.length);
+                for (double sortedRandomScore : sortedRandomScores) {
+                    outputStream.writeDouble(sortedRandomScore);
+                }
+            }
+            finally {
+                outputStream.close();
+            }
+            Files.move(temporaryFile.toPath(), new File(directory, key + FILE_SUFFIX).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            if (temporaryFile != null) {
+                temporaryFile.delete();
+            }
+        }
+    }
+}
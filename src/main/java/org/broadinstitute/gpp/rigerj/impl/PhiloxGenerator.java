@@ -0,0 +1,110 @@
+// org.broadinstitute.gpp.rigerj.impl.PhiloxGenerator
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+/**
+ * The Philox4x32-10 counter based generator of Salmon et al. ("Parallel random numbers: as easy as 1, 2, 3",
+ * SC 2011). Every block of four 32 bit random numbers is a keyed bijection of a 128 bit counter, with the 64 bit
+ * seed as the key, so any part of the stream can be computed without computing what comes before it.
+ *
+ * <p>
+ *
+ * The counter holds the gene set size and the index of the random hairpin set given to
+ * {@link #startHairpinSet(int, int)}, and the number of the block within the hairpin set. So the random numbers
+ * of a random hairpin set only depend on the seed, the gene set size and the index of the hairpin set, whichever
+ * thread draws it, and whatever was drawn before.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class PhiloxGenerator implements RandomIndexGenerator {
+
+    private static final int NUM_ROUNDS = 10;
+    private static final long M0 = 0xD2511F53L;
+    private static final long M1 = 0xCD9E8D57L;
+    private static final int W0 = 0x9E3779B9;
+    private static final int W1 = 0xBB67AE85;
+
+    private final int key0;
+    private final int key1;
+    private final int[] counter = new int[4];
+    private final int[] block = new int[4];
+    private int blockPosition = block.length;
+
+    PhiloxGenerator(final long seed) {
+        this.key0 = (int) seed;
+        this.key1 = (int) (seed >>> 32);
+    }
+
+    /**
+     * Starts the random numbers of the random hairpin set with the index among the random hairpin sets of the
+     * gene set size
+     */
+    public void startHairpinSet(final int geneSetSize, final int hairpinSetIndex) {
+        counter[0] = 0;
+        counter[1] = hairpinSetIndex;
+        counter[2] = geneSetSize;
+        counter[3] = 0;
+        blockPosition = block.length;
+    }
+
+    /**
+     * @return the next 32 random bits
+     */
+    int nextBits() {
+        if (blockPosition == block.length) {
+            computeBlock(counter, key0, key1, block);
+            counter[0]++;
+            blockPosition = 0;
+        }
+        return block[blockPosition++];
+    }
+
+    public double nextDouble() {
+        final long bits = ((long) nextBits() << 32) | (nextBits() & 0xFFFFFFFFL);
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Lemire's multiply-and-shift method, with rejection of the few values that would bias the result
+     */
+    public int nextInt(final int bound) {
+        long m = (nextBits() & 0xFFFFFFFFL) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound) {
+            final long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                m = (nextBits() & 0xFFFFFFFFL) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * Computes the four random numbers of the counter into the block
+     */
+    static void computeBlock(final int[] counter, final int key0, final int key1, final int[] block) {
+        int c0 = counter[0];
+        int c1 = counter[1];
+        int c2 = counter[2];
+        int c3 = counter[3];
+        int k0 = key0;
+        int k1 = key1;
+        for (int round = 0; round < NUM_ROUNDS; round++) {
+            final long product0 = M0 * (c0 & 0xFFFFFFFFL);
+            final long product1 = M1 * (c2 & 0xFFFFFFFFL);
+            final int next0 = (int) (product1 >>> 32) ^ c1 ^ k0;
+            final int next2 = (int) (product0 >>> 32) ^ c3 ^ k1;
+            c0 = next0;
+            c1 = (int) product1;
+            c2 = next2;
+            c3 = (int) product0;
+            k0 += W0;
+            k1 += W1;
+        }
+        block[0] = c0;
+        block[1] = c1;
+        block[2] = c2;
+        block[3] = c3;
+    }
+}
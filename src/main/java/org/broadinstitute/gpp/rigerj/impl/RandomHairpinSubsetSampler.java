@@ -0,0 +1,260 @@
+// org.broadinstitute.gpp.rigerj.impl.RandomHairpinSubsetSampler
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Arrays;
+
+/**
+ * Picks random subsets of hairpin score indexes, without replacement, into caller-owned buffers.
+ *
+ * <p>
+ *
+ * Picking is done by rejection: indexes are drawn one at a time, and an index that is already in the
+ * subset is drawn again. Membership is tracked in an int array with one slot per hairpin, stamped with
+ * the number of the current pick, so no clearing or allocation is needed between picks. This consumes
+ * the random number generator in exactly the same way as tracking membership in a set would, so that
+ * the same seed produces the same subsets.
+ *
+ * <p>
+ *
+ * Sorted subsets are picked with Vitter's sequential sampling instead, which walks the hairpin score indexes in
+ * ascending order, skipping a random number of them before every index it picks.
+ *
+ * <p>
+ *
+ * Instances are not thread-safe. Each thread needs its own sampler.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class RandomHairpinSubsetSampler {
+
+    /**
+     * Method D switches to Method A once fewer than this many times the number of indexes left to pick remain
+     */
+    private static final int METHOD_D_MIN_NUM_HAIRPINS_PER_PICK = 13;
+
+    private final int numHairpins;
+
+    /**
+     * For each hairpin score index, the number of the last pick in which it was chosen
+     */
+    private final int[] pickNumbers;
+
+    private int currentPickNumber;
+
+    private long numRejectedDraws;
+
+    RandomHairpinSubsetSampler(final int numHairpins) {
+        this.numHairpins = numHairpins;
+        this.pickNumbers = new int[numHairpins];
+    }
+
+    /**
+     * Fills the given buffer with distinct hairpin score indexes, chosen uniformly at random.
+     *
+     * @param random the random number generator to draw from
+     * @param targetHairpinScoreIndexes the buffer to fill. The size of the subset is the length of the buffer,
+     * which must not exceed the number of hairpins.
+     */
+    void pickSubset(final RandomIndexGenerator random, final int[] targetHairpinScoreIndexes) {
+        pickSubset(random, targetHairpinScoreIndexes, 0, targetHairpinScoreIndexes.length);
+    }
+
+    /**
+     * Fills subsetSize positions of the given buffer, from position offset onwards, with distinct hairpin score
+     * indexes, chosen uniformly at random. Picking consecutive subsets into one buffer this way draws exactly the
+     * same indexes as picking each into its own buffer.
+     *
+     * @param subsetSize the size of the subset, which must not exceed the number of hairpins
+     */
+    void pickSubset(final RandomIndexGenerator random,
+                    final int[] targetHairpinScoreIndexes,
+                    final int offset,
+                    final int subsetSize) {
+        final int pickNumber = nextPickNumber();
+        int numPicked = 0;
+        while (numPicked < subsetSize) {
+            final int hairpinScoreIndex = random.nextInt(numHairpins);
+            if (pickNumbers[hairpinScoreIndex] != pickNumber) {
+                pickNumbers[hairpinScoreIndex] = pickNumber;
+                targetHairpinScoreIndexes[offset + numPicked++] = hairpinScoreIndex;
+            }
+            else {
+                numRejectedDraws++;
+            }
+        }
+    }
+
+    /**
+     * Fills subsetSize positions of the given buffer, from position offset onwards, with distinct hairpin score
+     * indexes in ascending order, chosen uniformly at random. This is Vitter's Method D, which takes expected time
+     * proportional to the size of the subset, however many hairpins there are. Skips that Method D draws and rejects
+     * count as rejected draws.
+     *
+     * @param subsetSize the size of the subset, which must not exceed the number of hairpins
+     */
+    void pickSortedSubset(final RandomIndexGenerator random,
+                          final int[] targetHairpinScoreIndexes,
+                          final int offset,
+                          final int subsetSize) {
+        pickSortedSubset(random, targetHairpinScoreIndexes, offset, subsetSize, subsetSize);
+    }
+
+    /**
+     * Fills two positions of the given buffer, from position offset onwards, with the smallest and the second
+     * smallest hairpin score index of a subset of subsetSize hairpin score indexes chosen uniformly at random.
+     * These are the first two indexes {@link #pickSortedSubset(RandomIndexGenerator, int[], int, int)} would pick,
+     * drawn without drawing the rest of the subset, so this takes the same expected time whatever the size of the
+     * subset.
+     *
+     * @param subsetSize the size of the subset, which must be at least 2, and must not exceed the number of hairpins
+     */
+    void pickSmallestTwo(final RandomIndexGenerator random,
+                         final int[] targetHairpinScoreIndexes,
+                         final int offset,
+                         final int subsetSize) {
+        pickSortedSubset(random, targetHairpinScoreIndexes, offset, subsetSize, 2);
+    }
+
+    /**
+     * Picks the first numToReturn indexes of a sorted subset of subsetSize indexes
+     */
+    private void pickSortedSubset(final RandomIndexGenerator random,
+                                  final int[] targetHairpinScoreIndexes,
+                                  final int offset,
+                                  final int subsetSize,
+                                  final int numToReturn) {
+        final int end = offset + numToReturn;
+        int numToPick = subsetSize;
+        int numLeft = numHairpins;
+        int nextIndex = 0;
+        int position = offset;
+        double numToPickInverse = 1.0 / numToPick;
+        double vPrime = Math.exp(Math.log(random.nextDouble()) * numToPickInverse);
+        int qu1 = numLeft - numToPick + 1;
+        int threshold = METHOD_D_MIN_NUM_HAIRPINS_PER_PICK * numToPick;
+        while (numToPick > 1 && threshold < numLeft) {
+            final double numToPickMinusOneInverse = 1.0 / (numToPick - 1);
+            int skip;
+            while (true) {
+                // draw a candidate skip from the continuous approximation of its distribution
+                double x;
+                while (true) {
+                    x = numLeft * (1.0 - vPrime);
+                    skip = (int) x;
+                    if (skip < qu1) {
+                        break;
+                    }
+                    numRejectedDraws++;
+                    vPrime = Math.exp(Math.log(random.nextDouble()) * numToPickInverse);
+                }
+                final double u = random.nextDouble();
+                final double y1 = Math.exp(Math.log(u * numLeft / qu1) * numToPickMinusOneInverse);
+                vPrime = y1 * (1.0 - x / numLeft) * ((double) qu1 / (qu1 - skip));
+                if (vPrime <= 1.0) {
+                    // accepted by the quick test, and vPrime is a fresh variate for the next pick
+                    break;
+                }
+
+                // the exact test
+                double y2 = 1.0;
+                double top = numLeft - 1;
+                double bottom;
+                final int limit;
+                if (numToPick - 1 > skip) {
+                    bottom = numLeft - numToPick;
+                    limit = numLeft - skip;
+                }
+                else {
+                    bottom = numLeft - 1 - skip;
+                    limit = qu1;
+                }
+                for (int t = numLeft - 1; t >= limit; t--) {
+                    y2 = y2 * top / bottom;
+                    top--;
+                    bottom--;
+                }
+                if (numLeft / (numLeft - x) >= y1 * Math.exp(Math.log(y2) * numToPickMinusOneInverse)) {
+                    vPrime = Math.exp(Math.log(random.nextDouble()) * numToPickMinusOneInverse);
+                    break;
+                }
+                numRejectedDraws++;
+                vPrime = Math.exp(Math.log(random.nextDouble()) * numToPickInverse);
+            }
+            nextIndex += skip;
+            targetHairpinScoreIndexes[position++] = nextIndex++;
+            if (position == end) {
+                return;
+            }
+            numLeft -= skip + 1;
+            numToPick--;
+            numToPickInverse = numToPickMinusOneInverse;
+            qu1 -= skip;
+            threshold -= METHOD_D_MIN_NUM_HAIRPINS_PER_PICK;
+        }
+        if (numToPick > 1) {
+            pickSortedSubsetWithMethodA(random, targetHairpinScoreIndexes, position, end, numToPick, numLeft, nextIndex);
+        }
+        else if (numToPick == 1) {
+            targetHairpinScoreIndexes[position] = nextIndex + (int) (numLeft * vPrime);
+        }
+    }
+
+    /**
+     * Vitter's Method A, which takes time proportional to the number of hairpins left, for the last indexes of
+     * {@link #pickSortedSubset}, when few hairpins are left per index to pick. Stops at position end.
+     */
+    private static void pickSortedSubsetWithMethodA(final RandomIndexGenerator random,
+                                                    final int[] targetHairpinScoreIndexes,
+                                                    int position,
+                                                    final int end,
+                                                    int numToPick,
+                                                    final int numLeft,
+                                                    int nextIndex) {
+        double top = numLeft - numToPick;
+        double numLeftReal = numLeft;
+        while (numToPick >= 2 && position < end) {
+            final double v = random.nextDouble();
+            int skip = 0;
+            double quotient = top / numLeftReal;
+            while (quotient > v) {
+                skip++;
+                top--;
+                numLeftReal--;
+                quotient = quotient * top / numLeftReal;
+            }
+            nextIndex += skip;
+            targetHairpinScoreIndexes[position++] = nextIndex++;
+            numLeftReal--;
+            numToPick--;
+        }
+        if (position < end) {
+            targetHairpinScoreIndexes[position] = nextIndex + (int) (numLeftReal * random.nextDouble());
+        }
+    }
+
+    /**
+     * @return the number of indexes drawn so far that were already in the subset being picked, and were
+     * drawn again
+     */
+    long getNumRejectedDraws() {
+        return numRejectedDraws;
+    }
+
+    /**
+     * @return the number of bytes of the membership array
+     */
+    long getNumBytesAllocated() {
+        return 4L * pickNumbers.length;
+    }
+
+    private int nextPickNumber() {
+        currentPickNumber++;
+        if (currentPickNumber == 0) {
+            // wrapped around. forget about all the old picks, and never use 0, as that is the initial value
+            Arrays.fill(pickNumbers, 0);
+            currentPickNumber = 1;
+        }
+        return currentPickNumber;
+    }
+}
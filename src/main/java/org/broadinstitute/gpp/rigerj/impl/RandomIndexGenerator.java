@@ -0,0 +1,31 @@
+// org.broadinstitute.gpp.rigerj.impl.RandomIndexGenerator
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+/**
+ * A source of random hairpin score indexes, used to build null distributions. Implementations are
+ * not expected to be thread-safe.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+interface RandomIndexGenerator {
+
+    /**
+     * @return a uniformly distributed int between 0 (inclusive) and bound (exclusive)
+     */
+    int nextInt(int bound);
+
+    /**
+     * @return a uniformly distributed double between 0 (inclusive) and 1 (exclusive)
+     */
+    double nextDouble();
+
+    /**
+     * Called before the random numbers of every random hairpin set are drawn. A counter based generator starts the
+     * random numbers of that hairpin set here, others just go on with the numbers they were drawing.
+     *
+     * @param hairpinSetIndex the index of the hairpin set among the random hairpin sets of the gene set size
+     */
+    default void startHairpinSet(int geneSetSize, int hairpinSetIndex) {
+    }
+}
@@ -0,0 +1,48 @@
+// org.broadinstitute.gpp.rigerj.impl.RandomIndexGeneratorFactory
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+
+/**
+ * A factory for building a {@link RandomIndexGenerator} based on a {@link RandomNumberGeneratorType}.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+class RandomIndexGeneratorFactory {
+
+    RandomIndexGenerator createRandomIndexGenerator(RandomNumberGeneratorType randomNumberGeneratorType,
+                                                    long randomSeed) {
+        switch (randomNumberGeneratorType) {
+        case LEGACY:
+            final Random random = new Random(randomSeed);
+            return new RandomIndexGenerator() {
+                public int nextInt(int bound) {
+                    return random.nextInt(bound);
+                }
+                public double nextDouble() {
+                    return random.nextDouble();
+                }
+            };
+        case SPLITTABLE:
+            final SplittableRandom splittableRandom = new SplittableRandom(randomSeed);
+            return new RandomIndexGenerator() {
+                public int nextInt(int bound) {
+                    return splittableRandom.nextInt(bound);
+                }
+                public double nextDouble() {
+                    return splittableRandom.nextDouble();
+                }
+            };
+        case XOSHIRO256:
+            return new Xoshiro256StarStarGenerator(randomSeed);
+        case PHILOX:
+            return new PhiloxGenerator(randomSeed);
+        default:
+            throw new RuntimeException("unrecognized RandomNumberGeneratorType: " + randomNumberGeneratorType);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+// org.broadinstitute.gpp.rigerj.impl.RandomScoreHistogram
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Arrays;
+
+/**
+ * Counts how often each distinct random score occurs, in an open addressing hash table keyed by the bits of
+ * the score. The random scores of all the scoring methods take few distinct values: the rank methods score
+ * in quarter ranks, and {@link KolmogorovSmirnovScoringAlgorithm} rounds to 5 significant figures. So the table
+ * stays small however many random scores are counted.
+ *
+ * <p>
+ *
+ * Instances are not thread-safe.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class RandomScoreHistogram {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int numDistinctScores;
+    private int numScores;
+    private long numBytesAllocated = 12L * INITIAL_CAPACITY;
+
+    void add(final double randomScore) {
+        add(Double.doubleToLongBits(randomScore), 1);
+    }
+
+    /**
+     * Adds all the random scores counted in the other histogram
+     */
+    void addAll(final RandomScoreHistogram other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.counts[slot] > 0) {
+                add(other.keys[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    private void add(final long key, final int count) {
+        int slot = findSlot(keys, counts, key);
+        if (counts[slot] == 0) {
+            if (2 * (numDistinctScores + 1) > keys.length) {
+                grow();
+                slot = findSlot(keys, counts, key);
+            }
+            keys[slot] = key;
+            numDistinctScores++;
+        }
+        counts[slot] += count;
+        numScores += count;
+    }
+
+    int getNumScores() {
+        return numScores;
+    }
+
+    int getNumDistinctScores() {
+        return numDistinctScores;
+    }
+
+    /**
+     * @return the number of bytes allocated for the hash table so far, including the tables it outgrew
+     */
+    long getNumBytesAllocated() {
+        return numBytesAllocated;
+    }
+
+    HistogramNullDistribution toNullDistribution(final HairpinSetScoringAlgorithm algorithm) {
+        final double[] sortedDistinctScores = new double[numDistinctScores];
+        for (int slot = 0, i = 0; slot < keys.length; slot++) {
+            if (counts[slot] > 0) {
+                sortedDistinctScores[i++] = Double.longBitsToDouble(keys[slot]);
+            }
+        }
+        Arrays.sort(sortedDistinctScores);
+        final int[] sortedCounts = new int[numDistinctScores];
+        for (int i = 0; i < numDistinctScores; i++) {
+            sortedCounts[i] = counts[findSlot(keys, counts, Double.doubleToLongBits(sortedDistinctScores[i]))];
+        }
+        return new HistogramNullDistribution(sortedDistinctScores, sortedCounts, algorithm);
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final int[] oldCounts = counts;
+        keys = new long[2 * oldKeys.length];
+        counts = new int[2 * oldCounts.length];
+        numBytesAllocated += 12L * keys.length;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldCounts[oldSlot] > 0) {
+                final int slot = findSlot(keys, counts, oldKeys[oldSlot]);
+                keys[slot] = oldKeys[oldSlot];
+                counts[slot] = oldCounts[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * @return the slot holding the key, or the empty slot where it belongs
+     */
+    private static int findSlot(final long[] keys, final int[] counts, final long key) {
+        final int mask = keys.length - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (counts[slot] > 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -9,12 +9,93 @@ package org.broadinstitute.gpp.rigerj.impl;
  */
 public abstract class RankScoringAlgorithm implements HairpinSetScoringAlgorithm {
 
+    public double scoreHairpinSet(int numTotalHairpinScores,
+                                  double[] targetHairpinScores,
+                                  int[] targetHairpinScoreIndexes,
+                                  double[] targetHairpinWeights,
+                                  double alpha) {
+        return scoreWeightedHairpinSet(numTotalHairpinScores, targetHairpinScoreIndexes, targetHairpinWeights);
+    }
+
+    /**
+     * Rank scoring algorithms ignore the hairpin scores and weights
+     */
+    public double computeHairpinSetWeight(double hairpinScore, double hairpinWeight, double alpha) {
+        return 1;
+    }
+
+    /**
+     * Both rank scoring algorithms only look at the best two ranks of a hairpin set, so rather than sorting each
+     * hairpin set, this finds its two smallest indexes in a single pass
+     */
+    public void scoreWeightedHairpinSets(int numTotalHairpinScores,
+                                         int hairpinSetSize,
+                                         int numHairpinSets,
+                                         int[] targetHairpinScoreIndexes,
+                                         double[] targetHairpinSetWeights,
+                                         double[] hairpinSetScores) {
+        for (int i = 0, offset = 0; i < numHairpinSets; i++, offset += hairpinSetSize) {
+            int bestIndex = Integer.MAX_VALUE;
+            int secondBestIndex = Integer.MAX_VALUE;
+            for (int j = offset; j < offset + hairpinSetSize; j++) {
+                final int index = targetHairpinScoreIndexes[j];
+                if (index < bestIndex) {
+                    secondBestIndex = bestIndex;
+                    bestIndex = index;
+                }
+                else if (index < secondBestIndex) {
+                    secondBestIndex = index;
+                }
+            }
+            hairpinSetScores[i] = scoreBestTwoHairpinIndexes(bestIndex, secondBestIndex);
+        }
+    }
+
+    /**
+     * The two smallest indexes of a sorted hairpin set are its first two
+     */
+    public void scoreSortedWeightedHairpinSets(int numTotalHairpinScores,
+                                               int hairpinSetSize,
+                                               int numHairpinSets,
+                                               int[] targetHairpinScoreIndexes,
+                                               double[] targetHairpinSetWeights,
+                                               double[] hairpinSetScores) {
+        for (int i = 0, offset = 0; i < numHairpinSets; i++, offset += hairpinSetSize) {
+            final int secondBestIndex = hairpinSetSize > 1 ? targetHairpinScoreIndexes[offset + 1] : Integer.MAX_VALUE;
+            hairpinSetScores[i] = scoreBestTwoHairpinIndexes(targetHairpinScoreIndexes[offset], secondBestIndex);
+        }
+    }
+
+    /**
+     * @return the score of a hairpin set whose two smallest hairpin score indexes are the ones given
+     */
+    abstract double scoreBestTwoHairpinIndexes(int bestIndex, int secondBestIndex);
+
     /**
      * For second-best and weighted-sum, the gene set size adjustment is the 90th percentile score
      */
     public GeneScoreAdjuster computeGeneSetSizeAdjustment(double[] sortedRandomScores) {
         final double orderStatisticIndex = (double) sortedRandomScores.length * (double) 0.9;
-        final double adjustmentFactor = sortedRandomScores[(int) orderStatisticIndex];
+        return createGeneScoreAdjuster(sortedRandomScores[(int) orderStatisticIndex]);
+    }
+
+    /**
+     * Finds the same 90th percentile score among the distinct random scores
+     */
+    public GeneScoreAdjuster computeGeneSetSizeAdjustment(double[] sortedDistinctRandomScores, int[] randomScoreCounts) {
+        int numRandomScores = 0;
+        for (int randomScoreCount : randomScoreCounts) {
+            numRandomScores += randomScoreCount;
+        }
+        final int orderStatisticIndex = (int) ((double) numRandomScores * (double) 0.9);
+        int i = 0;
+        for (int numAtOrBelow = randomScoreCounts[0]; numAtOrBelow <= orderStatisticIndex; numAtOrBelow += randomScoreCounts[i]) {
+            i++;
+        }
+        return createGeneScoreAdjuster(sortedDistinctRandomScores[i]);
+    }
+
+    private static GeneScoreAdjuster createGeneScoreAdjuster(final double adjustmentFactor) {
         return new GeneScoreAdjuster() {
             
             public double adjustGeneScore(double unadjustedScore) {
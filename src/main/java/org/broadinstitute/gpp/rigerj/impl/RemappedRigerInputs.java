@@ -0,0 +1,100 @@
+// org.broadinstitute.gpp.rigerj.impl.RemappedRigerInputs
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetSamplingMethod;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+
+/**
+ * {@link RigerInputs} that are the same as other inputs, except that some hairpins belong to other genes. This
+ * is the change in the inputs {@link RigerImpl#executeIncrementally(RigerInputs, RigerRunState)} can make the most
+ * of. Moving hairpins to other genes, and merging gene aliases by moving all the hairpins of one gene to another,
+ * are both remappings. The hairpins themselves stay in place, in the same order.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RemappedRigerInputs implements RigerInputs {
+
+    private final RigerInputs rigerInputs;
+    private final Map<String,String> geneNamesByHairpinName;
+
+    /**
+     * @param rigerInputs the inputs to remap
+     * @param geneNamesByHairpinName the new gene of each hairpin that moves to another gene, by hairpin name.
+     * The other hairpins keep their genes.
+     */
+    public RemappedRigerInputs(final RigerInputs rigerInputs, final Map<String,String> geneNamesByHairpinName) {
+        this.rigerInputs = rigerInputs;
+        this.geneNamesByHairpinName = new HashMap<String,String>(geneNamesByHairpinName);
+    }
+
+    public int getNumHairpins() {
+        return rigerInputs.getNumHairpins();
+    }
+
+    public HairpinInput getHairpinInput(int i) {
+        final HairpinInput hairpinInput = rigerInputs.getHairpinInput(i);
+        final String geneName = geneNamesByHairpinName.get(hairpinInput.getHairpinName());
+        if (geneName == null) {
+            return hairpinInput;
+        }
+        final HairpinData hairpinData = new HairpinData(hairpinInput);
+        hairpinData.setGeneName(geneName);
+        return hairpinData;
+    }
+
+    public HairpinSetScoringMethod getHairpinSetScoringMethod() {
+        return rigerInputs.getHairpinSetScoringMethod();
+    }
+
+    public boolean flattenWeights() {
+        return rigerInputs.flattenWeights();
+    }
+
+    public int getNumRandomScoresPerGeneSetSize() {
+        return rigerInputs.getNumRandomScoresPerGeneSetSize();
+    }
+
+    public double getAlpha() {
+        return rigerInputs.getAlpha();
+    }
+
+    public long getRandomSeed() {
+        return rigerInputs.getRandomSeed();
+    }
+
+    public boolean adjustForHairpinSetSize() {
+        return rigerInputs.adjustForHairpinSetSize();
+    }
+
+    public RandomNumberGeneratorType getRandomNumberGeneratorType() {
+        return rigerInputs.getRandomNumberGeneratorType();
+    }
+
+    public HairpinSetSamplingMethod getHairpinSetSamplingMethod() {
+        return rigerInputs.getHairpinSetSamplingMethod();
+    }
+
+    public NullDistributionMethod getNullDistributionMethod() {
+        return rigerInputs.getNullDistributionMethod();
+    }
+
+    public double getAdaptiveRelativePrecision() {
+        return rigerInputs.getAdaptiveRelativePrecision();
+    }
+
+    public int getMaxNumRandomScoresPerGeneSetSize() {
+        return rigerInputs.getMaxNumRandomScoresPerGeneSetSize();
+    }
+
+    public int getNumPermutations() {
+        return rigerInputs.getNumPermutations();
+    }
+}
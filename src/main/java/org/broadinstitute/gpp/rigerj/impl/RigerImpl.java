@@ -3,363 +3,281 @@
 package org.broadinstitute.gpp.rigerj.impl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
-import org.broadinstitute.gpp.rigerj.api.GeneOutput;
-import org.broadinstitute.gpp.rigerj.api.HairpinInput;
-import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.MultiConditionRigerInputs;
 import org.broadinstitute.gpp.rigerj.api.RigerAlgorithm;
 import org.broadinstitute.gpp.rigerj.api.RigerInputs;
-import org.broadinstitute.gpp.rigerj.api.RigerJInputException;
+import org.broadinstitute.gpp.rigerj.api.RigerMetricsListener;
 import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
 
 /**
  * Standard Java implementation of the RIGER algorithm.
  *
+ * <p>
+ *
+ * By default, null distributions for the different gene set sizes are computed one after the
+ * other on the calling thread, all drawing from a single random number generator seeded with
+ * {@link RigerInputs#getRandomSeed()}. When constructed with an {@link ExecutorService}, the null
+ * distributions for the different gene set sizes are computed concurrently on that executor. In
+ * this mode, every gene set size gets its own random number generator, seeded by a value derived
+ * from {@link RigerInputs#getRandomSeed()} and the gene set size, so that the results do not
+ * depend on the number of threads used or the order in which the tasks happen to run. Note that
+ * the results of the parallel mode differ from those of the sequential mode for the same random
+ * seed.
+ *
+ * <p>
+ *
+ * Most libraries give nearly all their genes the same number of hairpins, which leaves a single gene set
+ * size with most of the work. A RigerImpl constructed to split gene set sizes also divides the random
+ * scores of every gene set size into fixed chunks, each drawn by a task of its own from a random number
+ * generator seeded from the seed of the gene set size and the index of the chunk, and scores the genes of
+ * every gene set size in groups. The results again do not depend on the number of threads, but differ from
+ * those of the parallel mode without splitting. Adaptive null distributions are never split.
+ *
+ * <p>
+ *
+ * A RigerImpl holds no state for any particular execution, so {@link #execute(RigerInputs)} may be
+ * called from several threads at once, for example to run many screens in one JVM. Each call works
+ * on its own {@link RigerRun}. Concurrent executions share the executor and the cache, if any. As an
+ * execution waits for its per-gene-set-size tasks on the calling thread, executions must not themselves
+ * be run on the executor given to the RigerImpl, which could then fill up with waiting executions.
+ *
+ * <p>
+ *
+ * A RigerImpl may be given a {@link NullDistributionCache}, in which case null distributions computed
+ * by one execution are reused by later executions that would compute the same ones.
+ *
+ * <p>
+ *
+ * When the same hairpins are analyzed again with a new mapping of hairpins to genes, for example after
+ * reannotating them or merging gene aliases, {@link #executeIncrementally(RigerInputs, RigerRunState)}
+ * takes over the null distributions and gene results of the earlier execution that do not change, and
+ * only computes the rest. Likewise, {@link #execute(MultiConditionRigerInputs)} runs several conditions
+ * screened with one hairpin library, sharing what does not depend on the hairpin scores between them.
+ *
  * @author <a href="https://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
  */
 public class RigerImpl implements RigerAlgorithm {
 
-    private static final int MIN_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE = 10000;
-    
-    /**
-     * The algorithm inputs as supplied by the user
-     */
-    private RigerInputs rigerInputs;
+    private static final RigerMetricsListener NO_METRICS_LISTENER = new RigerMetricsListener() {
+    };
 
     /**
-     * The number of random scores per gene set size, used to calculate
-     * null distributions. This differs from {@link
-     * RigerInputs#getNumRandomScoresPerGeneSetSize() the input parameter
-     * with the same name} in that, the user might have selected a value
-     * less than {@link #MIN_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE the minimum
-     * allowed by the algorithm}.
+     * The executor used to compute null distributions for the different gene set sizes concurrently,
+     * or null if they are to be computed sequentially on the calling thread
      */
-    private int numRandomScoresPerGeneSetSize;
+    private final ExecutorService executorService;
 
     /**
-     * The random number generator used to produce null distributions. This is seeded by user-selected input
-     * parameter {@link RigerInputs#getRandomSeed()}, so the user can run the algorithm reproducibly.
+     * The cache of null distributions shared by the executions, or null if null distributions are always computed
      */
-    private Random randomNumberGenerator;
+    private final NullDistributionCache nullDistributionCache;
 
     /**
-     * The {@link HairpinSetScoringAlgorithm hairpin set scoring algorithm} to use for the RIGER
-     * analysis
+     * Whether the parallel mode splits the work of every gene set size into several tasks
      */
-    private HairpinSetScoringAlgorithm hairpinSetScoringAlgorithm;
+    private final boolean splitGeneSetSizes;
 
     /**
-     * The {@link HairpinData hairpin datas}, ordered by {@link HairpinData#getHairpinScore() score} from smallest to largest
+     * Creates a RigerImpl that computes the null distributions sequentially on the calling thread.
      */
-    private HairpinData[] orderedHairpinDatas;
+    public RigerImpl() {
+        this(null);
+    }
 
     /**
-     * A simple map from the gene name to the {@link GeneData data we are collecting on a gene level}.
+     * Creates a RigerImpl that computes the null distributions for the different gene set sizes
+     * concurrently.
+     *
+     * @param executorService the executor to run the per-gene-set-size tasks on. The caller
+     * remains responsible for shutting it down.
      */
-    private Map<String,GeneData> geneNameToGeneDataMap;
+    public RigerImpl(final ExecutorService executorService) {
+        this(executorService, null);
+    }
 
     /**
-     * A map from gene set size to the {@link GeneData gene datas} for genes that have that set size
+     * Creates a RigerImpl that reuses the null distributions in the cache where it can.
+     *
+     * @param executorService the executor to run the per-gene-set-size tasks on, or null to compute
+     * the null distributions sequentially
+     * @param nullDistributionCache the cache of null distributions, which may be shared with other
+     * RigerImpls, or null for none
      */
-    private Map<Integer,Set<GeneData>> geneSetSizeToGeneDatasMap;
-
-    public synchronized RigerOutputs execute(RigerInputs rigerInputs) {
-        this.rigerInputs = rigerInputs;
-        initializeNumRandomScoresPerGeneSetSize();
-        initializeRandomNumberGenerator();
-        initializeHairpinSetScoringAlgorithm();
-        initializeOrderedHairpinDatas();
-        initializeGeneNameToGeneDataMap();
-        initializeGeneSetSizeToGeneDatasMap();
-        checkAllGeneSetSizesGreaterThanOne();
-        computeGeneScoresAndPValues();
-        GeneData[] geneDatasSortedByPValueRank = computeGeneRanks(); 
-        computePValueRanks();
-        return buildRigerOutputs(geneDatasSortedByPValueRank);
-    }
-    
-    private void initializeNumRandomScoresPerGeneSetSize() {
-        numRandomScoresPerGeneSetSize = rigerInputs.getNumRandomScoresPerGeneSetSize();
-        if (numRandomScoresPerGeneSetSize < MIN_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE) {
-            numRandomScoresPerGeneSetSize = MIN_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE;
-        }
+    public RigerImpl(final ExecutorService executorService, final NullDistributionCache nullDistributionCache) {
+        this(executorService, nullDistributionCache, false);
     }
 
-    private void initializeRandomNumberGenerator() {
-        randomNumberGenerator = new Random(rigerInputs.getRandomSeed());
-    }
-
-    private void initializeHairpinSetScoringAlgorithm() {
-        final HairpinSetScoringAlgorithmFactory factory = new HairpinSetScoringAlgorithmFactory();
-        final HairpinSetScoringMethod method = rigerInputs.getHairpinSetScoringMethod();
-        hairpinSetScoringAlgorithm = factory.createHairpinSetScoringAlgorithm(method);
-    }
-
-    private void initializeOrderedHairpinDatas() {
-        HairpinData[] hairpinDatas = buildUnorderedHairpinDatas();
-        flattenHairpinWeights(hairpinDatas);
-        Arrays.sort(hairpinDatas, new HairpinScoreAscendingComparator());
-        orderedHairpinDatas = hairpinDatas;
+    /**
+     * Creates a RigerImpl that, in the parallel mode, may also split the work of every gene set size into
+     * several tasks.
+     *
+     * @param splitGeneSetSizes whether to split the gene set sizes. Ignored in the sequential mode.
+     */
+    public RigerImpl(final ExecutorService executorService,
+                     final NullDistributionCache nullDistributionCache,
+                     final boolean splitGeneSetSizes) {
+        this.executorService = executorService;
+        this.nullDistributionCache = nullDistributionCache;
+        this.splitGeneSetSizes = splitGeneSetSizes;
     }
 
-    private HairpinData[] buildUnorderedHairpinDatas() {
-        final int numHairpins = rigerInputs.getNumHairpins();
-        final HairpinData[] unorderedHairpinDatas = new HairpinData[numHairpins];
-        for (int i = 0; i < numHairpins; i++) {
-            final HairpinInput hairpinInput = rigerInputs.getHairpinInput(i);
-            final HairpinData hairpinData = new HairpinData(hairpinInput);
-            unorderedHairpinDatas[i] = hairpinData;
-        }
-        return unorderedHairpinDatas;
+    public RigerOutputs execute(RigerInputs rigerInputs) {
+        return execute(rigerInputs, NO_METRICS_LISTENER);
     }
 
-    private void flattenHairpinWeights(final HairpinData[] unorderedHairpinDatas) {
-        if (!rigerInputs.flattenWeights()) {
-            return;
-        }
-        for (final HairpinData hairpinData : unorderedHairpinDatas) {
-            flattenHairpinWeight(hairpinData);
-        }
+    /**
+     * Executes RIGER, reporting the phases of the execution and the null distributions it computes to the listener
+     */
+    public RigerOutputs execute(RigerInputs rigerInputs, RigerMetricsListener metricsListener) {
+        return new RigerRun(rigerInputs, executorService, splitGeneSetSizes, nullDistributionCache, metricsListener).execute();
     }
 
-    private void flattenHairpinWeight(HairpinData hairpinData) {
-        final double hairpinScore = hairpinData.getHairpinScore();
-        // TODO: maybe use -0.00001 and 0.00001 instead of 0 and 0 below
-        if (-0.5 < hairpinScore && hairpinScore < 0) {
-            hairpinData.setHairpinScore(-0.5);
-        }
-        else if (0 < hairpinScore && hairpinScore < 0.5) {
-            hairpinData.setHairpinScore(0.5);
-        }
+    /**
+     * Executes RIGER like {@link #execute(RigerInputs)}, taking over what it can from the previous state, and keeping
+     * its own null distributions in the state it returns, for the next incremental execution. The outputs are the
+     * same as those of {@link #execute(RigerInputs)}, but only the genes whose hairpins changed are scored, and null
+     * distributions are only computed where a run from scratch would compute different ones than the previous state
+     * holds. In the parallel mode, the null distributions of all the gene set sizes the previous state has are taken
+     * over. In the sequential mode, where all the gene set sizes draw from one stream of random numbers, they are only
+     * taken over if the gene set sizes are unchanged. Adaptive null distributions are only taken over for gene set
+     * sizes whose genes are all unchanged.
+     *
+     * <p>
+     *
+     * Nothing is taken over unless the inputs have the same parameters as those of the previous state, and the
+     * previous state comes from a RigerImpl in the same, sequential or parallel, mode. Gene results are only taken over
+     * if the inputs differ from those of the previous state in the mapping of hairpins to genes alone. Null
+     * distributions are also taken over for new hairpin scores where they do not depend on the scores, as for the rank
+     * based scoring methods. In particular, dropping hairpins changes the null distributions of every gene set size,
+     * so it takes a full execution. {@link RemappedRigerInputs} applies a change in the mapping to earlier inputs.
+     *
+     * @param previousState the state of an earlier execution, or null to start from scratch
+     */
+    public RigerRunState executeIncrementally(RigerInputs rigerInputs, RigerRunState previousState) {
+        return executeIncrementally(rigerInputs, previousState, NO_METRICS_LISTENER);
     }
 
     /**
-     * Sorts {@link HairpinData HairpinDatas} by {@link HairpinData#getHairpinScore()} in ascending order
+     * Executes RIGER incrementally, reporting the phases of the execution and the null distributions it computes
+     * to the listener
      */
-    static final class HairpinScoreAscendingComparator implements Comparator<HairpinData> {
-        public int compare(HairpinData hairpinData1, HairpinData hairpinData2) {
-            final double hairpin1Score = hairpinData1.getHairpinScore();
-            final double hairpin2Score = hairpinData2.getHairpinScore();
-            return Double.compare(hairpin1Score, hairpin2Score);
-        }
+    public RigerRunState executeIncrementally(RigerInputs rigerInputs,
+                                              RigerRunState previousState,
+                                              RigerMetricsListener metricsListener) {
+        final RigerRun rigerRun = new RigerRun(rigerInputs,
+                                               executorService,
+                                               splitGeneSetSizes,
+                                               nullDistributionCache,
+                                               metricsListener,
+                                               previousState == null ? null : previousState.getRigerRun(),
+                                               true,
+                                               null);
+        return new RigerRunState(rigerRun, rigerRun.execute());
     }
 
-    private void initializeGeneNameToGeneDataMap() {
-        geneNameToGeneDataMap = new HashMap<String,GeneData>();
-        for (int i = 0; i < orderedHairpinDatas.length; i++) {
-            final HairpinData hairpinData = orderedHairpinDatas[i];
-            final String geneName = hairpinData.getGeneName();
-            GeneData geneData = geneNameToGeneDataMap.get(geneName);
-            if (geneData == null) {
-                geneData = new GeneData();
-                geneData.setGeneName(geneName);
-                geneNameToGeneDataMap.put(geneName, geneData);
-            }
-            geneData.addHairpinData(hairpinData);
-        }
-    }
-    
-    private void initializeGeneSetSizeToGeneDatasMap() {
-        geneSetSizeToGeneDatasMap = new HashMap<Integer,Set<GeneData>>();
-        for (GeneData geneData : geneNameToGeneDataMap.values()) {
-            final int geneSetSize = geneData.getHairpinDatas().size();
-            Set<GeneData> geneDatas = geneSetSizeToGeneDatasMap.get(geneSetSize);
-            if (geneDatas == null) {
-                geneDatas = new HashSet<GeneData>();
-                geneSetSizeToGeneDatasMap.put(geneSetSize, geneDatas);
-            }
-            geneDatas.add(geneData);
+    /**
+     * Executes RIGER for every condition of the inputs, with the same outputs as executing the
+     * {@link MultiConditionRigerInputs#getConditionInputs(int) inputs of each condition} by itself. The genes of the
+     * hairpins are looked up once for all the conditions. The first condition is executed first, and the others then
+     * take over its null distributions wherever they would compute the same ones, which for the rank based scoring
+     * methods, whose null distributions only depend on the number of hairpins, is everywhere. In the parallel mode,
+     * the other conditions are executed concurrently on the executor, each computing the null distributions it does
+     * not take over on its own thread, with the random numbers of the parallel mode. The inputs must then be safe to
+     * read from several threads at once.
+     *
+     * @return the outputs of each condition, in the order of the conditions
+     */
+    public List<RigerOutputs> execute(MultiConditionRigerInputs multiConditionRigerInputs) {
+        final int numConditions = multiConditionRigerInputs.getNumConditions();
+        final List<RigerOutputs> rigerOutputs = new ArrayList<RigerOutputs>();
+        if (numConditions == 0) {
+            return rigerOutputs;
         }
-    }
-
-    private void checkAllGeneSetSizesGreaterThanOne() {
-        Set<GeneData> geneDatas = geneSetSizeToGeneDatasMap.get(1);
-        if (geneDatas != null) {
-            StringBuilder stringBuilder = new StringBuilder();
-            stringBuilder.append("the following genes have just one hairpin: ");
-            for (GeneData geneData : geneDatas) {
-                stringBuilder.append(geneData.getGeneName()).append(" ");
+        final RigerInputs firstConditionInputs = multiConditionRigerInputs.getConditionInputs(0);
+        final HairpinTable.GeneDictionary geneDictionary = new HairpinTable.GeneDictionary(firstConditionInputs);
+        final RigerRun firstConditionRun = new RigerRun(firstConditionInputs,
+                                                        executorService,
+                                                        splitGeneSetSizes,
+                                                        nullDistributionCache,
+                                                        NO_METRICS_LISTENER,
+                                                        null,
+                                                        true,
+                                                        geneDictionary);
+        rigerOutputs.add(firstConditionRun.execute());
+        if (executorService == null) {
+            for (int condition = 1; condition < numConditions; condition++) {
+                rigerOutputs.add(new RigerRun(multiConditionRigerInputs.getConditionInputs(condition),
+                                              null,
+                                              splitGeneSetSizes,
+                                              nullDistributionCache,
+                                              NO_METRICS_LISTENER,
+                                              firstConditionRun,
+                                              false,
+                                              geneDictionary).execute());
             }
-            stringBuilder.append("\nplease exclude these from your input file.");
-            throw new RigerJInputException(stringBuilder.toString());
+            return rigerOutputs;
         }
-    }
 
-    private void computeGeneScoresAndPValues() {
-        // we sort the gene datas first so that the same inputs will get the same
-        // random seeds in computeGeneScoresAndPValues
-        List<Integer> keys = new ArrayList<Integer>(geneSetSizeToGeneDatasMap.keySet());
-        Collections.sort(keys);
-        for (Integer geneSetSize: keys) {
-            final Set<GeneData> geneDatas = geneSetSizeToGeneDatasMap.get(geneSetSize);
-            computeGeneScoresAndPValues(geneSetSize, geneDatas);
+        final List<Future<RigerOutputs>> futures = new ArrayList<Future<RigerOutputs>>();
+        for (int condition = 1; condition < numConditions; condition++) {
+            final RigerRun rigerRun = new RigerRun(multiConditionRigerInputs.getConditionInputs(condition),
+                                                   new CallingThreadExecutorService(),
+                                                   splitGeneSetSizes,
+                                                   nullDistributionCache,
+                                                   NO_METRICS_LISTENER,
+                                                   firstConditionRun,
+                                                   false,
+                                                   geneDictionary);
+            futures.add(executorService.submit(new Callable<RigerOutputs>() {
+                public RigerOutputs call() {
+                    return rigerRun.execute();
+                }
+            }));
         }
-    }
-
-    private void computeGeneScoresAndPValues(final int geneSetSize,
-                                             final Set<GeneData> geneDatas) {
-        final double[] sortedRandomScores = computeSortedRandomGeneScoresForGeneSetSize(geneSetSize);
-        final GeneScoreAdjuster geneSetSizeGeneScoreAdjuster = hairpinSetScoringAlgorithm.computeGeneSetSizeAdjustment(sortedRandomScores);
-        for (GeneData geneData : geneDatas) {
-            computeScoreAndPValueForGene(geneData, sortedRandomScores, geneSetSizeGeneScoreAdjuster);
-        }
-    }
-
-    private double[] computeSortedRandomGeneScoresForGeneSetSize(final int geneSetSize) {
-        final double[] randomScores = new double[numRandomScoresPerGeneSetSize];
-        for (int i = 0; i < numRandomScoresPerGeneSetSize; i++) {
-            OrderedHairpinScoresSubset subset = pickRandomHairpinScoresForGeneSetSize(geneSetSize);
-            randomScores[i] = hairpinSetScoringAlgorithm.scoreHairpinSet(orderedHairpinDatas.length,
-                                                                         subset.targetHairpinScores,
-                                                                         subset.targetHairpinScoreIndexes,
-                                                                         subset.targetHairpinWeights,
-                                                                         rigerInputs.getAlpha());
-        }
-        Arrays.sort(randomScores);
-        return randomScores;
-    }
-
-    private OrderedHairpinScoresSubset pickRandomHairpinScoresForGeneSetSize(final int geneSetSize) {
-        OrderedHairpinScoresSubset subset = new OrderedHairpinScoresSubset();
-        subset.targetHairpinScores = new double[geneSetSize];
-        subset.targetHairpinScoreIndexes = new int[geneSetSize];
-        subset.targetHairpinWeights = new double[geneSetSize];
-
-        Set<Integer> pickedHairpinScoreIndexes = new HashSet<Integer>();
-
-        // be sure to pick _without_ replacement
-        while (pickedHairpinScoreIndexes.size() < geneSetSize) {
-
-            // TODO: the majority of time spent by this algorithm in in this call to #nextInt, regardless of
-            // hairpin set scoring method selected. any further performance improvements should focus on this
-            int hairpinScoreIndex = randomNumberGenerator.nextInt(orderedHairpinDatas.length);
-
-            if (pickedHairpinScoreIndexes.add(hairpinScoreIndex)) {
-                final int subsetIndex = pickedHairpinScoreIndexes.size() - 1;
-                subset.targetHairpinScores[subsetIndex] = orderedHairpinDatas[hairpinScoreIndex].getHairpinScore();
-                subset.targetHairpinScoreIndexes[subsetIndex] = hairpinScoreIndex;
-                subset.targetHairpinWeights[subsetIndex] = orderedHairpinDatas[hairpinScoreIndex].getHairpinWeight();
+        try {
+            for (Future<RigerOutputs> future : futures) {
+                rigerOutputs.add(future.get());
             }
         }
-
-        return subset;
-    }
-    
-    private static final class OrderedHairpinScoresSubset {
-        double[] targetHairpinScores;
-        int[] targetHairpinScoreIndexes;
-        double[] targetHairpinWeights;
-    }
-
-    private void computeScoreAndPValueForGene(final GeneData geneData,
-                                              final double[] sortedRandomScores,
-                                              final GeneScoreAdjuster geneSetSizeGeneScoreAdjuster) {
-        
-        OrderedHairpinScoresSubset subset = getHairpinScoresForGeneData(geneData);
-        double geneScore = hairpinSetScoringAlgorithm.scoreHairpinSet(orderedHairpinDatas.length,
-                                                                      subset.targetHairpinScores,
-                                                                      subset.targetHairpinScoreIndexes,
-                                                                      subset.targetHairpinWeights,
-                                                                      rigerInputs.getAlpha());
-
-        if (rigerInputs.adjustForHairpinSetSize()) {
-            final double adjustedGeneScore = geneSetSizeGeneScoreAdjuster.adjustGeneScore(geneScore);
-            geneData.setGeneScore(adjustedGeneScore);
-        }
-        else {
-            geneData.setGeneScore(geneScore);
-        }
-    
-        int numBetterRandomScores = computeNumberBetterRandomScores(geneScore, sortedRandomScores);
-        double pValue = (double) numBetterRandomScores / sortedRandomScores.length;
-        geneData.setPValue(pValue);
-    }
-
-    private OrderedHairpinScoresSubset getHairpinScoresForGeneData(final GeneData geneData) {
-        int geneSetSize = geneData.getHairpinDatas().size();
-        OrderedHairpinScoresSubset subset = new OrderedHairpinScoresSubset();
-        subset.targetHairpinScores = new double[geneSetSize];
-        subset.targetHairpinScoreIndexes = new int[geneSetSize];
-        subset.targetHairpinWeights = new double[geneSetSize];
-
-        for (int i = 0; i < geneSetSize; i++) {
-            HairpinData hairpinData = geneData.getHairpinDatas().get(i);
-            subset.targetHairpinScores[i] = hairpinData.getHairpinScore();
-            
-            // the following -1 adjustment assumes the ranks in the input file are 1-based
-            subset.targetHairpinScoreIndexes[i] = hairpinData.getHairpinRank() - 1;
-
-            subset.targetHairpinWeights[i] = hairpinData.getHairpinWeight();
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while executing conditions", e);
         }
-        return subset;
-    }
-
-    private int computeNumberBetterRandomScores(double geneScore,
-                                                final double[] sortedRandomScores) {
-        int randomScoresInsertionPoint = Arrays.binarySearch(sortedRandomScores, geneScore);
-        if (randomScoresInsertionPoint >= 0) {
-            
-            // an exact match was found in randomScores.
-            // we need to make sure we find the highest indexed random score with this score
-            // (i.e., pick the rightmost insertion point)
-            while (randomScoresInsertionPoint + 1 < sortedRandomScores.length &&
-                sortedRandomScores[randomScoresInsertionPoint + 1] == geneScore) {
-                randomScoresInsertionPoint++;
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new RuntimeException(e.getCause());
         }
-        else {
-    
-            // no exact match was found. read the javadocs for java.util.Arrays to make sense of this:
-            
-            // if -1, insert point is 0, and we should go to -1
-            // if -2, insert point is 1, and we should go to 0
-            // if -3, insert point is 2, and we should go to 1
-            // if -length, insert point is length-1, and we should go to length-2
-            // if -length-1, insert point is length, and we should go to length-1
-
-            randomScoresInsertionPoint = -1 * randomScoresInsertionPoint - 1;
-        }
-
-        if (hairpinSetScoringAlgorithm.lowScoresRankFirst()) {
-            return randomScoresInsertionPoint + 1;
-        }
-        else {
-            return sortedRandomScores.length - randomScoresInsertionPoint - 1;
-        }
+        return rigerOutputs;
     }
 
     /**
-     * the best gene score gets ranked 1, etc
+     * Derives the seed for the random number generator used for a single gene set size in the
+     * parallel mode. The seed and the gene set size are mixed with the SplitMix64 finalizer, so that
+     * nearby gene set sizes (and nearby user seeds) get unrelated random number sequences.
      */
-    private GeneData[] computeGeneRanks() {
-        GeneData[] geneDatas = geneNameToGeneDataMap.values().toArray(new GeneData[0]);
-        sortGeneDatasByNameForStability(geneDatas);
-        Comparator<GeneData> geneDataComparator =
-            hairpinSetScoringAlgorithm.lowScoresRankFirst() ?
-                new GeneScoreAscendingComparator() : new GeneScoreDescendingComparator();
-        Arrays.sort(geneDatas, geneDataComparator);
-        for (int i = 0; i < geneDatas.length; i++) {
-            geneDatas[i].setGeneRank(i + 1);
-        }
-        return geneDatas;
+    static long deriveGeneSetSizeRandomSeed(final long randomSeed, final int geneSetSize) {
+        long z = randomSeed + geneSetSize * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
-    private void sortGeneDatasByNameForStability(GeneData[] geneDatas) {
-        Comparator<GeneData> comparator = new Comparator<GeneData>() {
-            public int compare(GeneData geneData1, GeneData geneData2) {
-                return geneData1.getGeneName().compareTo(geneData2.getGeneName());
-            }
-        };
-        Arrays.sort(geneDatas, comparator);
+    /**
+     * Derives the seed for the random number generator used for one chunk of the random scores of a gene
+     * set size, when gene set sizes are split, by mixing the index of the chunk into the seed of the gene
+     * set size the same way.
+     */
+    static long deriveChunkRandomSeed(final long geneSetSizeRandomSeed, final int chunk) {
+        return deriveGeneSetSizeRandomSeed(geneSetSizeRandomSeed, chunk);
     }
 
     /**
@@ -384,19 +302,6 @@ public class RigerImpl implements RigerAlgorithm {
         }
     }
 
-    /**
-     * the lowest p-value gets ranked 1, etc
-     */
-    private GeneData[] computePValueRanks() {
-        GeneData[] geneDatas = geneNameToGeneDataMap.values().toArray(new GeneData[0]);
-        sortGeneDatasByNameForStability(geneDatas);
-        Arrays.sort(geneDatas, new PValueAscendingComparator());
-        for (int i = 0; i < geneDatas.length; i++) {
-            geneDatas[i].setPValueRank(i + 1);
-        }
-        return geneDatas;
-    }
-
     /**
      * Sorts {@link GeneData GeneDatas} by {@link GeneData#getPValue()} in ascending order
      */
@@ -407,17 +312,4 @@ public class RigerImpl implements RigerAlgorithm {
             return Double.compare(gene1PValue, gene2PValue);
         }
     }
-
-    private RigerOutputs buildRigerOutputs(final GeneData[] geneDatasSortedByPValueRank) {
-        return new RigerOutputs() {
-
-            public int getNumGenes() {
-                return geneDatasSortedByPValueRank.length;
-            }           
-
-            public GeneOutput getGeneOutput(int i) {
-                return geneDatasSortedByPValueRank[i];
-            } 
-        };
-    }
 }
@@ -0,0 +1,1535 @@
+// org.broadinstitute.gpp.rigerj.impl.RigerRun
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.broadinstitute.gpp.rigerj.api.GeneOutput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetSamplingMethod;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+import org.broadinstitute.gpp.rigerj.api.RigerJInputException;
+import org.broadinstitute.gpp.rigerj.api.RigerMetricsListener;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.broadinstitute.gpp.rigerj.api.RigerPhase;
+
+/**
+ * A single execution of {@link RigerImpl} on one set of {@link RigerInputs}. All the state of the
+ * execution lives here, rather than in the {@link RigerImpl}, so that one {@link RigerImpl} can
+ * execute any number of inputs at the same time. A RigerRun itself is used once, by one thread,
+ * apart from the per-gene-set-size tasks it hands to the executor.
+ *
+ * <p>
+ *
+ * The parameters of the run are read from the {@link RigerInputs} once, when the run is created, and
+ * the hairpins once, when the hairpin table is built, both on the calling thread. The per-gene-set-size
+ * tasks only see those copies, so the inputs need not be thread safe, and a caller that reuses one
+ * mutable inputs object for several executions does not change the parameters of a run in progress.
+ *
+ * @author <a href="https://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class RigerRun {
+
+    private static final int MIN_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE = 10000;
+
+    /**
+     * The number of random scores drawn by one task when the gene set sizes are split, a multiple of the batch size
+     */
+    static final int NUM_RANDOM_SCORES_PER_CHUNK = 8 * RandomHairpinSetBatch.NUM_HAIRPIN_SETS;
+
+    /**
+     * The number of genes scored by one task when the gene set sizes are split
+     */
+    static final int NUM_GENES_PER_CHUNK = 1024;
+
+    /**
+     * The number of permutations of a {@link NullDistributionMethod#PERMUTATION permutation} null distribution drawn
+     * by one task
+     */
+    static final int NUM_PERMUTATIONS_PER_CHUNK = 16;
+
+    /**
+     * The executor used to compute null distributions for the different gene set sizes concurrently,
+     * or null if they are to be computed sequentially on the calling thread
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * Whether the parallel mode also splits the work of every gene set size into several tasks
+     */
+    private final boolean splitGeneSetSizes;
+
+    /**
+     * The cache of null distributions, or null if null distributions are always computed
+     */
+    private final NullDistributionCache nullDistributionCache;
+
+    /**
+     * The listener the phases and the null distributions of the execution are reported to
+     */
+    private final RigerMetricsListener metricsListener;
+
+    /**
+     * The algorithm inputs as supplied by the user
+     */
+    private final RigerInputs rigerInputs;
+
+    /**
+     * The number of random scores per gene set size, used to calculate
+     * null distributions. This differs from {@link
+     * RigerInputs#getNumRandomScoresPerGeneSetSize() the input parameter
+     * with the same name} in that, the user might have selected a value
+     * less than {@link #MIN_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE the minimum
+     * allowed by the algorithm}.
+     */
+    private final int numRandomScoresPerGeneSetSize;
+
+    /*
+     * The parameters of the run, as read from the rigerInputs when the run was created
+     */
+    private final HairpinSetScoringMethod hairpinSetScoringMethod;
+    private final RandomNumberGeneratorType randomNumberGeneratorType;
+    private final HairpinSetSamplingMethod hairpinSetSamplingMethod;
+    private final long randomSeed;
+    private final double alpha;
+    private final boolean adjustForHairpinSetSize;
+    private final NullDistributionMethod nullDistributionMethod;
+    private final double adaptiveRelativePrecision;
+    private final int maxNumRandomScoresPerGeneSetSize;
+    private final int numPermutations;
+
+    /**
+     * The random number generator used to produce null distributions in the sequential mode. This is seeded by
+     * user-selected input parameter {@link RigerInputs#getRandomSeed()}, so the user can run the algorithm reproducibly.
+     */
+    private RandomIndexGenerator randomNumberGenerator;
+
+    /**
+     * The {@link HairpinSetScoringAlgorithm hairpin set scoring algorithm} to use for the RIGER
+     * analysis
+     */
+    private HairpinSetScoringAlgorithm hairpinSetScoringAlgorithm;
+
+    /**
+     * The hairpins, ordered by score from smallest to largest
+     */
+    private HairpinTable hairpinTable;
+
+    /**
+     * The {@link HairpinSetScoringAlgorithm#computeHairpinSetWeight(double, double, double) hairpin set weights}
+     * of the hairpins in the {@link #hairpinTable}, in the same order. These depend only on the hairpin and the
+     * inputs, so they are computed once, rather than for every random hairpin set.
+     */
+    private double[] orderedHairpinSetWeights;
+
+    /**
+     * The {@link GeneData data we are collecting on a gene level}, indexed by gene id in the {@link #hairpinTable}.
+     */
+    private GeneData[] geneDatas;
+
+    /**
+     * A map from gene set size to the {@link GeneData gene datas} for genes that have that set size
+     */
+    private Map<Integer,List<GeneData>> geneSetSizeToGeneDatasMap;
+
+    /**
+     * The number of random scores the null distribution of each gene set size was sampled from, in ascending order
+     * of gene set size
+     */
+    private int[] numRandomScoresForGeneSetSizes;
+
+    /**
+     * A digest of all the inputs the null distributions depend on, other than the gene set sizes, from
+     * which the {@link #nullDistributionCache} keys are built. Only computed if there is a cache.
+     */
+    private MessageDigest nullDistributionDigest;
+
+    /**
+     * The run whose null distributions and gene results this run takes over where it can, or null. Only needed
+     * while the run executes.
+     */
+    private RigerRun previousRun;
+
+    /**
+     * The null distribution of each gene set size, in ascending order of gene set size, if they are to be kept
+     * for a later run to take over, or null
+     */
+    private NullDistribution[] nullDistributionsForGeneSetSizes;
+
+    /**
+     * Whether to keep the {@link #nullDistributionsForGeneSetSizes}
+     */
+    private final boolean keepNullDistributions;
+
+    /**
+     * The null distributions of the {@link #previousRun} that this run takes over, by gene set size
+     */
+    private Map<Integer,NullDistribution> reusedNullDistributions = Collections.emptyMap();
+
+    /**
+     * The number of random scores of the null distributions of the {@link #previousRun}, by gene set size
+     */
+    private Map<Integer,Integer> previousNumRandomScoresByGeneSetSize;
+
+    /**
+     * For each gene, indexed by gene id, the gene data of the {@link #previousRun} for the gene with the same name
+     * and the same hairpins, or null if there was no such gene
+     */
+    private GeneData[] previousGeneDatas;
+
+    /**
+     * The gene dictionary to build the hairpin table with, or null to build one along with the table
+     */
+    private final HairpinTable.GeneDictionary geneDictionary;
+
+    RigerRun(final RigerInputs rigerInputs,
+             final ExecutorService executorService,
+             final boolean splitGeneSetSizes,
+             final NullDistributionCache nullDistributionCache,
+             final RigerMetricsListener metricsListener) {
+        this(rigerInputs, executorService, splitGeneSetSizes, nullDistributionCache, metricsListener, null, false, null);
+    }
+
+    /**
+     * @param previousRun the run to take over null distributions and gene results from where possible, or null.
+     * It must have kept its null distributions.
+     * @param keepNullDistributions whether to keep the null distributions, so that a later run can take them over
+     * @param geneDictionary the gene dictionary of the inputs, or null to build one
+     */
+    RigerRun(final RigerInputs rigerInputs,
+             final ExecutorService executorService,
+             final boolean splitGeneSetSizes,
+             final NullDistributionCache nullDistributionCache,
+             final RigerMetricsListener metricsListener,
+             final RigerRun previousRun,
+             final boolean keepNullDistributions,
+             final HairpinTable.GeneDictionary geneDictionary) {
+        this.rigerInputs = rigerInputs;
+        this.executorService = executorService;
+        this.splitGeneSetSizes = splitGeneSetSizes && executorService != null;
+        this.nullDistributionCache = nullDistributionCache;
+        this.metricsListener = metricsListener;
+        this.previousRun = previousRun;
+        this.keepNullDistributions = keepNullDistributions;
+        this.geneDictionary = geneDictionary;
+        this.numRandomScoresPerGeneSetSize = Math.max(MIN_NUM_RANDOM_SCORES_PER_GENE_SET_SIZE,
+                                                      rigerInputs.getNumRandomScoresPerGeneSetSize());
+        this.hairpinSetScoringMethod = rigerInputs.getHairpinSetScoringMethod();
+        this.randomNumberGeneratorType = rigerInputs.getRandomNumberGeneratorType();
+        this.hairpinSetSamplingMethod = rigerInputs.getHairpinSetSamplingMethod();
+        this.randomSeed = rigerInputs.getRandomSeed();
+        this.alpha = rigerInputs.getAlpha();
+        this.adjustForHairpinSetSize = rigerInputs.adjustForHairpinSetSize();
+        this.nullDistributionMethod = rigerInputs.getNullDistributionMethod();
+        this.adaptiveRelativePrecision = rigerInputs.getAdaptiveRelativePrecision();
+        this.maxNumRandomScoresPerGeneSetSize = rigerInputs.getMaxNumRandomScoresPerGeneSetSize();
+        this.numPermutations = rigerInputs.getNumPermutations();
+    }
+
+    RigerOutputs execute() {
+        long phaseStartTime = startPhase(RigerPhase.INITIALIZE);
+        initializeRandomNumberGenerator();
+        initializeHairpinSetScoringAlgorithm();
+        checkHairpinSetSamplingMethodAvailable();
+        checkNumPermutations();
+        finishPhase(RigerPhase.INITIALIZE, phaseStartTime);
+        phaseStartTime = startPhase(RigerPhase.ORDER_HAIRPINS);
+        initializeHairpinTable();
+        initializeOrderedHairpinSetWeights();
+        finishPhase(RigerPhase.ORDER_HAIRPINS, phaseStartTime);
+        phaseStartTime = startPhase(RigerPhase.MAP_GENES);
+        initializeGeneDatas();
+        initializeGeneSetSizeToGeneDatasMap();
+        initializeNullDistributionDigest();
+        checkAllGeneSetSizesGreaterThanOne();
+        initializeReusedResults();
+        finishPhase(RigerPhase.MAP_GENES, phaseStartTime);
+        phaseStartTime = startPhase(RigerPhase.SCORE_GENES);
+        computeGeneScoresAndPValues();
+        finishPhase(RigerPhase.SCORE_GENES, phaseStartTime);
+
+        // do not hold on to the previous run, or runs taking over from runs would keep all of them in memory
+        previousRun = null;
+        reusedNullDistributions = null;
+        previousGeneDatas = null;
+        phaseStartTime = startPhase(RigerPhase.RANK_GENES);
+        GeneData[] geneDatasSortedByPValueRank = computeGeneRanks(); 
+        computePValueRanks();
+        finishPhase(RigerPhase.RANK_GENES, phaseStartTime);
+        phaseStartTime = startPhase(RigerPhase.BUILD_OUTPUTS);
+        final RigerOutputs rigerOutputs = buildRigerOutputs(geneDatasSortedByPValueRank);
+        finishPhase(RigerPhase.BUILD_OUTPUTS, phaseStartTime);
+        return rigerOutputs;
+    }
+
+    private long startPhase(final RigerPhase phase) {
+        metricsListener.phaseStarted(phase);
+        return System.nanoTime();
+    }
+
+    private void finishPhase(final RigerPhase phase, final long phaseStartTime) {
+        metricsListener.phaseFinished(phase, System.nanoTime() - phaseStartTime);
+    }
+    
+    private void initializeRandomNumberGenerator() {
+        randomNumberGenerator = createRandomNumberGenerator(randomSeed);
+    }
+
+    /**
+     * A counter based generator draws the random numbers of every random hairpin set from the seed of the run, the
+     * gene set size and the index of the hairpin set alone, so it ignores the seeds derived for gene set sizes and
+     * chunks, and every mode draws the same random hairpin sets.
+     */
+    private RandomIndexGenerator createRandomNumberGenerator(final long seed) {
+        final RandomIndexGeneratorFactory factory = new RandomIndexGeneratorFactory();
+        return factory.createRandomIndexGenerator(randomNumberGeneratorType, isCounterBased() ? randomSeed : seed);
+    }
+
+    private boolean isCounterBased() {
+        return randomNumberGeneratorType == RandomNumberGeneratorType.PHILOX;
+    }
+
+    private void initializeHairpinSetScoringAlgorithm() {
+        hairpinSetScoringAlgorithm = createHairpinSetScoringAlgorithm();
+    }
+
+    /**
+     * Only the rank scoring methods score a hairpin set by its best two hairpins alone
+     */
+    private void checkHairpinSetSamplingMethodAvailable() {
+        if (hairpinSetSamplingMethod == HairpinSetSamplingMethod.ORDER_STATISTICS &&
+            !(hairpinSetScoringAlgorithm instanceof RankScoringAlgorithm)) {
+            throw new RigerJInputException("the " + hairpinSetSamplingMethod.getParameterName() +
+                                           " sampling is not available for scoring method " + hairpinSetScoringMethod);
+        }
+    }
+
+    private void checkNumPermutations() {
+        if (nullDistributionMethod == NullDistributionMethod.PERMUTATION && numPermutations < 1) {
+            throw new RigerJInputException("the number of permutations must be at least 1, got " + numPermutations);
+        }
+    }
+
+    private HairpinSetScoringAlgorithm createHairpinSetScoringAlgorithm() {
+        final HairpinSetScoringAlgorithmFactory factory = new HairpinSetScoringAlgorithmFactory();
+        return factory.createHairpinSetScoringAlgorithm(hairpinSetScoringMethod);
+    }
+
+    private void initializeHairpinTable() {
+        hairpinTable = HairpinTable.build(rigerInputs, geneDictionary);
+    }
+
+    private void initializeOrderedHairpinSetWeights() {
+        final double[] scores = hairpinTable.getScores();
+        final double[] weights = hairpinTable.getWeights();
+        orderedHairpinSetWeights = new double[hairpinTable.getNumHairpins()];
+        for (int i = 0; i < orderedHairpinSetWeights.length; i++) {
+            orderedHairpinSetWeights[i] = hairpinSetScoringAlgorithm.computeHairpinSetWeight(scores[i], weights[i], alpha);
+        }
+    }
+
+    private void initializeGeneDatas() {
+        geneDatas = new GeneData[hairpinTable.getNumGenes()];
+        for (int geneId = 0; geneId < geneDatas.length; geneId++) {
+            geneDatas[geneId] = new GeneData(hairpinTable, geneId);
+        }
+    }
+    
+    private void initializeGeneSetSizeToGeneDatasMap() {
+        geneSetSizeToGeneDatasMap = new HashMap<Integer,List<GeneData>>();
+        for (GeneData geneData : geneDatas) {
+            final int geneSetSize = geneData.getNumHairpins();
+            List<GeneData> geneDatasForSize = geneSetSizeToGeneDatasMap.get(geneSetSize);
+            if (geneDatasForSize == null) {
+                geneDatasForSize = new ArrayList<GeneData>();
+                geneSetSizeToGeneDatasMap.put(geneSetSize, geneDatasForSize);
+            }
+            geneDatasForSize.add(geneData);
+        }
+    }
+
+    /**
+     * The null distributions depend on the hairpins only through the number of hairpins and the hairpin set
+     * weights in score order. For the rank based methods all the weights are 1, so they only depend on the
+     * number of hairpins.
+     */
+    private void initializeNullDistributionDigest() {
+        if (nullDistributionCache == null) {
+            return;
+        }
+        try {
+            nullDistributionDigest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        updateNullDistributionDigest(nullDistributionDigest, hairpinSetScoringMethod.name());
+        updateNullDistributionDigest(nullDistributionDigest, randomNumberGeneratorType.name());
+        updateNullDistributionDigest(nullDistributionDigest, hairpinSetSamplingMethod.name());
+        updateNullDistributionDigest(nullDistributionDigest, randomSeed);
+        updateNullDistributionDigest(nullDistributionDigest, numRandomScoresPerGeneSetSize);
+        updateNullDistributionDigest(nullDistributionDigest, orderedHairpinSetWeights.length);
+        for (double orderedHairpinSetWeight : orderedHairpinSetWeights) {
+            updateNullDistributionDigest(nullDistributionDigest, Double.doubleToLongBits(orderedHairpinSetWeight));
+        }
+    }
+
+    /**
+     * In the sequential mode, the null distribution for a gene set size also depends on how many random
+     * numbers were drawn for the smaller gene set sizes before it, so the key includes all of them. In the
+     * parallel mode, every gene set size has its own random number generator. A counter based generator draws
+     * the same random numbers for a gene set size in every mode.
+     *
+     * @param geneSetSizes the gene set sizes of the run, in ascending order
+     */
+    private String getNullDistributionKey(final List<Integer> geneSetSizes, final int geneSetSizeIndex) {
+        final MessageDigest digest;
+        try {
+            digest = (MessageDigest) nullDistributionDigest.clone();
+        }
+        catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+        if (isCounterBased()) {
+            updateNullDistributionDigest(digest, "counter");
+            updateNullDistributionDigest(digest, geneSetSizes.get(geneSetSizeIndex));
+        }
+        else if (executorService == null) {
+            updateNullDistributionDigest(digest, "sequential");
+            for (int i = 0; i <= geneSetSizeIndex; i++) {
+                updateNullDistributionDigest(digest, geneSetSizes.get(i));
+            }
+        }
+        else {
+            updateNullDistributionDigest(digest, splitGeneSetSizes ? "split" : "parallel");
+            updateNullDistributionDigest(digest, geneSetSizes.get(geneSetSizeIndex));
+        }
+        final StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    private static void updateNullDistributionDigest(final MessageDigest digest, final String value) {
+        final byte[] bytes = value.getBytes(Charset.forName("UTF-8"));
+        updateNullDistributionDigest(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void updateNullDistributionDigest(final MessageDigest digest, final long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+    }
+
+    private void checkAllGeneSetSizesGreaterThanOne() {
+        List<GeneData> singleHairpinGeneDatas = geneSetSizeToGeneDatasMap.get(1);
+        if (singleHairpinGeneDatas != null) {
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("the following genes have just one hairpin: ");
+            for (GeneData geneData : singleHairpinGeneDatas) {
+                stringBuilder.append(geneData.getGeneName()).append(" ");
+            }
+            stringBuilder.append("\nplease exclude these from your input file.");
+            throw new RigerJInputException(stringBuilder.toString());
+        }
+    }
+
+    /**
+     * Finds what this run can take over from the {@link #previousRun}. Null distributions can only be taken over if
+     * both runs have the same parameters and the same hairpin set weights in the same order, which is all the null
+     * distributions depend on. That is the case for runs on the same hairpins that differ in nothing but the mapping
+     * of hairpins to genes, and for the rank based scoring methods, whose hairpin set weights are all the same, also
+     * for runs on the same number of hairpins with other scores. A null distribution of the previous run is then
+     * taken over wherever a run from scratch would compute exactly the same one:
+     * <ul>
+     * <li>Exact null distributions are taken over for every gene set size of the previous run.</li>
+     * <li>Sampled ones in the parallel mode, or with a counter based random number generator, are taken over for
+     * every gene set size of the previous run. The random numbers of a gene set size do not depend on the other
+     * gene set sizes there.</li>
+     * <li>Sampled ones in the sequential mode with any other generator are taken over only if the gene set sizes
+     * are exactly those of the previous run. The gene set sizes share one stream of random numbers there.</li>
+     * <li>Adaptive ones are taken over only for gene set sizes whose genes are all unchanged, as they also depend on
+     * the scores of the genes.</li>
+     * <li>Permutation ones are never taken over, as they depend on the genes of all the gene set sizes.</li>
+     * </ul>
+     *
+     * <p>
+     *
+     * The gene score and p-value of a gene are taken over if the null distribution of its gene set size is, both runs
+     * have the same hairpins in the same order, and the previous run had a gene with the same name and the same
+     * hairpins.
+     */
+    private void initializeReusedResults() {
+        if (previousRun == null ||
+            previousRun.nullDistributionsForGeneSetSizes == null ||
+            nullDistributionMethod == NullDistributionMethod.PERMUTATION ||
+            !hasSameParameters(previousRun) ||
+            !Arrays.equals(orderedHairpinSetWeights, previousRun.orderedHairpinSetWeights)) {
+            return;
+        }
+        previousNumRandomScoresByGeneSetSize = previousRun.buildNumRandomScoresByGeneSetSize();
+        previousGeneDatas = new GeneData[geneDatas.length];
+        if (hairpinTable.hasSameOrderedHairpins(previousRun.hairpinTable)) {
+            final Map<String,GeneData> previousGeneDatasByName = new HashMap<String,GeneData>();
+            for (GeneData previousGeneData : previousRun.geneDatas) {
+                previousGeneDatasByName.put(previousGeneData.getGeneName(), previousGeneData);
+            }
+            for (GeneData geneData : geneDatas) {
+                final GeneData previousGeneData = previousGeneDatasByName.get(geneData.getGeneName());
+                if (previousGeneData != null && haveSameHairpins(geneData, previousGeneData)) {
+                    previousGeneDatas[geneData.getGeneId()] = previousGeneData;
+                }
+            }
+        }
+
+        final List<Integer> geneSetSizes = new ArrayList<Integer>(geneSetSizeToGeneDatasMap.keySet());
+        Collections.sort(geneSetSizes);
+        final List<Integer> previousGeneSetSizes = new ArrayList<Integer>(previousRun.geneSetSizeToGeneDatasMap.keySet());
+        Collections.sort(previousGeneSetSizes);
+        final boolean sequential = executorService == null &&
+                                   nullDistributionMethod != NullDistributionMethod.EXACT &&
+                                   !isCounterBased();
+        if (sequential && !geneSetSizes.equals(previousGeneSetSizes)) {
+            return;
+        }
+        final Map<Integer,NullDistribution> nullDistributions = new HashMap<Integer,NullDistribution>();
+        for (Integer geneSetSize : geneSetSizes) {
+            final int previousGeneSetSizeIndex = Collections.binarySearch(previousGeneSetSizes, geneSetSize);
+            if (previousGeneSetSizeIndex < 0) {
+                continue;
+            }
+            if (nullDistributionMethod == NullDistributionMethod.ADAPTIVE && !areGenesUnchanged(geneSetSize)) {
+                if (sequential) {
+                    return;
+                }
+                continue;
+            }
+            nullDistributions.put(geneSetSize, previousRun.nullDistributionsForGeneSetSizes[previousGeneSetSizeIndex]);
+        }
+        reusedNullDistributions = nullDistributions;
+    }
+
+    private boolean hasSameParameters(final RigerRun other) {
+        return (isCounterBased() ||
+                (executorService == null) == (other.executorService == null) && splitGeneSetSizes == other.splitGeneSetSizes) &&
+               numRandomScoresPerGeneSetSize == other.numRandomScoresPerGeneSetSize &&
+               hairpinSetScoringMethod == other.hairpinSetScoringMethod &&
+               randomNumberGeneratorType == other.randomNumberGeneratorType &&
+               hairpinSetSamplingMethod == other.hairpinSetSamplingMethod &&
+               randomSeed == other.randomSeed &&
+               Double.compare(alpha, other.alpha) == 0 &&
+               adjustForHairpinSetSize == other.adjustForHairpinSetSize &&
+               nullDistributionMethod == other.nullDistributionMethod &&
+               Double.compare(adaptiveRelativePrecision, other.adaptiveRelativePrecision) == 0 &&
+               maxNumRandomScoresPerGeneSetSize == other.maxNumRandomScoresPerGeneSetSize &&
+               numPermutations == other.numPermutations;
+    }
+
+    /**
+     * @param previousGeneData a gene of the {@link #previousRun}, whose hairpin table has the same hairpins in the same
+     * order as this run's
+     */
+    private static boolean haveSameHairpins(final GeneData geneData, final GeneData previousGeneData) {
+        if (geneData.getNumHairpins() != previousGeneData.getNumHairpins()) {
+            return false;
+        }
+        for (int i = 0; i < geneData.getNumHairpins(); i++) {
+            if (geneData.hairpinTable.getGeneHairpinPosition(geneData.getGeneId(), i) !=
+                previousGeneData.hairpinTable.getGeneHairpinPosition(previousGeneData.getGeneId(), i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the genes with the gene set size are exactly those of the {@link #previousRun} with that gene set size
+     */
+    private boolean areGenesUnchanged(final int geneSetSize) {
+        final List<GeneData> geneDatasForSize = geneSetSizeToGeneDatasMap.get(geneSetSize);
+        final List<GeneData> previousGeneDatasForSize = previousRun.geneSetSizeToGeneDatasMap.get(geneSetSize);
+        if (previousGeneDatasForSize == null || previousGeneDatasForSize.size() != geneDatasForSize.size()) {
+            return false;
+        }
+        for (GeneData geneData : geneDatasForSize) {
+            if (previousGeneDatas[geneData.getGeneId()] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the null distribution of the {@link #previousRun} for the gene set size, recording how many random
+     * scores it is made of, or null if it cannot be taken over
+     */
+    private NullDistribution getReusedNullDistribution(final int geneSetSize, final int geneSetSizeIndex) {
+        final NullDistribution nullDistribution = reusedNullDistributions.get(geneSetSize);
+        if (nullDistribution != null && previousNumRandomScoresByGeneSetSize.containsKey(geneSetSize)) {
+            numRandomScoresForGeneSetSizes[geneSetSizeIndex] = previousNumRandomScoresByGeneSetSize.get(geneSetSize);
+        }
+        return nullDistribution;
+    }
+
+    private void keepNullDistribution(final int geneSetSizeIndex, final NullDistribution nullDistribution) {
+        if (nullDistributionsForGeneSetSizes != null) {
+            nullDistributionsForGeneSetSizes[geneSetSizeIndex] = nullDistribution;
+        }
+    }
+
+    private void computeGeneScoresAndPValues() {
+        // we sort the gene datas first so that the same inputs will get the same
+        // random seeds in computeGeneScoresAndPValues
+        List<Integer> keys = new ArrayList<Integer>(geneSetSizeToGeneDatasMap.keySet());
+        Collections.sort(keys);
+        numRandomScoresForGeneSetSizes = new int[keys.size()];
+        if (keepNullDistributions) {
+            nullDistributionsForGeneSetSizes = new NullDistribution[keys.size()];
+        }
+        if (nullDistributionMethod == NullDistributionMethod.EXACT) {
+            computeGeneScoresAndExactPValues(keys);
+        }
+        else if (nullDistributionMethod == NullDistributionMethod.PERMUTATION) {
+            computeGeneScoresAndPermutationPValues(keys);
+        }
+        else if (executorService == null) {
+            computeGeneScoresAndPValuesSequentially(keys);
+        }
+        else if (splitGeneSetSizes && nullDistributionMethod != NullDistributionMethod.ADAPTIVE) {
+            computeGeneScoresAndPValuesInChunks(keys);
+        }
+        else {
+            computeGeneScoresAndPValuesConcurrently(keys);
+        }
+    }
+
+    private void computeGeneScoresAndPValuesSequentially(final List<Integer> geneSetSizes) {
+        // the null distributions of the previous run are either taken over for all the gene set sizes, or for none,
+        // unless the random number generator is counter based
+        final double[][] cachedSortedRandomScores = reusedNullDistributions.isEmpty() || isCounterBased() ?
+            getCachedSortedRandomScoresForAllGeneSetSizes(geneSetSizes) : null;
+        for (int i = 0; i < geneSetSizes.size(); i++) {
+            NullDistribution nullDistribution = getReusedNullDistribution(geneSetSizes.get(i), i);
+            final boolean reused = nullDistribution != null;
+            if (!reused && cachedSortedRandomScores != null && cachedSortedRandomScores[i] != null) {
+                nullDistribution = new SampledNullDistribution(cachedSortedRandomScores[i], hairpinSetScoringAlgorithm);
+                numRandomScoresForGeneSetSizes[i] = cachedSortedRandomScores[i].length;
+            }
+            else if (!reused) {
+                nullDistribution = createSampledNullDistribution(geneSetSizes, i, randomNumberGenerator, hairpinSetScoringAlgorithm);
+            }
+            keepNullDistribution(i, nullDistribution);
+            computeGeneScoresAndPValues(geneSetSizeToGeneDatasMap.get(geneSetSizes.get(i)), nullDistribution, reused, hairpinSetScoringAlgorithm);
+        }
+    }
+
+    /**
+     * The exact null distributions take time linear in the number of hairpins, with no sampling, so they are
+     * computed on the calling thread even in the parallel mode.
+     */
+    private void computeGeneScoresAndExactPValues(final List<Integer> geneSetSizes) {
+        for (int i = 0; i < geneSetSizes.size(); i++) {
+            final int geneSetSize = geneSetSizes.get(i);
+            NullDistribution nullDistribution = getReusedNullDistribution(geneSetSize, i);
+            final boolean reused = nullDistribution != null;
+            if (!reused) {
+                final long startTime = System.nanoTime();
+                nullDistribution = ExactRankNullDistribution.create(hairpinSetScoringMethod, hairpinTable.getNumHairpins(), geneSetSize);
+                metricsListener.nullDistributionComputed(geneSetSize, 0, 0, 16L * (hairpinTable.getNumHairpins() + 1), System.nanoTime() - startTime);
+            }
+            keepNullDistribution(i, nullDistribution);
+            computeGeneScoresAndPValues(geneSetSizeToGeneDatasMap.get(geneSetSize), nullDistribution, reused, hairpinSetScoringAlgorithm);
+        }
+    }
+
+    private void computeGeneScoresAndPValuesConcurrently(final List<Integer> geneSetSizes) {
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < geneSetSizes.size(); i++) {
+            final int geneSetSize = geneSetSizes.get(i);
+            final int geneSetSizeIndex = i;
+            final List<GeneData> geneDatasForSize = geneSetSizeToGeneDatasMap.get(geneSetSize);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    final HairpinSetScoringAlgorithm algorithm = createHairpinSetScoringAlgorithm();
+                    NullDistribution nullDistribution = getReusedNullDistribution(geneSetSize, geneSetSizeIndex);
+                    final boolean reused = nullDistribution != null;
+                    if (!reused && isNullDistributionCached()) {
+                        final double[] sortedRandomScores = nullDistributionCache.get(getNullDistributionKey(geneSetSizes, geneSetSizeIndex));
+                        if (sortedRandomScores != null) {
+                            nullDistribution = new SampledNullDistribution(sortedRandomScores, algorithm);
+                            numRandomScoresForGeneSetSizes[geneSetSizeIndex] = sortedRandomScores.length;
+                        }
+                    }
+                    if (nullDistribution == null) {
+                        final long geneSetSizeRandomSeed = RigerImpl.deriveGeneSetSizeRandomSeed(randomSeed, geneSetSize);
+                        nullDistribution = createSampledNullDistribution(geneSetSizes,
+                                                                         geneSetSizeIndex,
+                                                                         createRandomNumberGenerator(geneSetSizeRandomSeed),
+                                                                         algorithm);
+                    }
+                    keepNullDistribution(geneSetSizeIndex, nullDistribution);
+                    computeGeneScoresAndPValues(geneDatasForSize, nullDistribution, reused, algorithm);
+                    return null;
+                }
+            });
+        }
+        runTasks(tasks);
+    }
+
+    /**
+     * Splits the work of every gene set size into several tasks, so that a library whose genes nearly all have the
+     * same number of hairpins still keeps all the threads of the executor busy. The random scores of a gene set size
+     * are drawn in chunks of {@link #NUM_RANDOM_SCORES_PER_CHUNK}, each from its own random number generator, seeded
+     * from the seed of the gene set size and the index of the chunk, so the results still do not depend on the number
+     * of threads. Once all the chunks are drawn, the sorted chunks of every gene set size are merged into its null
+     * distribution, and then its genes are scored {@link #NUM_GENES_PER_CHUNK} at a time. No task waits for another,
+     * the calling thread waits for each of the three stages in turn.
+     */
+    private void computeGeneScoresAndPValuesInChunks(final List<Integer> geneSetSizes) {
+        final NullDistribution[] nullDistributions = new NullDistribution[geneSetSizes.size()];
+        final boolean[] reused = new boolean[geneSetSizes.size()];
+        final List<Callable<Void>> chunkTasks = new ArrayList<Callable<Void>>();
+        final List<Callable<Void>> mergeTasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < geneSetSizes.size(); i++) {
+            final int geneSetSizeIndex = i;
+            nullDistributions[i] = getReusedNullDistribution(geneSetSizes.get(i), i);
+            reused[i] = nullDistributions[i] != null;
+            if (!reused[i] && isNullDistributionCached()) {
+                final double[] sortedRandomScores = nullDistributionCache.get(getNullDistributionKey(geneSetSizes, i));
+                if (sortedRandomScores != null) {
+                    nullDistributions[i] = new SampledNullDistribution(sortedRandomScores, createHairpinSetScoringAlgorithm());
+                    numRandomScoresForGeneSetSizes[i] = sortedRandomScores.length;
+                }
+            }
+            if (nullDistributions[i] == null) {
+                final RandomScoreChunks chunks = new RandomScoreChunks(geneSetSizes.get(i));
+                for (int chunk = 0; chunk < chunks.getNumChunks(); chunk++) {
+                    final int chunkIndex = chunk;
+                    chunkTasks.add(new Callable<Void>() {
+                        public Void call() {
+                            chunks.computeChunk(chunkIndex);
+                            return null;
+                        }
+                    });
+                }
+                mergeTasks.add(new Callable<Void>() {
+                    public Void call() {
+                        nullDistributions[geneSetSizeIndex] = chunks.merge(geneSetSizes, geneSetSizeIndex);
+                        return null;
+                    }
+                });
+            }
+        }
+        runTasks(chunkTasks);
+        runTasks(mergeTasks);
+
+        final List<Callable<Void>> scoreTasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < geneSetSizes.size(); i++) {
+            final NullDistribution nullDistribution = nullDistributions[i];
+            final boolean nullDistributionReused = reused[i];
+            keepNullDistribution(i, nullDistribution);
+            final List<GeneData> geneDatasForSize = geneSetSizeToGeneDatasMap.get(geneSetSizes.get(i));
+            for (int from = 0; from < geneDatasForSize.size(); from += NUM_GENES_PER_CHUNK) {
+                final List<GeneData> geneDatasForChunk =
+                    geneDatasForSize.subList(from, Math.min(geneDatasForSize.size(), from + NUM_GENES_PER_CHUNK));
+                scoreTasks.add(new Callable<Void>() {
+                    public Void call() {
+                        computeGeneScoresAndPValues(geneDatasForChunk,
+                                                    nullDistribution,
+                                                    nullDistributionReused,
+                                                    createHairpinSetScoringAlgorithm());
+                        return null;
+                    }
+                });
+            }
+        }
+        runTasks(scoreTasks);
+    }
+
+    /**
+     * Draws the permutations of the genes in chunks of {@link #NUM_PERMUTATIONS_PER_CHUNK}, each from its own random
+     * number generator, seeded from the seed of the run and the index of the chunk, so the results do not depend on
+     * the number of threads, or on whether there is an executor at all. Once all the chunks are drawn, the null
+     * distribution of every gene set size is sorted, and its genes are scored, one task per gene set size.
+     */
+    private void computeGeneScoresAndPermutationPValues(final List<Integer> geneSetSizes) {
+        final GenePermutations permutations = new GenePermutations(geneSetSizes);
+        final List<Callable<Void>> chunkTasks = new ArrayList<Callable<Void>>();
+        for (int chunk = 0; chunk < permutations.getNumChunks(); chunk++) {
+            final int chunkIndex = chunk;
+            chunkTasks.add(new Callable<Void>() {
+                public Void call() {
+                    permutations.computeChunk(chunkIndex);
+                    return null;
+                }
+            });
+        }
+        runTasks(chunkTasks);
+
+        final List<Callable<Void>> scoreTasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < geneSetSizes.size(); i++) {
+            final int geneSetSizeIndex = i;
+            final List<GeneData> geneDatasForSize = geneSetSizeToGeneDatasMap.get(geneSetSizes.get(i));
+            scoreTasks.add(new Callable<Void>() {
+                public Void call() {
+                    final HairpinSetScoringAlgorithm algorithm = createHairpinSetScoringAlgorithm();
+                    final NullDistribution nullDistribution = permutations.toNullDistribution(geneSetSizeIndex, algorithm);
+                    keepNullDistribution(geneSetSizeIndex, nullDistribution);
+                    computeGeneScoresAndPValues(geneDatasForSize, nullDistribution, false, algorithm);
+                    return null;
+                }
+            });
+        }
+        runTasks(scoreTasks);
+    }
+
+    /**
+     * Runs the tasks on the {@link #executorService}, and waits for all of them to finish. Without an executor,
+     * runs them one after the other on the calling thread.
+     */
+    private void runTasks(final List<Callable<Void>> tasks) {
+        if (executorService == null) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return;
+        }
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executorService.submit(task));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while computing null distributions", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The random number generator of the sequential mode is shared by all the gene set sizes, so a cached
+     * null distribution can only be used if those for all the gene set sizes are cached. Otherwise they are
+     * all computed again, to draw the same random numbers as a run without the cache would. A counter based
+     * generator draws the same random numbers for a gene set size whatever was drawn before, so then every cached
+     * null distribution is used.
+     *
+     * @return the cached sorted random scores for every gene set size, or null if any is missing. For a counter
+     * based generator, those that are missing are null.
+     */
+    private double[][] getCachedSortedRandomScoresForAllGeneSetSizes(final List<Integer> geneSetSizes) {
+        if (!isNullDistributionCached()) {
+            return null;
+        }
+        final double[][] cachedSortedRandomScores = new double[geneSetSizes.size()][];
+        for (int i = 0; i < geneSetSizes.size(); i++) {
+            cachedSortedRandomScores[i] = nullDistributionCache.get(getNullDistributionKey(geneSetSizes, i));
+            if (cachedSortedRandomScores[i] == null && !isCounterBased()) {
+                return null;
+            }
+        }
+        return cachedSortedRandomScores;
+    }
+
+    /**
+     * Adaptive null distributions depend on the scores of the genes, so they are never cached.
+     */
+    private boolean isNullDistributionCached() {
+        return nullDistributionCache != null && nullDistributionMethod == NullDistributionMethod.SAMPLED;
+    }
+
+    /**
+     * Samples the null distribution for a gene set size, stores it in the cache if there is one, records how many
+     * random scores it is made of, and reports it to the {@link #metricsListener}.
+     */
+    private NullDistribution createSampledNullDistribution(final List<Integer> geneSetSizes,
+                                                           final int geneSetSizeIndex,
+                                                           final RandomIndexGenerator random,
+                                                           final HairpinSetScoringAlgorithm algorithm) {
+        final long startTime = System.nanoTime();
+        final int geneSetSize = geneSetSizes.get(geneSetSizeIndex);
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(hairpinTable.getNumHairpins());
+        final NullDistribution nullDistribution;
+        final int numRandomScores;
+        final long numBytesAllocated;
+        switch (nullDistributionMethod) {
+        case ADAPTIVE:
+            final SampledNullDistribution adaptiveNullDistribution = createAdaptiveNullDistribution(geneSetSize, sampler, random, algorithm);
+            nullDistribution = adaptiveNullDistribution;
+            numRandomScores = adaptiveNullDistribution.getNumRandomScores();
+            numBytesAllocated = estimateAdaptiveNumBytesAllocated(numRandomScores);
+            break;
+        case HISTOGRAM:
+            final RandomScoreHistogram histogram = computeRandomGeneScoreHistogramForGeneSetSize(geneSetSize,
+                                                                                                 0,
+                                                                                                 numRandomScoresPerGeneSetSize,
+                                                                                                 sampler,
+                                                                                                 random,
+                                                                                                 algorithm);
+            nullDistribution = histogram.toNullDistribution(algorithm);
+            numRandomScores = histogram.getNumScores();
+            numBytesAllocated = histogram.getNumBytesAllocated() + 16L * histogram.getNumDistinctScores();
+            break;
+        default:
+            final double[] sortedRandomScores = computeSortedRandomGeneScoresForGeneSetSize(geneSetSize, sampler, random, algorithm);
+            if (isNullDistributionCached()) {
+                nullDistributionCache.put(getNullDistributionKey(geneSetSizes, geneSetSizeIndex), sortedRandomScores);
+            }
+            nullDistribution = new SampledNullDistribution(sortedRandomScores, algorithm);
+            numRandomScores = sortedRandomScores.length;
+            numBytesAllocated = 8L * sortedRandomScores.length;
+        }
+        numRandomScoresForGeneSetSizes[geneSetSizeIndex] = numRandomScores;
+        metricsListener.nullDistributionComputed(geneSetSize,
+                                                 numRandomScores,
+                                                 sampler.getNumRejectedDraws(),
+                                                 numBytesAllocated + sampler.getNumBytesAllocated(),
+                                                 System.nanoTime() - startTime);
+        return nullDistribution;
+    }
+
+    /**
+     * Scores the same random hairpin sets as {@link #computeSortedRandomGeneScoresForGeneSetSize}, but only counts
+     * the distinct random scores, so neither an array of all the random scores nor sorting it is needed.
+     * The random hairpin sets are those from index start (inclusive) to index end (exclusive).
+     */
+    private RandomScoreHistogram computeRandomGeneScoreHistogramForGeneSetSize(final int geneSetSize,
+                                                                              final int start,
+                                                                              final int end,
+                                                                              final RandomHairpinSubsetSampler sampler,
+                                                                              final RandomIndexGenerator random,
+                                                                              final HairpinSetScoringAlgorithm algorithm) {
+        final RandomHairpinSetBatch batch = new RandomHairpinSetBatch(geneSetSize);
+        final RandomScoreHistogram histogram = new RandomScoreHistogram();
+        for (int i = start; i < end; i += RandomHairpinSetBatch.NUM_HAIRPIN_SETS) {
+            final int numHairpinSets = Math.min(RandomHairpinSetBatch.NUM_HAIRPIN_SETS, end - i);
+            scoreRandomHairpinSets(sampler, random, algorithm, batch, i, numHairpinSets);
+            for (int j = 0; j < numHairpinSets; j++) {
+                histogram.add(batch.hairpinSetScores[j]);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Samples the null distribution in rounds, starting with {@link #numRandomScoresPerGeneSetSize} random scores and
+     * doubling them every round, until the p-values of all the genes with this gene set size are resolved to the
+     * {@link RigerInputs#getAdaptiveRelativePrecision() requested relative precision}, or the
+     * {@link RigerInputs#getMaxNumRandomScoresPerGeneSetSize() maximum number of random scores} is reached. The
+     * relative standard error of a p-value p estimated from m random scores is sqrt((1 - p) / (m p)), so the p-value
+     * is resolved once the m p random scores at least as good as the gene score are at least (1 - p) / precision^2.
+     */
+    private SampledNullDistribution createAdaptiveNullDistribution(final int geneSetSize,
+                                                                   final RandomHairpinSubsetSampler sampler,
+                                                                   final RandomIndexGenerator random,
+                                                                   final HairpinSetScoringAlgorithm algorithm) {
+        final List<GeneData> geneDatasForSize = geneSetSizeToGeneDatasMap.get(geneSetSize);
+        final double[] geneScores = new double[geneDatasForSize.size()];
+        for (int i = 0; i < geneScores.length; i++) {
+            geneScores[i] = computeUnadjustedGeneScore(geneDatasForSize.get(i), algorithm);
+        }
+        final int maxNumRandomScores = getMaxNumAdaptiveRandomScores();
+        final double precision = adaptiveRelativePrecision;
+
+        double[] randomScores = new double[0];
+        int numNewRandomScores = numRandomScoresPerGeneSetSize;
+        while (true) {
+            final int numRandomScores = randomScores.length;
+            randomScores = Arrays.copyOf(randomScores, numRandomScores + numNewRandomScores);
+            computeRandomGeneScoresForGeneSetSize(geneSetSize, sampler, random, algorithm, randomScores, numRandomScores, randomScores.length);
+            Arrays.sort(randomScores);
+            final SampledNullDistribution nullDistribution = new SampledNullDistribution(randomScores, algorithm);
+            if (randomScores.length >= maxNumRandomScores || arePValuesResolved(nullDistribution, geneScores, precision)) {
+                return nullDistribution;
+            }
+            numNewRandomScores = Math.min(randomScores.length, maxNumRandomScores - randomScores.length);
+        }
+    }
+
+    private int getMaxNumAdaptiveRandomScores() {
+        return Math.max(numRandomScoresPerGeneSetSize, maxNumRandomScoresPerGeneSetSize);
+    }
+
+    /**
+     * @return the bytes of the random score arrays of all the rounds it took
+     * {@link #createAdaptiveNullDistribution} to reach numRandomScores random scores
+     */
+    private long estimateAdaptiveNumBytesAllocated(final int numRandomScores) {
+        long numBytesAllocated = 0;
+        for (int length = numRandomScoresPerGeneSetSize; ; length += Math.min(length, getMaxNumAdaptiveRandomScores() - length)) {
+            numBytesAllocated += 8L * length;
+            if (length >= numRandomScores) {
+                return numBytesAllocated;
+            }
+        }
+    }
+
+    private static boolean arePValuesResolved(final SampledNullDistribution nullDistribution,
+                                              final double[] geneScores,
+                                              final double precision) {
+        for (double pValue : nullDistribution.computePValues(geneScores)) {
+            final double numAtLeastAsGoodRandomScores = pValue * nullDistribution.getNumRandomScores();
+            if (numAtLeastAsGoodRandomScores * precision * precision < 1 - pValue) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scores all the genes with a gene set size first, so that their p-values can be looked up in the null
+     * distribution together. If the null distribution was taken over from the {@link #previousRun}, so are the
+     * results of the genes that have not changed since.
+     */
+    private void computeGeneScoresAndPValues(final List<GeneData> geneDatasForSize,
+                                             final NullDistribution nullDistribution,
+                                             final boolean nullDistributionReused,
+                                             final HairpinSetScoringAlgorithm algorithm) {
+        if (nullDistributionReused) {
+            final List<GeneData> changedGeneDatas = new ArrayList<GeneData>();
+            for (GeneData geneData : geneDatasForSize) {
+                final GeneData previousGeneData = previousGeneDatas[geneData.getGeneId()];
+                if (previousGeneData == null) {
+                    changedGeneDatas.add(geneData);
+                }
+                else {
+                    geneData.setGeneScore(previousGeneData.getGeneScore());
+                    geneData.setPValue(previousGeneData.getPValue());
+                }
+            }
+            if (!changedGeneDatas.isEmpty()) {
+                computeGeneScoresAndPValues(changedGeneDatas, nullDistribution, false, algorithm);
+            }
+            return;
+        }
+        final GeneScoreAdjuster geneSetSizeGeneScoreAdjuster = nullDistribution.computeGeneSetSizeAdjustment();
+        final double[] geneScores = new double[geneDatasForSize.size()];
+        for (int i = 0; i < geneScores.length; i++) {
+            geneScores[i] = computeUnadjustedGeneScore(geneDatasForSize.get(i), algorithm);
+        }
+        final double[] pValues = nullDistribution.computePValues(geneScores);
+        for (int i = 0; i < geneScores.length; i++) {
+            final GeneData geneData = geneDatasForSize.get(i);
+            if (adjustForHairpinSetSize) {
+                geneData.setGeneScore(geneSetSizeGeneScoreAdjuster.adjustGeneScore(geneScores[i]));
+            }
+            else {
+                geneData.setGeneScore(geneScores[i]);
+            }
+            geneData.setPValue(pValues[i]);
+        }
+    }
+
+    private double[] computeSortedRandomGeneScoresForGeneSetSize(final int geneSetSize,
+                                                                 final RandomHairpinSubsetSampler sampler,
+                                                                 final RandomIndexGenerator random,
+                                                                 final HairpinSetScoringAlgorithm algorithm) {
+        final double[] randomScores = new double[numRandomScoresPerGeneSetSize];
+        computeRandomGeneScoresForGeneSetSize(geneSetSize, sampler, random, algorithm, randomScores, 0, randomScores.length);
+        Arrays.sort(randomScores);
+        return randomScores;
+    }
+
+    /**
+     * Fills randomScores from index start (inclusive) to index end (exclusive) with the scores of random hairpin sets
+     */
+    private void computeRandomGeneScoresForGeneSetSize(final int geneSetSize,
+                                                       final RandomHairpinSubsetSampler sampler,
+                                                       final RandomIndexGenerator random,
+                                                       final HairpinSetScoringAlgorithm algorithm,
+                                                       final double[] randomScores,
+                                                       final int start,
+                                                       final int end) {
+        final RandomHairpinSetBatch batch = new RandomHairpinSetBatch(geneSetSize);
+        for (int i = start; i < end; i += RandomHairpinSetBatch.NUM_HAIRPIN_SETS) {
+            final int numHairpinSets = Math.min(RandomHairpinSetBatch.NUM_HAIRPIN_SETS, end - i);
+            scoreRandomHairpinSets(sampler, random, algorithm, batch, i, numHairpinSets);
+            System.arraycopy(batch.hairpinSetScores, 0, randomScores, i, numHairpinSets);
+        }
+    }
+
+    /**
+     * Fills the batch with numHairpinSets random sets of hairpins, each picked _without_ replacement, and scores
+     * them all at once. The random number generator is drawn from in the same order as when picking and scoring
+     * one hairpin set at a time, and the batch buffers are reused from one batch to the next, so nothing is
+     * allocated here.
+     *
+     * @param firstHairpinSetIndex the index of the first hairpin set of the batch among the random hairpin sets of
+     * the gene set size
+     */
+    private void scoreRandomHairpinSets(final RandomHairpinSubsetSampler sampler,
+                                        final RandomIndexGenerator random,
+                                        final HairpinSetScoringAlgorithm algorithm,
+                                        final RandomHairpinSetBatch batch,
+                                        final int firstHairpinSetIndex,
+                                        final int numHairpinSets) {
+        final int geneSetSize = batch.geneSetSize;
+        if (hairpinSetSamplingMethod == HairpinSetSamplingMethod.ORDER_STATISTICS) {
+            // the rank scoring methods only look at the two smallest indexes, which are all that is drawn
+            final RankScoringAlgorithm rankScoringAlgorithm = (RankScoringAlgorithm) algorithm;
+            final int[] smallestTwo = batch.targetHairpinScoreIndexes;
+            for (int i = 0; i < numHairpinSets; i++) {
+                random.startHairpinSet(geneSetSize, firstHairpinSetIndex + i);
+                sampler.pickSmallestTwo(random, smallestTwo, 0, geneSetSize);
+                batch.hairpinSetScores[i] = rankScoringAlgorithm.scoreBestTwoHairpinIndexes(smallestTwo[0], smallestTwo[1]);
+            }
+            return;
+        }
+        final boolean sorted = hairpinSetSamplingMethod == HairpinSetSamplingMethod.SORTED;
+        for (int i = 0; i < numHairpinSets; i++) {
+            random.startHairpinSet(geneSetSize, firstHairpinSetIndex + i);
+            if (sorted) {
+                sampler.pickSortedSubset(random, batch.targetHairpinScoreIndexes, i * geneSetSize, geneSetSize);
+            }
+            else {
+                sampler.pickSubset(random, batch.targetHairpinScoreIndexes, i * geneSetSize, geneSetSize);
+            }
+        }
+        final int numTargetHairpins = numHairpinSets * geneSetSize;
+        for (int i = 0; i < numTargetHairpins; i++) {
+            batch.targetHairpinSetWeights[i] = orderedHairpinSetWeights[batch.targetHairpinScoreIndexes[i]];
+        }
+        if (sorted) {
+            algorithm.scoreSortedWeightedHairpinSets(hairpinTable.getNumHairpins(),
+                                                     geneSetSize,
+                                                     numHairpinSets,
+                                                     batch.targetHairpinScoreIndexes,
+                                                     batch.targetHairpinSetWeights,
+                                                     batch.hairpinSetScores);
+        }
+        else {
+            algorithm.scoreWeightedHairpinSets(hairpinTable.getNumHairpins(),
+                                               geneSetSize,
+                                               numHairpinSets,
+                                               batch.targetHairpinScoreIndexes,
+                                               batch.targetHairpinSetWeights,
+                                               batch.hairpinSetScores);
+        }
+    }
+
+    /**
+     * The random scores of one gene set size, drawn in chunks of {@link #NUM_RANDOM_SCORES_PER_CHUNK} by separate
+     * tasks. For a {@link NullDistributionMethod#HISTOGRAM histogram} null distribution, every chunk is counted in a
+     * histogram of its own, otherwise every chunk is sorted in place in one array of all the random scores. The
+     * chunks of a gene set size may be computed concurrently, as each only writes its own part of the arrays, and
+     * they are merged once all of them are done.
+     */
+    private final class RandomScoreChunks {
+        private final int geneSetSize;
+        private final long geneSetSizeRandomSeed;
+        private final double[] randomScores;
+        private final RandomScoreHistogram[] histograms;
+        private final AtomicLong numRejectedDraws = new AtomicLong();
+        private final AtomicLong numBytesAllocated = new AtomicLong();
+        private final AtomicLong numNanos = new AtomicLong();
+
+        RandomScoreChunks(final int geneSetSize) {
+            this.geneSetSize = geneSetSize;
+            this.geneSetSizeRandomSeed = RigerImpl.deriveGeneSetSizeRandomSeed(randomSeed, geneSetSize);
+            if (nullDistributionMethod == NullDistributionMethod.HISTOGRAM) {
+                randomScores = null;
+                histograms = new RandomScoreHistogram[getNumChunks()];
+            }
+            else {
+                randomScores = new double[numRandomScoresPerGeneSetSize];
+                histograms = null;
+                numBytesAllocated.addAndGet(8L * randomScores.length);
+            }
+        }
+
+        int getNumChunks() {
+            return (numRandomScoresPerGeneSetSize + NUM_RANDOM_SCORES_PER_CHUNK - 1) / NUM_RANDOM_SCORES_PER_CHUNK;
+        }
+
+        void computeChunk(final int chunk) {
+            final long startTime = System.nanoTime();
+            final RandomIndexGenerator random = createRandomNumberGenerator(RigerImpl.deriveChunkRandomSeed(geneSetSizeRandomSeed, chunk));
+            final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(hairpinTable.getNumHairpins());
+            final HairpinSetScoringAlgorithm algorithm = createHairpinSetScoringAlgorithm();
+            final int start = chunk * NUM_RANDOM_SCORES_PER_CHUNK;
+            final int end = Math.min(numRandomScoresPerGeneSetSize, start + NUM_RANDOM_SCORES_PER_CHUNK);
+            if (histograms != null) {
+                histograms[chunk] = computeRandomGeneScoreHistogramForGeneSetSize(geneSetSize, start, end, sampler, random, algorithm);
+                numBytesAllocated.addAndGet(histograms[chunk].getNumBytesAllocated());
+            }
+            else {
+                computeRandomGeneScoresForGeneSetSize(geneSetSize, sampler, random, algorithm, randomScores, start, end);
+                Arrays.sort(randomScores, start, end);
+            }
+            numRejectedDraws.addAndGet(sampler.getNumRejectedDraws());
+            numBytesAllocated.addAndGet(sampler.getNumBytesAllocated());
+            numNanos.addAndGet(System.nanoTime() - startTime);
+        }
+
+        /**
+         * Merges the chunks into the null distribution of the gene set size, stores it in the cache if there is one,
+         * records how many random scores it is made of, and reports it to the {@link #metricsListener}, with the time
+         * all the tasks for the gene set size took together.
+         */
+        NullDistribution merge(final List<Integer> geneSetSizes, final int geneSetSizeIndex) {
+            final long startTime = System.nanoTime();
+            final HairpinSetScoringAlgorithm algorithm = createHairpinSetScoringAlgorithm();
+            final NullDistribution nullDistribution;
+            if (histograms != null) {
+                final RandomScoreHistogram histogram = histograms[0];
+                final long numBytesAllocatedBeforeMerge = histogram.getNumBytesAllocated();
+                for (int chunk = 1; chunk < histograms.length; chunk++) {
+                    histogram.addAll(histograms[chunk]);
+                }
+                nullDistribution = histogram.toNullDistribution(algorithm);
+                numBytesAllocated.addAndGet(histogram.getNumBytesAllocated() - numBytesAllocatedBeforeMerge +
+                                            16L * histogram.getNumDistinctScores());
+            }
+            else {
+                final double[] sortedRandomScores = mergeSortedRuns(randomScores, NUM_RANDOM_SCORES_PER_CHUNK);
+                if (isNullDistributionCached()) {
+                    nullDistributionCache.put(getNullDistributionKey(geneSetSizes, geneSetSizeIndex), sortedRandomScores);
+                }
+                nullDistribution = new SampledNullDistribution(sortedRandomScores, algorithm);
+                numBytesAllocated.addAndGet(8L * sortedRandomScores.length);
+            }
+            numRandomScoresForGeneSetSizes[geneSetSizeIndex] = numRandomScoresPerGeneSetSize;
+            metricsListener.nullDistributionComputed(geneSetSize,
+                                                     numRandomScoresPerGeneSetSize,
+                                                     numRejectedDraws.get(),
+                                                     numBytesAllocated.get(),
+                                                     numNanos.get() + System.nanoTime() - startTime);
+            return nullDistribution;
+        }
+    }
+
+    /**
+     * The random scores of a {@link NullDistributionMethod#PERMUTATION permutation} null distribution. Every
+     * permutation shuffles which gene every hairpin belongs to, keeping the number of hairpins of every gene, and
+     * scores every gene on the hairpins it was given. Walking the hairpins in score order hands every gene its
+     * hairpins in ascending order of score index, so the genes of a gene set size are laid out for
+     * {@link HairpinSetScoringAlgorithm#scoreSortedWeightedHairpinSets} in a single pass over the hairpins. The random
+     * scores of the n genes of a gene set size from permutation p are at positions p * n up to (p + 1) * n of its
+     * array, so the chunks of permutations may be computed concurrently.
+     */
+    private final class GenePermutations {
+        private final int[] geneSetSizes;
+        private final int[] numGenes;
+        private final double[][] randomScores;
+
+        /**
+         * The genes are numbered in the order of their gene set sizes. For every hairpin, the gene it belongs to
+         * before shuffling, and for every gene, the index of its gene set size, and where its hairpins start in the
+         * hairpin sets of that gene set size.
+         */
+        private final int[] unshuffledGenes;
+        private final int[] geneSetSizeIndexes;
+        private final int[] hairpinSetStarts;
+
+        private final long numRandomScores;
+        private final AtomicLong numNanos = new AtomicLong();
+
+        GenePermutations(final List<Integer> geneSetSizes) {
+            final int numGeneSetSizes = geneSetSizes.size();
+            this.geneSetSizes = new int[numGeneSetSizes];
+            this.numGenes = new int[numGeneSetSizes];
+            this.randomScores = new double[numGeneSetSizes][];
+            int numAllGenes = 0;
+            for (int i = 0; i < numGeneSetSizes; i++) {
+                this.geneSetSizes[i] = geneSetSizes.get(i);
+                numGenes[i] = geneSetSizeToGeneDatasMap.get(geneSetSizes.get(i)).size();
+                numAllGenes += numGenes[i];
+                if ((long) numPermutations * numGenes[i] > Integer.MAX_VALUE - 8) {
+                    throw new RigerJInputException("too many permutations for the " + numGenes[i] + " genes with " +
+                                                   geneSetSizes.get(i) + " hairpins");
+                }
+                randomScores[i] = new double[numPermutations * numGenes[i]];
+            }
+            numRandomScores = (long) numPermutations * numAllGenes;
+
+            unshuffledGenes = new int[hairpinTable.getNumHairpins()];
+            Arrays.fill(unshuffledGenes, -1);
+            geneSetSizeIndexes = new int[numAllGenes];
+            hairpinSetStarts = new int[numAllGenes];
+            for (int i = 0, gene = 0, hairpin = 0; i < numGeneSetSizes; i++) {
+                for (int j = 0; j < numGenes[i]; j++, gene++) {
+                    geneSetSizeIndexes[gene] = i;
+                    hairpinSetStarts[gene] = j * this.geneSetSizes[i];
+                    for (int k = 0; k < this.geneSetSizes[i]; k++) {
+                        unshuffledGenes[hairpin++] = gene;
+                    }
+                }
+            }
+        }
+
+        int getNumChunks() {
+            return (numPermutations + NUM_PERMUTATIONS_PER_CHUNK - 1) / NUM_PERMUTATIONS_PER_CHUNK;
+        }
+
+        /**
+         * Every permutation shuffles the unshuffled genes afresh, and starts its random numbers with
+         * {@link RandomIndexGenerator#startHairpinSet}, with gene set size 0, so with a counter based generator a
+         * permutation only depends on its own index.
+         */
+        void computeChunk(final int chunk) {
+            final long startTime = System.nanoTime();
+            final long permutationsRandomSeed = RigerImpl.deriveGeneSetSizeRandomSeed(randomSeed, 0);
+            final RandomIndexGenerator random = createRandomNumberGenerator(RigerImpl.deriveChunkRandomSeed(permutationsRandomSeed, chunk));
+            final HairpinSetScoringAlgorithm algorithm = createHairpinSetScoringAlgorithm();
+            final int numHairpins = unshuffledGenes.length;
+            final int[] genes = new int[numHairpins];
+            final int[] nextHairpinSetPositions = new int[hairpinSetStarts.length];
+            final int[][] targetHairpinScoreIndexes = new int[geneSetSizes.length][];
+            final double[][] targetHairpinSetWeights = new double[geneSetSizes.length][];
+            final double[][] hairpinSetScores = new double[geneSetSizes.length][];
+            for (int i = 0; i < geneSetSizes.length; i++) {
+                targetHairpinScoreIndexes[i] = new int[numGenes[i] * geneSetSizes[i]];
+                targetHairpinSetWeights[i] = new double[numGenes[i] * geneSetSizes[i]];
+                hairpinSetScores[i] = new double[numGenes[i]];
+            }
+
+            final int end = Math.min(numPermutations, (chunk + 1) * NUM_PERMUTATIONS_PER_CHUNK);
+            for (int permutation = chunk * NUM_PERMUTATIONS_PER_CHUNK; permutation < end; permutation++) {
+                random.startHairpinSet(0, permutation);
+                System.arraycopy(unshuffledGenes, 0, genes, 0, numHairpins);
+                for (int hairpin = numHairpins - 1; hairpin > 0; hairpin--) {
+                    final int other = random.nextInt(hairpin + 1);
+                    final int gene = genes[hairpin];
+                    genes[hairpin] = genes[other];
+                    genes[other] = gene;
+                }
+
+                System.arraycopy(hairpinSetStarts, 0, nextHairpinSetPositions, 0, hairpinSetStarts.length);
+                for (int hairpin = 0; hairpin < numHairpins; hairpin++) {
+                    final int gene = genes[hairpin];
+                    if (gene >= 0) {
+                        targetHairpinScoreIndexes[geneSetSizeIndexes[gene]][nextHairpinSetPositions[gene]++] = hairpin;
+                    }
+                }
+
+                for (int i = 0; i < geneSetSizes.length; i++) {
+                    final int[] indexes = targetHairpinScoreIndexes[i];
+                    final double[] weights = targetHairpinSetWeights[i];
+                    for (int j = 0; j < indexes.length; j++) {
+                        weights[j] = orderedHairpinSetWeights[indexes[j]];
+                    }
+                    algorithm.scoreSortedWeightedHairpinSets(numHairpins, geneSetSizes[i], numGenes[i], indexes, weights, hairpinSetScores[i]);
+                    System.arraycopy(hairpinSetScores[i], 0, randomScores[i], permutation * numGenes[i], numGenes[i]);
+                }
+            }
+            numNanos.addAndGet(System.nanoTime() - startTime);
+        }
+
+        /**
+         * Sorts the random scores of the gene set size into its null distribution, records how many random scores it
+         * is made of, and reports it to the {@link #metricsListener}, with the share of the time of the permutations
+         * that went into its random scores
+         */
+        NullDistribution toNullDistribution(final int geneSetSizeIndex, final HairpinSetScoringAlgorithm algorithm) {
+            final long startTime = System.nanoTime();
+            final double[] sortedRandomScores = randomScores[geneSetSizeIndex];
+            randomScores[geneSetSizeIndex] = null;
+            Arrays.sort(sortedRandomScores);
+            numRandomScoresForGeneSetSizes[geneSetSizeIndex] = sortedRandomScores.length;
+            metricsListener.nullDistributionComputed(geneSetSizes[geneSetSizeIndex],
+                                                     sortedRandomScores.length,
+                                                     0,
+                                                     8L * sortedRandomScores.length,
+                                                     numNanos.get() * sortedRandomScores.length / numRandomScores +
+                                                     System.nanoTime() - startTime);
+            return new SampledNullDistribution(sortedRandomScores, algorithm);
+        }
+    }
+
+    /**
+     * @return the values, whose consecutive runs of runLength values are each sorted, all sorted. The runs are merged
+     * pairwise, doubling the run length every pass. The result is either the values themselves or a new array.
+     */
+    static double[] mergeSortedRuns(final double[] values, final int runLength) {
+        double[] source = values;
+        double[] target = new double[values.length];
+        for (int length = runLength; length < values.length; length *= 2) {
+            for (int start = 0; start < values.length; start += 2 * length) {
+                final int middle = Math.min(values.length, start + length);
+                final int end = Math.min(values.length, start + 2 * length);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    if (right >= end || (left < middle && source[left] <= source[right])) {
+                        target[i] = source[left++];
+                    }
+                    else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+            final double[] merged = target;
+            target = source;
+            source = merged;
+        }
+        return source;
+    }
+
+    /**
+     * The buffers for scoring random hairpin sets of one size a batch at a time, with the indexes and weights of
+     * all the hairpin sets in the batch laid out one set after the other
+     */
+    private static final class RandomHairpinSetBatch {
+        static final int NUM_HAIRPIN_SETS = 256;
+
+        final int geneSetSize;
+        final int[] targetHairpinScoreIndexes;
+        final double[] targetHairpinSetWeights;
+        final double[] hairpinSetScores;
+
+        RandomHairpinSetBatch(final int geneSetSize) {
+            this.geneSetSize = geneSetSize;
+            targetHairpinScoreIndexes = new int[NUM_HAIRPIN_SETS * geneSetSize];
+            targetHairpinSetWeights = new double[NUM_HAIRPIN_SETS * geneSetSize];
+            hairpinSetScores = new double[NUM_HAIRPIN_SETS];
+        }
+    }
+
+
+    private static final class OrderedHairpinScoresSubset {
+        final int[] targetHairpinScoreIndexes;
+        final double[] targetHairpinSetWeights;
+
+        OrderedHairpinScoresSubset(final int geneSetSize) {
+            targetHairpinScoreIndexes = new int[geneSetSize];
+            targetHairpinSetWeights = new double[geneSetSize];
+        }
+    }
+
+    private double computeUnadjustedGeneScore(final GeneData geneData, final HairpinSetScoringAlgorithm algorithm) {
+        OrderedHairpinScoresSubset subset = getHairpinScoresForGeneData(geneData, algorithm);
+        return algorithm.scoreWeightedHairpinSet(hairpinTable.getNumHairpins(),
+                                                 subset.targetHairpinScoreIndexes,
+                                                 subset.targetHairpinSetWeights);
+    }
+
+    private OrderedHairpinScoresSubset getHairpinScoresForGeneData(final GeneData geneData,
+                                                                   final HairpinSetScoringAlgorithm algorithm) {
+        final int geneSetSize = geneData.getNumHairpins();
+        final OrderedHairpinScoresSubset subset = new OrderedHairpinScoresSubset(geneSetSize);
+        final double[] scores = hairpinTable.getScores();
+        final double[] weights = hairpinTable.getWeights();
+        final int[] ranks = hairpinTable.getRanks();
+        for (int i = 0; i < geneSetSize; i++) {
+            final int position = hairpinTable.getGeneHairpinPosition(geneData.getGeneId(), i);
+            
+            // the following -1 adjustment assumes the ranks in the input file are 1-based
+            subset.targetHairpinScoreIndexes[i] = ranks[position] - 1;
+
+            // the rank need not match the position in the hairpin table, so the weight is computed
+            // from the hairpin itself rather than looked up in orderedHairpinSetWeights
+            subset.targetHairpinSetWeights[i] = algorithm.computeHairpinSetWeight(scores[position],
+                                                                                  weights[position],
+                                                                                  alpha);
+        }
+        return subset;
+    }
+
+    /**
+     * the best gene score gets ranked 1, etc
+     */
+    private GeneData[] computeGeneRanks() {
+        GeneData[] geneDatas = this.geneDatas.clone();
+        sortGeneDatasByNameForStability(geneDatas);
+        Comparator<GeneData> geneDataComparator =
+            hairpinSetScoringAlgorithm.lowScoresRankFirst() ?
+                new RigerImpl.GeneScoreAscendingComparator() : new RigerImpl.GeneScoreDescendingComparator();
+        Arrays.sort(geneDatas, geneDataComparator);
+        for (int i = 0; i < geneDatas.length; i++) {
+            geneDatas[i].setGeneRank(i + 1);
+        }
+        return geneDatas;
+    }
+
+    private void sortGeneDatasByNameForStability(GeneData[] geneDatas) {
+        Comparator<GeneData> comparator = new Comparator<GeneData>() {
+            public int compare(GeneData geneData1, GeneData geneData2) {
+                return geneData1.getGeneName().compareTo(geneData2.getGeneName());
+            }
+        };
+        Arrays.sort(geneDatas, comparator);
+    }
+
+    /**
+     * the lowest p-value gets ranked 1, etc
+     */
+    private GeneData[] computePValueRanks() {
+        GeneData[] geneDatas = this.geneDatas.clone();
+        sortGeneDatasByNameForStability(geneDatas);
+        Arrays.sort(geneDatas, new RigerImpl.PValueAscendingComparator());
+        for (int i = 0; i < geneDatas.length; i++) {
+            geneDatas[i].setPValueRank(i + 1);
+        }
+        return geneDatas;
+    }
+
+    private RigerOutputs buildRigerOutputs(final GeneData[] geneDatasSortedByPValueRank) {
+        final Map<Integer,Integer> numRandomScoresByGeneSetSize = buildNumRandomScoresByGeneSetSize();
+        return new RigerOutputs() {
+
+            public int getNumGenes() {
+                return geneDatasSortedByPValueRank.length;
+            }           
+
+            public GeneOutput getGeneOutput(int i) {
+                return geneDatasSortedByPValueRank[i];
+            } 
+
+            public Map<Integer,Integer> getNumRandomScoresByGeneSetSize() {
+                return numRandomScoresByGeneSetSize;
+            }
+        };
+    }
+
+    private Map<Integer,Integer> buildNumRandomScoresByGeneSetSize() {
+        final List<Integer> geneSetSizes = new ArrayList<Integer>(geneSetSizeToGeneDatasMap.keySet());
+        Collections.sort(geneSetSizes);
+        final Map<Integer,Integer> numRandomScoresByGeneSetSize = new TreeMap<Integer,Integer>();
+        for (int i = 0; i < geneSetSizes.size(); i++) {
+            if (numRandomScoresForGeneSetSizes[i] > 0) {
+                numRandomScoresByGeneSetSize.put(geneSetSizes.get(i), numRandomScoresForGeneSetSizes[i]);
+            }
+        }
+        return Collections.unmodifiableMap(numRandomScoresByGeneSetSize);
+    }
+}
@@ -0,0 +1,33 @@
+// org.broadinstitute.gpp.rigerj.impl.RigerRunState
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+
+/**
+ * The outputs of an execution of {@link RigerImpl}, together with its null distributions, so that a later
+ * {@link RigerImpl#executeIncrementally(org.broadinstitute.gpp.rigerj.api.RigerInputs, RigerRunState) incremental execution}
+ * on the same hairpins with a different mapping of hairpins to genes can take them over, and only score the genes
+ * that changed. A RigerRunState keeps the null distributions of every gene set size in memory for as long as it is
+ * referenced, and is safe to share between threads.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public final class RigerRunState {
+
+    private final RigerRun rigerRun;
+    private final RigerOutputs rigerOutputs;
+
+    RigerRunState(final RigerRun rigerRun, final RigerOutputs rigerOutputs) {
+        this.rigerRun = rigerRun;
+        this.rigerOutputs = rigerOutputs;
+    }
+
+    public RigerOutputs getRigerOutputs() {
+        return rigerOutputs;
+    }
+
+    RigerRun getRigerRun() {
+        return rigerRun;
+    }
+}
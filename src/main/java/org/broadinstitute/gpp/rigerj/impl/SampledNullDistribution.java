@@ -0,0 +1,142 @@
+// org.broadinstitute.gpp.rigerj.impl.SampledNullDistribution
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.Arrays;
+
+/**
+ * A {@link NullDistribution} made of the sorted scores of random hairpin sets.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class SampledNullDistribution implements NullDistribution {
+
+    /**
+     * With at least this many random scores per gene score, the p-values are looked up one at a time
+     */
+    private static final int MIN_RANDOM_SCORES_PER_GENE_SCORE_TO_SEARCH = 16;
+
+    private final double[] sortedRandomScores;
+    private final HairpinSetScoringAlgorithm algorithm;
+
+    SampledNullDistribution(final double[] sortedRandomScores, final HairpinSetScoringAlgorithm algorithm) {
+        this.sortedRandomScores = sortedRandomScores;
+        this.algorithm = algorithm;
+    }
+
+    int getNumRandomScores() {
+        return sortedRandomScores.length;
+    }
+
+    public double computePValue(final double geneScore) {
+        final int numAtOrBelow = searchRandomScoresAtOrBelow(geneScore, 0, sortedRandomScores.length);
+        return (double) computeNumberBetterRandomScores(geneScore, numAtOrBelow) / sortedRandomScores.length;
+    }
+
+    /**
+     * Visits the sorted gene scores in increasing order, so that a single pointer moves forward through the sorted
+     * random scores to the random scores at or below each of them. The pointer gallops, so for n genes and m
+     * random scores this takes O(n log(m / n)) steps, less than both a binary search per gene and a linear merge,
+     * however many of the scores are tied. But sorting the gene scores costs more than it saves when there are
+     * far fewer gene scores than random scores, so then each gene score gets a binary search of its own.
+     */
+    public double[] computePValues(final double[] geneScores) {
+        if (geneScores.length < sortedRandomScores.length / MIN_RANDOM_SCORES_PER_GENE_SCORE_TO_SEARCH) {
+            final double[] pValues = new double[geneScores.length];
+            for (int i = 0; i < geneScores.length; i++) {
+                pValues[i] = computePValue(geneScores[i]);
+            }
+            return pValues;
+        }
+        final double[] sortedGeneScores = geneScores.clone();
+        Arrays.sort(sortedGeneScores);
+        final int[] numsAtOrBelow = new int[sortedGeneScores.length];
+        int numAtOrBelow = 0;
+        for (int i = 0; i < sortedGeneScores.length; i++) {
+            numAtOrBelow = countRandomScoresAtOrBelow(sortedGeneScores[i], numAtOrBelow);
+            numsAtOrBelow[i] = numAtOrBelow;
+        }
+
+        // tied gene scores all have the same number of random scores at or below them, so any of them will do
+        final double[] pValues = new double[geneScores.length];
+        for (int i = 0; i < geneScores.length; i++) {
+            final int sortedIndex = Arrays.binarySearch(sortedGeneScores, geneScores[i]);
+            pValues[i] = (double) computeNumberBetterRandomScores(geneScores[i], numsAtOrBelow[sortedIndex]) / sortedRandomScores.length;
+        }
+        return pValues;
+    }
+
+    public GeneScoreAdjuster computeGeneSetSizeAdjustment() {
+        return algorithm.computeGeneSetSizeAdjustment(sortedRandomScores);
+    }
+
+    /**
+     * @return the number of random scores at or below the gene score in the order of {@link Double#compare},
+     * found by binary search, given that the first low of them are at or below it and those from index high on
+     * are not
+     */
+    private int searchRandomScoresAtOrBelow(final double geneScore, int low, int high) {
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (Double.compare(sortedRandomScores[middle], geneScore) <= 0) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the number of random scores at or below the gene score in the order of {@link Double#compare},
+     * given that the first from of them are. Steps forward in doubling strides until it passes the gene score,
+     * and then searches the last stride.
+     */
+    private int countRandomScoresAtOrBelow(final double geneScore, final int from) {
+        int numAtOrBelow = from;
+        int stride = 1;
+        while (stride <= sortedRandomScores.length - numAtOrBelow &&
+               Double.compare(sortedRandomScores[numAtOrBelow + stride - 1], geneScore) <= 0) {
+            numAtOrBelow += stride;
+            stride *= 2;
+        }
+        return searchRandomScoresAtOrBelow(geneScore, numAtOrBelow, Math.min(numAtOrBelow + stride - 1, sortedRandomScores.length));
+    }
+
+    private int computeNumberBetterRandomScores(final double geneScore, int numAtOrBelow) {
+        final boolean found = numAtOrBelow > 0 && Double.compare(sortedRandomScores[numAtOrBelow - 1], geneScore) == 0;
+        if (found) {
+
+            // ties are found with ==, which also takes 0.0 to be equal to -0.0
+            while (numAtOrBelow < sortedRandomScores.length && sortedRandomScores[numAtOrBelow] == geneScore) {
+                numAtOrBelow++;
+            }
+        }
+        return computeNumberBetterRandomScores(found, numAtOrBelow, sortedRandomScores.length, algorithm);
+    }
+
+    /**
+     * Counts the random scores that are better than the gene score the way RIGER always has. If the gene score
+     * is one of the random scores, the better ones include the ties when low scores rank first, and exclude them
+     * otherwise. If it is not, the count is off by one, one more when low scores rank first and one less otherwise.
+     *
+     * @param found whether the gene score is one of the random scores
+     * @param numAtOrBelow the number of random scores at or below the gene score
+     */
+    static int computeNumberBetterRandomScores(final boolean found,
+                                               final int numAtOrBelow,
+                                               final int numRandomScores,
+                                               final HairpinSetScoringAlgorithm algorithm) {
+
+        // the index of the last random score equal to the gene score if there is one, and of the first random
+        // score above it otherwise
+        final int randomScoresInsertionPoint = found ? numAtOrBelow - 1 : numAtOrBelow;
+        if (algorithm.lowScoresRankFirst()) {
+            return randomScoresInsertionPoint + 1;
+        }
+        else {
+            return numRandomScores - randomScoresInsertionPoint - 1;
+        }
+    }
+}
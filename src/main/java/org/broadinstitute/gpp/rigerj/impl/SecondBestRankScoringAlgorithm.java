@@ -11,13 +11,15 @@ import java.util.Arrays;
  */
 public class SecondBestRankScoringAlgorithm extends RankScoringAlgorithm implements HairpinSetScoringAlgorithm {
 
-    public double scoreHairpinSet(int numTotalHairpinScores,
-                                  double[] targetHairpinScores,
-                                  int[] targetHairpinScoreIndexes,
-                                  double[] targetHairpinWeights,
-                                  double alpha) {
+    public double scoreWeightedHairpinSet(int numTotalHairpinScores,
+                                          int[] targetHairpinScoreIndexes,
+                                          double[] targetHairpinSetWeights) {
         Arrays.sort(targetHairpinScoreIndexes);
-        return targetHairpinScoreIndexes[1] + 1;
+        return scoreBestTwoHairpinIndexes(targetHairpinScoreIndexes[0], targetHairpinScoreIndexes[1]);
+    }
+
+    double scoreBestTwoHairpinIndexes(int bestIndex, int secondBestIndex) {
+        return secondBestIndex + 1;
     }
 
     public boolean lowScoresRankFirst() {
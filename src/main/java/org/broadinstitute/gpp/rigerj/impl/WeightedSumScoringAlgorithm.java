@@ -16,15 +16,17 @@ public class WeightedSumScoringAlgorithm extends RankScoringAlgorithm implements
     private static final double BEST_RANK_WEIGHT = 0.25;
     private static final double SECOND_BEST_RANK_WEIGHT = 0.75;
 
-    public double scoreHairpinSet(int numTotalHairpinScores,
-                                  double[] targetHairpinScores,
-                                  int[] targetHairpinScoreIndexes,
-                                  double[] targetHairpinWeights,
-                                  double alpha) {
+    public double scoreWeightedHairpinSet(int numTotalHairpinScores,
+                                          int[] targetHairpinScoreIndexes,
+                                          double[] targetHairpinSetWeights) {
         Arrays.sort(targetHairpinScoreIndexes);
+        return scoreBestTwoHairpinIndexes(targetHairpinScoreIndexes[0], targetHairpinScoreIndexes[1]);
+    }
+
+    double scoreBestTwoHairpinIndexes(int bestIndex, int secondBestIndex) {
         return
-        BEST_RANK_WEIGHT * targetHairpinScoreIndexes[0] + 
-        SECOND_BEST_RANK_WEIGHT * targetHairpinScoreIndexes[1] +
+        BEST_RANK_WEIGHT * bestIndex + 
+        SECOND_BEST_RANK_WEIGHT * secondBestIndex +
         1;
     }
 
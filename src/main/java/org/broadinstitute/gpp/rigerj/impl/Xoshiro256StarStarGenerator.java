@@ -0,0 +1,73 @@
+// org.broadinstitute.gpp.rigerj.impl.Xoshiro256StarStarGenerator
+
+package org.broadinstitute.gpp.rigerj.impl;
+
+/**
+ * The xoshiro256** generator of Blackman and Vigna (http://prng.di.unimi.it/). The 256 bits of state are
+ * initialized from a 64 bit seed with SplitMix64, as recommended by the authors.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+final class Xoshiro256StarStarGenerator implements RandomIndexGenerator {
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    Xoshiro256StarStarGenerator(final long seed) {
+        long x = seed;
+        s0 = splitMix64(x += 0x9E3779B97F4A7C15L);
+        s1 = splitMix64(x += 0x9E3779B97F4A7C15L);
+        s2 = splitMix64(x += 0x9E3779B97F4A7C15L);
+        s3 = splitMix64(x += 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Creates a generator with the given state, which must not be all zeros
+     */
+    Xoshiro256StarStarGenerator(final long s0, final long s1, final long s2, final long s3) {
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    private static long splitMix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    long nextLong() {
+        final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        final long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Lemire's multiply-and-shift method, with rejection of the few values that would bias the result
+     */
+    public int nextInt(final int bound) {
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound) {
+            final long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+}
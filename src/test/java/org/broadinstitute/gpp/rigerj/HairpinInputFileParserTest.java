@@ -0,0 +1,93 @@
+package org.broadinstitute.gpp.rigerj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.broadinstitute.gpp.rigerj.api.RigerJInputException;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class HairpinInputFileParserTest {
+
+    @Test
+    public void testMatchesSplittingLinesForTestInputFiles() throws IOException {
+        assertMatchesSplittingLines("src/test/resources/inputFile.txt");
+        assertMatchesSplittingLines("src/test/resources/inputFileHairpinWeights.txt");
+    }
+
+    @Test
+    public void testParsesNumbersExactlyWithSmallBuffer() throws IOException {
+        final String[] scores = { "0.34", "-1.2", "1e-5", "-0", "+2", "3.14159265358979323846", "1.5E3", "NaN",
+                                  "-Infinity", "123456789012345678", "0.000000000000000000000000001", "7." };
+        final StringBuilder input = new StringBuilder(HairpinInputFileParser.INPUT_HEADERS_WITH_WEIGHTS).append("\r\n");
+        for (int i = 0; i < scores.length; i++) {
+            input.append("hairpin").append(i).append("\tGENE").append(i % 3).append('\t').append(scores[i])
+                 .append('\t').append(i + 1).append(".0\t").append(scores[scores.length - 1 - i]).append("\r\n");
+        }
+        final HairpinInputColumns columns = parse(input.toString(), 7);
+        assertEquals(scores.length, columns.getNumHairpins());
+        for (int i = 0; i < scores.length; i++) {
+            assertEquals("hairpin" + i, columns.getHairpinName(i));
+            assertEquals("GENE" + (i % 3), columns.getGeneName(i));
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(scores[i])), Double.doubleToLongBits(columns.getHairpinScore(i)));
+            assertEquals(i + 1, columns.getHairpinRank(i));
+            assertEquals(Double.parseDouble(scores[scores.length - 1 - i]), columns.getHairpinWeight(i), 0);
+        }
+        assertTrue(columns.getGeneName(0) == columns.getGeneName(3));
+    }
+
+    @Test
+    public void testReportsLineNumberOfMalformedLines() throws IOException {
+        final String header = HairpinInputFileParser.INPUT_HEADERS_WITHOUT_WEIGHTS + "\n";
+        assertMalformed(header + "h1\tG1\t0.5\t1\nh2\tG1\t0.7\n", "line 3");
+        assertMalformed(header + "h1\tG1\t0.5\t1\nh2\tG1\tabc\t2\n", "line 3");
+        assertMalformed("Construct\tGene\n", "header line mismatch");
+    }
+
+    private void assertMalformed(String input, String expectedMessagePart) throws IOException {
+        try {
+            parse(input, 1 << 10);
+            fail("expected a RigerJInputException");
+        }
+        catch (RigerJInputException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(expectedMessagePart));
+        }
+    }
+
+    private HairpinInputColumns parse(String input, int bufferSize) throws IOException {
+        return new HairpinInputFileParser(Channels.newChannel(new ByteArrayInputStream(input.getBytes("UTF-8"))), bufferSize).parse();
+    }
+
+    private void assertMatchesSplittingLines(String filename) throws IOException {
+        final HairpinInputColumns columns = new HairpinInputFileParser(new FileInputStream(filename).getChannel()).parse();
+        final BufferedReader bufferedReader = new BufferedReader(new FileReader(filename));
+        try {
+            bufferedReader.readLine();
+            int i = 0;
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                final String[] cells = line.split("\t", 0);
+                assertEquals(cells[0], columns.getHairpinName(i));
+                assertEquals(cells[1], columns.getGeneName(i));
+                assertEquals(Double.parseDouble(cells[2]), columns.getHairpinScore(i), 0);
+                assertEquals(Double.valueOf(cells[3]).intValue(), columns.getHairpinRank(i));
+                assertEquals(cells.length == 5 ? Double.parseDouble(cells[4]) : 1, columns.getHairpinWeight(i), 0);
+                i++;
+            }
+            assertEquals(i, columns.getNumHairpins());
+        }
+        finally {
+            bufferedReader.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.broadinstitute.gpp.rigerj;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.broadinstitute.gpp.rigerj.api.GeneOutput;
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.broadinstitute.gpp.rigerj.impl.RigerImpl;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RigerOutputsWritersTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static RigerOutputs rigerOutputs;
+
+    @BeforeClass
+    public static void runRiger() throws IOException {
+        final FileInputStream inputStream = new FileInputStream("src/test/resources/inputFile.txt");
+        final HairpinInputColumns hairpinInputColumns;
+        try {
+            hairpinInputColumns = new HairpinInputFileParser(inputStream.getChannel()).parse();
+        }
+        finally {
+            inputStream.close();
+        }
+        rigerOutputs = new RigerImpl().execute(new RigerInputs() {
+            public int getNumHairpins() {
+                return hairpinInputColumns.getNumHairpins();
+            }
+            public HairpinInput getHairpinInput(int i) {
+                return hairpinInputColumns.getHairpinInput(i);
+            }
+            public HairpinSetScoringMethod getHairpinSetScoringMethod() {
+                return HairpinSetScoringMethod.SECOND_BEST_RANK;
+            }
+            public boolean flattenWeights() {
+                return true;
+            }
+            public int getNumRandomScoresPerGeneSetSize() {
+                return 10000;
+            }
+            public double getAlpha() {
+                return 1.0;
+            }
+            public long getRandomSeed() {
+                return 1003;
+            }
+            public boolean adjustForHairpinSetSize() {
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void testTextMatchesLinePerGeneConcatenation() throws IOException {
+        final String lineSeparator = System.lineSeparator();
+        final StringBuilder expected = new StringBuilder(TextRigerOutputsWriter.OUTPUT_HEADERS).append(lineSeparator);
+        for (int i = 0; i < rigerOutputs.getNumGenes(); i++) {
+            GeneOutput geneOutput = rigerOutputs.getGeneOutput(i);
+            expected.append(geneOutput.getGeneRank() + "\t" +
+                            geneOutput.getGeneName() + "\t" +
+                            geneOutput.getGeneScore() + "\t" +
+                            geneOutput.getPValue() + "\t" +
+                            geneOutput.getPValueRank() + "\t" +
+                            geneOutput.getHairpinRanks()).append(lineSeparator);
+        }
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new TextRigerOutputsWriter(outputStream, UTF_8).write(rigerOutputs);
+        assertEquals(expected.toString(), new String(outputStream.toByteArray(), UTF_8));
+    }
+
+    @Test
+    public void testBinaryRoundTrips() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new BinaryRigerOutputsWriter(outputStream).write(rigerOutputs);
+        final RigerOutputs readOutputs = BinaryRigerOutputsReader.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(rigerOutputs.getNumGenes(), readOutputs.getNumGenes());
+        for (int i = 0; i < rigerOutputs.getNumGenes(); i++) {
+            final GeneOutput expected = rigerOutputs.getGeneOutput(i);
+            final GeneOutput actual = readOutputs.getGeneOutput(i);
+            assertEquals(expected.getGeneRank(), actual.getGeneRank());
+            assertEquals(expected.getGeneName(), actual.getGeneName());
+            assertEquals(expected.getGeneScore(), actual.getGeneScore(), 0);
+            assertEquals(expected.getPValue(), actual.getPValue(), 0);
+            assertEquals(expected.getPValueRank(), actual.getPValueRank());
+            assertArrayEquals(expected.getSortedHairpinRanks(), actual.getSortedHairpinRanks());
+            assertEquals(expected.getHairpinRanks(), actual.getHairpinRanks());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testBinaryRejectsText() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new TextRigerOutputsWriter(outputStream, UTF_8).write(rigerOutputs);
+        BinaryRigerOutputsReader.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+}
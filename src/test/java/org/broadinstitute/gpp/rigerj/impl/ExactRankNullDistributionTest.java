@@ -0,0 +1,121 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetSamplingMethod;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerJInputException;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class ExactRankNullDistributionTest {
+
+    private static final HairpinSetScoringMethod[] RANK_METHODS = {
+        HairpinSetScoringMethod.SECOND_BEST_RANK, HairpinSetScoringMethod.WEIGHTED_SUM
+    };
+
+    @Test
+    public void testMatchesEnumerationOfAllHairpinSets() {
+        for (HairpinSetScoringMethod method : RANK_METHODS) {
+            for (int numHairpins : new int[] { 2, 7, 12 }) {
+                for (int geneSetSize = 2; geneSetSize <= numHairpins; geneSetSize++) {
+                    assertMatchesEnumeration(method, numHairpins, geneSetSize);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPValuesCloseToSampledPValues() throws Exception {
+        for (HairpinSetScoringMethod method : RANK_METHODS) {
+            for (HairpinSetSamplingMethod samplingMethod : HairpinSetSamplingMethod.values()) {
+                assertPValuesCloseToSampledPValues(new RigerTestInputs().setHairpinSetScoringMethod(method)
+                                                                        .setHairpinSetSamplingMethod(samplingMethod)
+                                                                        .setNumRandomScoresPerGeneSetSize(100000));
+            }
+        }
+    }
+
+    private void assertPValuesCloseToSampledPValues(RigerTestInputs rigerInputs) {
+        final RigerOutputs sampledOutputs = new RigerImpl().execute(rigerInputs);
+        final RigerOutputs exactOutputs = new RigerImpl().execute(rigerInputs.setNullDistributionMethod(NullDistributionMethod.EXACT));
+        final Map<String,Double> sampledPValues = new TreeMap<String,Double>();
+        for (int i = 0; i < sampledOutputs.getNumGenes(); i++) {
+            sampledPValues.put(sampledOutputs.getGeneOutput(i).getGeneName(), sampledOutputs.getGeneOutput(i).getPValue());
+        }
+        for (int i = 0; i < exactOutputs.getNumGenes(); i++) {
+            final double sampledPValue = sampledPValues.get(exactOutputs.getGeneOutput(i).getGeneName());
+            assertEquals(sampledPValue, exactOutputs.getGeneOutput(i).getPValue(), 0.01);
+        }
+    }
+
+    @Test
+    public void testDoesNotDependOnRandomSeed() throws Exception {
+        for (HairpinSetScoringMethod method : RANK_METHODS) {
+            final RigerTestInputs rigerInputs =
+                new RigerTestInputs().setHairpinSetScoringMethod(method).setNullDistributionMethod(NullDistributionMethod.EXACT);
+            RigerTestInputs.assertSameOutputs(new RigerImpl().execute(rigerInputs.setRandomSeed(1)),
+                                              new RigerImpl().execute(rigerInputs.setRandomSeed(2)));
+        }
+    }
+
+    @Test(expected = RigerJInputException.class)
+    public void testNotAvailableForKolmogorovSmirnov() throws Exception {
+        new RigerImpl().execute(new RigerTestInputs().setNullDistributionMethod(NullDistributionMethod.EXACT));
+    }
+
+    @Test(expected = RigerJInputException.class)
+    public void testOrderStatisticsSamplingNotAvailableForKolmogorovSmirnov() throws Exception {
+        new RigerImpl().execute(new RigerTestInputs().setHairpinSetSamplingMethod(HairpinSetSamplingMethod.ORDER_STATISTICS));
+    }
+
+    private void assertMatchesEnumeration(HairpinSetScoringMethod method, int numHairpins, int geneSetSize) {
+        final HairpinSetScoringAlgorithm algorithm = new HairpinSetScoringAlgorithmFactory().createHairpinSetScoringAlgorithm(method);
+        final TreeMap<Double,Integer> scoreCounts = new TreeMap<Double,Integer>();
+        int numHairpinSets = 0;
+        for (int hairpinSet = 0; hairpinSet < 1 << numHairpins; hairpinSet++) {
+            if (Integer.bitCount(hairpinSet) != geneSetSize) {
+                continue;
+            }
+            final int[] indexes = new int[geneSetSize];
+            for (int i = 0, index = 0; index < numHairpins; index++) {
+                if ((hairpinSet & (1 << index)) != 0) {
+                    indexes[i++] = index;
+                }
+            }
+            final double score = algorithm.scoreWeightedHairpinSet(numHairpins, indexes, new double[geneSetSize]);
+            scoreCounts.put(score, scoreCounts.containsKey(score) ? scoreCounts.get(score) + 1 : 1);
+            numHairpinSets++;
+        }
+
+        final ExactRankNullDistribution nullDistribution = ExactRankNullDistribution.create(method, numHairpins, geneSetSize);
+        assertEquals(0, nullDistribution.computePValue(scoreCounts.firstKey() - 0.25), 1e-12);
+        int numAtOrBelow = 0;
+        for (Map.Entry<Double,Integer> entry : scoreCounts.entrySet()) {
+            numAtOrBelow += entry.getValue();
+            final double expectedPValue = (double) numAtOrBelow / numHairpinSets;
+            assertEquals(expectedPValue, nullDistribution.computePValue(entry.getKey()), 1e-12);
+            assertEquals(expectedPValue, nullDistribution.computePValue(entry.getKey() + 0.125), 1e-12);
+        }
+
+        for (double probability : new double[] { 0.1, 0.5, 0.9 }) {
+            double expectedQuantile = Double.NaN;
+            numAtOrBelow = 0;
+            for (Map.Entry<Double,Integer> entry : scoreCounts.entrySet()) {
+                numAtOrBelow += entry.getValue();
+                if ((double) numAtOrBelow / numHairpinSets > probability + 1e-12) {
+                    expectedQuantile = entry.getKey();
+                    break;
+                }
+            }
+            assertEquals(expectedQuantile, nullDistribution.computeQuantile(probability), 0);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class HairpinSetScoringAlgorithmTest {
+
+    private static final int NUM_HAIRPINS = 1000;
+    private static final int NUM_HAIRPIN_SETS = 300;
+
+    @Test
+    public void testBatchScoresMatchSingleScores() {
+        final Random random = new Random(1003);
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            final HairpinSetScoringAlgorithm algorithm = new HairpinSetScoringAlgorithmFactory().createHairpinSetScoringAlgorithm(method);
+            for (int hairpinSetSize : new int[] { 2, 5, 49, 200 }) {
+                final int[] indexes = new int[NUM_HAIRPIN_SETS * hairpinSetSize];
+                final double[] weights = new double[NUM_HAIRPIN_SETS * hairpinSetSize];
+                final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(NUM_HAIRPINS);
+                final RandomIndexGenerator randomIndexGenerator = new Xoshiro256StarStarGenerator(random.nextLong());
+                for (int i = 0; i < NUM_HAIRPIN_SETS; i++) {
+                    sampler.pickSubset(randomIndexGenerator, indexes, i * hairpinSetSize, hairpinSetSize);
+                }
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = algorithm.computeHairpinSetWeight(random.nextGaussian(), random.nextDouble(), 1);
+                }
+                final int[] originalIndexes = indexes.clone();
+
+                final double[] batchScores = new double[NUM_HAIRPIN_SETS];
+                algorithm.scoreWeightedHairpinSets(NUM_HAIRPINS, hairpinSetSize, NUM_HAIRPIN_SETS, indexes, weights, batchScores);
+                assertArrayEquals(originalIndexes, indexes);
+                for (int i = 0; i < NUM_HAIRPIN_SETS; i++) {
+                    final int from = i * hairpinSetSize;
+                    final int to = from + hairpinSetSize;
+                    final double expected = algorithm.scoreWeightedHairpinSet(NUM_HAIRPINS,
+                                                                              Arrays.copyOfRange(indexes, from, to),
+                                                                              Arrays.copyOfRange(weights, from, to));
+                    assertEquals(expected, batchScores[i], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSortedBatchScoresMatchBatchScores() {
+        final Random random = new Random(1003);
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            final HairpinSetScoringAlgorithm algorithm = new HairpinSetScoringAlgorithmFactory().createHairpinSetScoringAlgorithm(method);
+            for (int hairpinSetSize : new int[] { 1, 2, 5, 49, 200 }) {
+                final int[] indexes = new int[NUM_HAIRPIN_SETS * hairpinSetSize];
+                final double[] weights = new double[NUM_HAIRPIN_SETS * hairpinSetSize];
+                final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(NUM_HAIRPINS);
+                final RandomIndexGenerator randomIndexGenerator = new Xoshiro256StarStarGenerator(random.nextLong());
+                for (int i = 0; i < NUM_HAIRPIN_SETS; i++) {
+                    sampler.pickSortedSubset(randomIndexGenerator, indexes, i * hairpinSetSize, hairpinSetSize);
+                }
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = algorithm.computeHairpinSetWeight(random.nextGaussian(), random.nextDouble(), 1);
+                }
+
+                final double[] expectedScores = new double[NUM_HAIRPIN_SETS];
+                algorithm.scoreWeightedHairpinSets(NUM_HAIRPINS, hairpinSetSize, NUM_HAIRPIN_SETS, indexes, weights, expectedScores);
+                final double[] sortedScores = new double[NUM_HAIRPIN_SETS];
+                algorithm.scoreSortedWeightedHairpinSets(NUM_HAIRPINS, hairpinSetSize, NUM_HAIRPIN_SETS, indexes, weights, sortedScores);
+                assertArrayEquals(expectedScores, sortedScores, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class HistogramNullDistributionTest {
+
+    @Test
+    public void testMatchesSampledNullDistribution() {
+        final Random random = new Random(29);
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            final HairpinSetScoringAlgorithm algorithm = new HairpinSetScoringAlgorithmFactory().createHairpinSetScoringAlgorithm(method);
+            for (int numDistinctScores : new int[] { 1, 7, 5000 }) {
+                final double[] sortedRandomScores = new double[20000];
+                final RandomScoreHistogram histogram = new RandomScoreHistogram();
+                for (int i = 0; i < sortedRandomScores.length; i++) {
+                    sortedRandomScores[i] = (random.nextInt(numDistinctScores) - numDistinctScores / 3) * 0.25;
+                    histogram.add(sortedRandomScores[i]);
+                }
+                Arrays.sort(sortedRandomScores);
+                assertEquals(sortedRandomScores.length, histogram.getNumScores());
+
+                final SampledNullDistribution sampledNullDistribution = new SampledNullDistribution(sortedRandomScores, algorithm);
+                final HistogramNullDistribution histogramNullDistribution = histogram.toNullDistribution(algorithm);
+                int numDistinctRandomScores = 1;
+                for (int i = 1; i < sortedRandomScores.length; i++) {
+                    if (sortedRandomScores[i] != sortedRandomScores[i - 1]) {
+                        numDistinctRandomScores++;
+                    }
+                }
+                assertEquals(numDistinctRandomScores, histogramNullDistribution.getNumDistinctRandomScores());
+                final GeneScoreAdjuster sampledAdjuster = sampledNullDistribution.computeGeneSetSizeAdjustment();
+                final GeneScoreAdjuster histogramAdjuster = histogramNullDistribution.computeGeneSetSizeAdjustment();
+                for (int i = -10; i < numDistinctScores + 10; i++) {
+                    final double geneScore = (i - numDistinctScores / 3) * 0.25 + 0.125 * (i % 2);
+                    assertEquals(sampledNullDistribution.computePValue(geneScore), histogramNullDistribution.computePValue(geneScore), 0);
+                    assertEquals(sampledAdjuster.adjustGeneScore(geneScore), histogramAdjuster.adjustGeneScore(geneScore), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRunsMatchSampledRuns() throws Exception {
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            final RigerTestInputs rigerInputs = new RigerTestInputs().setHairpinSetScoringMethod(method).setAlpha(0.7);
+            RigerTestInputs.assertSameOutputs(new RigerImpl().execute(rigerInputs.setNullDistributionMethod(NullDistributionMethod.SAMPLED)),
+                                              new RigerImpl().execute(rigerInputs.setNullDistributionMethod(NullDistributionMethod.HISTOGRAM)));
+            final ExecutorService executorService = Executors.newFixedThreadPool(2);
+            try {
+                RigerTestInputs.assertSameOutputs(
+                    new RigerImpl(executorService).execute(rigerInputs.setNullDistributionMethod(NullDistributionMethod.SAMPLED)),
+                    new RigerImpl(executorService).execute(rigerInputs.setNullDistributionMethod(NullDistributionMethod.HISTOGRAM)));
+            }
+            finally {
+                executorService.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class KolmogorovSmirnovScoringAlgorithmTest {
+
+    /**
+     * Scores random hairpin sets from the test input file, of sizes on both sides of the insertion sort
+     * cutoff, and checks the scores are exactly those of the original map-based implementation.
+     */
+    @Test
+    public void testMatchesOriginalImplementation() throws Exception {
+        final List<HairpinInput> hairpinInputs = RigerTestInputs.loadTestHairpinInputs();
+        final int numHairpins = hairpinInputs.size();
+        final double[] orderedHairpinScores = new double[numHairpins];
+        for (int i = 0; i < numHairpins; i++) {
+            orderedHairpinScores[i] = hairpinInputs.get(i).getHairpinScore();
+        }
+        Arrays.sort(orderedHairpinScores);
+
+        final Random random = new Random(1003);
+        final KolmogorovSmirnovScoringAlgorithm algorithm = new KolmogorovSmirnovScoringAlgorithm();
+        for (double alpha : new double[] { 0, 0.5, 1, 2 }) {
+            for (int geneSetSize : new int[] { 2, 5, 31, 48, 49, 200 }) {
+                for (int i = 0; i < 200; i++) {
+                    final int[] indexes = new int[geneSetSize];
+                    final double[] scores = new double[geneSetSize];
+                    final double[] weights = new double[geneSetSize];
+                    final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(numHairpins);
+                    sampler.pickSubset(new Xoshiro256StarStarGenerator(random.nextLong()), indexes);
+                    for (int j = 0; j < geneSetSize; j++) {
+                        scores[j] = orderedHairpinScores[indexes[j]];
+                        weights[j] = random.nextDouble();
+                    }
+                    final int[] originalIndexes = indexes.clone();
+                    final double expected = scoreWithOriginalImplementation(numHairpins, scores, indexes, weights, alpha);
+                    final double actual = algorithm.scoreHairpinSet(numHairpins, scores, indexes, weights, alpha);
+                    assertEquals(expected, actual, 0);
+                    assertArrayEquals(originalIndexes, indexes);
+                }
+            }
+        }
+    }
+
+    private double scoreWithOriginalImplementation(int numTotalHairpinScores,
+                                                   double[] targetHairpinScores,
+                                                   int[] targetHairpinScoreIndexes,
+                                                   double[] targetHairpinWeights,
+                                                   double alpha) {
+        double nonTargetSetScoreWeight = (double) -1 / (numTotalHairpinScores - targetHairpinScores.length);
+        double[] weightedTargetSetScores = new double[targetHairpinScores.length];
+        double sumOfWeightedTargetSetScores = 0;
+        for (int i = 0; i < targetHairpinScores.length; i++) {
+            weightedTargetSetScores[i] = Math.pow(Math.abs(targetHairpinScores[i] * targetHairpinWeights[i]), alpha);
+            sumOfWeightedTargetSetScores += weightedTargetSetScores[i];
+        }
+        Map<Integer,Double> targetHairpinIndexToScoreMap = new HashMap<Integer,Double>();
+        for (int i = 0; i < targetHairpinScores.length; i++) {
+            targetHairpinIndexToScoreMap.put(targetHairpinScoreIndexes[i],
+                                             weightedTargetSetScores[i] / sumOfWeightedTargetSetScores);
+        }
+        int[] orderedTargetHairpinScoreIndexes = targetHairpinScoreIndexes.clone();
+        Arrays.sort(orderedTargetHairpinScoreIndexes);
+        double cumulativeScore = 0;
+        double maxCumulativeScore = 0;
+        double minCumulativeScore = 0;
+        int lastTargetHairpinIndex = -1;
+        for (int targetHairpinIndex : orderedTargetHairpinScoreIndexes) {
+            cumulativeScore += (targetHairpinIndex - lastTargetHairpinIndex - 1) * nonTargetSetScoreWeight;
+            minCumulativeScore = Math.min(minCumulativeScore, cumulativeScore);
+            cumulativeScore += targetHairpinIndexToScoreMap.get(targetHairpinIndex);
+            maxCumulativeScore = Math.max(maxCumulativeScore, cumulativeScore);
+            lastTargetHairpinIndex = targetHairpinIndex;
+        }
+        cumulativeScore += (numTotalHairpinScores - lastTargetHairpinIndex - 1) * nonTargetSetScoreWeight;
+        minCumulativeScore = Math.min(minCumulativeScore, cumulativeScore);
+        double hairpinSetScore = Math.abs(maxCumulativeScore) > Math.abs(minCumulativeScore) ? maxCumulativeScore : minCumulativeScore;
+        return KolmogorovSmirnovScoringAlgorithm.roundToSignificantFigures(hairpinSetScore, 5);
+    }
+}
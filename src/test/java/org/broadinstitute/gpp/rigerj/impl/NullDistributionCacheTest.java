@@ -0,0 +1,120 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class NullDistributionCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final NullDistributionCache cache = new NullDistributionCache(2);
+        cache.put("a", new double[] { 1 });
+        cache.put("b", new double[] { 2 });
+        cache.get("a");
+        cache.put("c", new double[] { 3 });
+        assertArrayEquals(new double[] { 1 }, cache.get("a"), 0);
+        assertNull(cache.get("b"));
+        assertArrayEquals(new double[] { 3 }, cache.get("c"), 0);
+        assertEquals(3, cache.getNumHits());
+        assertEquals(1, cache.getNumMisses());
+    }
+
+    @Test
+    public void testReadsBackFromDirectory() throws Exception {
+        final File directory = temporaryFolder.newFolder();
+        final double[] sortedRandomScores = { -1.5, 0, 0.25, Double.MAX_VALUE };
+        new NullDistributionCache(1, directory).put("key", sortedRandomScores);
+        assertArrayEquals(sortedRandomScores, new NullDistributionCache(1, directory).get("key"), 0);
+        assertNull(new NullDistributionCache(1, directory).get("otherKey"));
+    }
+
+    @Test
+    public void testCachedRunsMatchUncachedRuns() throws Exception {
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            final RigerTestInputs rigerInputs = new RigerTestInputs().setHairpinSetScoringMethod(method).setAlpha(0.7);
+            assertCachedRunsMatchUncachedRuns(rigerInputs, null);
+            final ExecutorService executorService = Executors.newFixedThreadPool(2);
+            try {
+                assertCachedRunsMatchUncachedRuns(rigerInputs, executorService);
+            }
+            finally {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testReusedForNewGeneMapping() throws Exception {
+        final RigerTestInputs rigerInputs = new RigerTestInputs();
+        final NullDistributionCache cache = new NullDistributionCache(1000);
+        new RigerImpl(null, cache).execute(rigerInputs);
+        final long numMisses = cache.getNumMisses();
+
+        // give the hairpins of every gene to the next gene with the same number of hairpins
+        final Map<String,Integer> geneSetSizes = new TreeMap<String,Integer>();
+        for (int i = 0; i < rigerInputs.getNumHairpins(); i++) {
+            final String geneName = rigerInputs.getHairpinInput(i).getGeneName();
+            geneSetSizes.put(geneName, geneSetSizes.containsKey(geneName) ? geneSetSizes.get(geneName) + 1 : 1);
+        }
+        final Map<String,String> remappedGeneNames = new HashMap<String,String>();
+        final Map<Integer,String> lastGeneNameForSize = new HashMap<Integer,String>();
+        final Map<Integer,String> firstGeneNameForSize = new HashMap<Integer,String>();
+        for (Map.Entry<String,Integer> entry : geneSetSizes.entrySet()) {
+            final String previousGeneName = lastGeneNameForSize.put(entry.getValue(), entry.getKey());
+            if (previousGeneName == null) {
+                firstGeneNameForSize.put(entry.getValue(), entry.getKey());
+            }
+            else {
+                remappedGeneNames.put(previousGeneName, entry.getKey());
+            }
+        }
+        for (Map.Entry<Integer,String> entry : lastGeneNameForSize.entrySet()) {
+            remappedGeneNames.put(entry.getValue(), firstGeneNameForSize.get(entry.getKey()));
+        }
+        final List<HairpinInput> remappedHairpinInputs = new ArrayList<HairpinInput>();
+        for (int i = 0; i < rigerInputs.getNumHairpins(); i++) {
+            final HairpinInput hairpinInput = rigerInputs.getHairpinInput(i);
+            remappedHairpinInputs.add(new HairpinData(hairpinInput.getHairpinRank(),
+                                                      hairpinInput.getHairpinName(),
+                                                      hairpinInput.getHairpinScore(),
+                                                      remappedGeneNames.get(hairpinInput.getGeneName()),
+                                                      hairpinInput.getHairpinWeight()));
+        }
+        final RigerTestInputs remappedRigerInputs = new RigerTestInputs(remappedHairpinInputs);
+        final RigerOutputs cachedOutputs = new RigerImpl(null, cache).execute(remappedRigerInputs);
+        assertEquals(numMisses, cache.getNumMisses());
+        RigerTestInputs.assertSameOutputs(new RigerImpl().execute(remappedRigerInputs), cachedOutputs);
+    }
+
+    private void assertCachedRunsMatchUncachedRuns(RigerTestInputs rigerInputs, ExecutorService executorService) {
+        final RigerOutputs uncachedOutputs = new RigerImpl(executorService).execute(rigerInputs);
+        final NullDistributionCache cache = new NullDistributionCache(1000);
+        RigerTestInputs.assertSameOutputs(uncachedOutputs, new RigerImpl(executorService, cache).execute(rigerInputs));
+        final long numMisses = cache.getNumMisses();
+        RigerTestInputs.assertSameOutputs(uncachedOutputs, new RigerImpl(executorService, cache).execute(rigerInputs));
+        assertEquals(numMisses, cache.getNumMisses());
+    }
+}
@@ -0,0 +1,83 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class PhiloxGeneratorTest {
+
+    /**
+     * The known answers of the reference implementation, Random123
+     */
+    @Test
+    public void testMatchesReferenceImplementation() {
+        assertBlock(new int[] { 0, 0, 0, 0 }, 0, 0,
+                    new int[] { 0x6627e8d5, 0xe169c58d, 0xbc57ac4c, 0x9b00dbd8 });
+        assertBlock(new int[] { 0xffffffff, 0xffffffff, 0xffffffff, 0xffffffff }, 0xffffffff, 0xffffffff,
+                    new int[] { 0x408f276d, 0x41c83b0e, 0xa20bc7c6, 0x6d5451fd });
+        assertBlock(new int[] { 0x243f6a88, 0x85a308d3, 0x13198a2e, 0x03707344 }, 0xa4093822, 0x299f31d0,
+                    new int[] { 0xd16cfe09, 0x94fdcceb, 0x5001e420, 0x24126ea1 });
+    }
+
+    @Test
+    public void testNextIntIsWithinBoundAndCoversRange() {
+        final PhiloxGenerator generator = new PhiloxGenerator(1003);
+        final int[] counts = new int[7];
+        for (int hairpinSet = 0; hairpinSet < 10000; hairpinSet++) {
+            generator.startHairpinSet(4, hairpinSet);
+            for (int i = 0; i < 7; i++) {
+                counts[generator.nextInt(7)]++;
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 9000 && count < 11000);
+        }
+    }
+
+    @Test
+    public void testHairpinSetDoesNotDependOnEarlierDraws() {
+        final PhiloxGenerator generator = new PhiloxGenerator(1003);
+        generator.startHairpinSet(5, 17);
+        final int first = generator.nextInt(1000000);
+        generator.startHairpinSet(5, 3);
+        for (int i = 0; i < 11; i++) {
+            generator.nextInt(1000000);
+        }
+        generator.startHairpinSet(5, 17);
+        assertEquals(first, generator.nextInt(1000000));
+    }
+
+    @Test
+    public void testResultsDoNotDependOnMode() throws Exception {
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            assertResultsDoNotDependOnMode(new RigerTestInputs().setHairpinSetScoringMethod(method)
+                                                                .setRandomNumberGeneratorType(RandomNumberGeneratorType.PHILOX));
+        }
+        assertResultsDoNotDependOnMode(new RigerTestInputs().setRandomNumberGeneratorType(RandomNumberGeneratorType.PHILOX)
+                                                            .setNullDistributionMethod(NullDistributionMethod.HISTOGRAM));
+        assertResultsDoNotDependOnMode(new RigerTestInputs().setRandomNumberGeneratorType(RandomNumberGeneratorType.PHILOX)
+                                                            .setHairpinSetScoringMethod(HairpinSetScoringMethod.SECOND_BEST_RANK)
+                                                            .setNullDistributionMethod(NullDistributionMethod.ADAPTIVE));
+    }
+
+    private void assertResultsDoNotDependOnMode(RigerTestInputs rigerInputs) {
+        final RigerOutputs sequentialOutputs = new RigerImpl().execute(rigerInputs);
+        RigerTestInputs.assertSameOutputs(sequentialOutputs, RigerTestInputs.executeOnThreads(rigerInputs, 3, false));
+        RigerTestInputs.assertSameOutputs(sequentialOutputs, RigerTestInputs.executeOnThreads(rigerInputs, 3, true));
+    }
+
+    private void assertBlock(int[] counter, int key0, int key1, int[] expected) {
+        final int[] block = new int[4];
+        PhiloxGenerator.computeBlock(counter, key0, key1, block);
+        assertArrayEquals(expected, block);
+    }
+}
@@ -0,0 +1,146 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RandomHairpinSubsetSamplerTest {
+
+    @Test
+    public void testPicksDistinctIndexes() {
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(10);
+        final RandomIndexGenerator random = new RandomIndexGeneratorFactory().createRandomIndexGenerator(RandomNumberGeneratorType.XOSHIRO256, 1003);
+        final int[] subset = new int[10];
+        for (int i = 0; i < 1000; i++) {
+            sampler.pickSubset(random, subset);
+            final Set<Integer> distinctIndexes = new HashSet<Integer>();
+            for (int index : subset) {
+                assertTrue(index >= 0 && index < 10);
+                distinctIndexes.add(index);
+            }
+            assertTrue(distinctIndexes.size() == 10);
+        }
+    }
+
+    /**
+     * The sampler must pick the same subsets as the set-based rejection sampling it replaced, so that
+     * existing random seeds reproduce existing results.
+     */
+    @Test
+    public void testMatchesSetBasedRejectionSampling() {
+        final int numHairpins = 50;
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(numHairpins);
+        final RandomIndexGenerator samplerRandom = new RandomIndexGeneratorFactory().createRandomIndexGenerator(RandomNumberGeneratorType.LEGACY, 1003);
+        final Random setRandom = new Random(1003);
+        for (int geneSetSize = 2; geneSetSize < 20; geneSetSize++) {
+            final int[] subset = new int[geneSetSize];
+            for (int i = 0; i < 100; i++) {
+                sampler.pickSubset(samplerRandom, subset);
+                assertArrayEquals(pickWithSet(setRandom, numHairpins, geneSetSize), subset);
+            }
+        }
+    }
+
+    @Test
+    public void testPicksSortedDistinctIndexes() {
+        final int numHairpins = 1000;
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(numHairpins);
+        final RandomIndexGenerator random = new RandomIndexGeneratorFactory().createRandomIndexGenerator(RandomNumberGeneratorType.XOSHIRO256, 1003);
+        for (int subsetSize : new int[] { 1, 2, 5, 76, 77, 500, 1000 }) {
+            final int[] subset = new int[subsetSize + 2];
+            for (int i = 0; i < 1000; i++) {
+                sampler.pickSortedSubset(random, subset, 1, subsetSize);
+                assertEquals(0, subset[0]);
+                assertEquals(0, subset[subsetSize + 1]);
+                for (int j = 1; j <= subsetSize; j++) {
+                    assertTrue(subset[j] >= 0 && subset[j] < numHairpins);
+                    assertTrue(j == 1 || subset[j] > subset[j - 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method A picks all of a subset of 3 out of 7 hairpins, and Method D the first of a subset of 2 out of 40
+     */
+    @Test
+    public void testPicksEverySortedSubsetEquallyOften() {
+        assertPicksEverySortedSubsetEquallyOften(7, 3, 35);
+        assertPicksEverySortedSubsetEquallyOften(40, 2, 780);
+    }
+
+    @Test
+    public void testPicksEveryIndexEquallyOftenInLargeSortedSubsets() {
+        final int numHairpins = 1000;
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(numHairpins);
+        final RandomIndexGenerator random = new RandomIndexGeneratorFactory().createRandomIndexGenerator(RandomNumberGeneratorType.XOSHIRO256, 1003);
+        final int[] subset = new int[5];
+        final int[] counts = new int[numHairpins];
+        for (int i = 0; i < 200000; i++) {
+            sampler.pickSortedSubset(random, subset, 0, subset.length);
+            for (int index : subset) {
+                counts[index]++;
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 850 && count < 1150);
+        }
+    }
+
+    @Test
+    public void testSmallestTwoAreFirstTwoOfSortedSubset() {
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(1000);
+        final RandomIndexGeneratorFactory factory = new RandomIndexGeneratorFactory();
+        for (int subsetSize : new int[] { 2, 5, 76, 77, 500, 1000 }) {
+            final int[] subset = new int[subsetSize];
+            final int[] smallestTwo = new int[2];
+            for (int seed = 0; seed < 1000; seed++) {
+                sampler.pickSortedSubset(factory.createRandomIndexGenerator(RandomNumberGeneratorType.XOSHIRO256, seed), subset, 0, subsetSize);
+                sampler.pickSmallestTwo(factory.createRandomIndexGenerator(RandomNumberGeneratorType.XOSHIRO256, seed), smallestTwo, 0, subsetSize);
+                assertArrayEquals(Arrays.copyOf(subset, 2), smallestTwo);
+            }
+        }
+    }
+
+    private void assertPicksEverySortedSubsetEquallyOften(int numHairpins, int subsetSize, int numSubsets) {
+        final RandomHairpinSubsetSampler sampler = new RandomHairpinSubsetSampler(numHairpins);
+        final RandomIndexGenerator random = new RandomIndexGeneratorFactory().createRandomIndexGenerator(RandomNumberGeneratorType.XOSHIRO256, 1003);
+        final int[] subset = new int[subsetSize];
+        final Map<String,Integer> counts = new HashMap<String,Integer>();
+        for (int i = 0; i < numSubsets * 1000; i++) {
+            sampler.pickSortedSubset(random, subset, 0, subsetSize);
+            final String key = Arrays.toString(subset);
+            final Integer count = counts.get(key);
+            counts.put(key, count == null ? 1 : count + 1);
+        }
+        assertEquals(numSubsets, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > 850 && count < 1150);
+        }
+    }
+
+    private int[] pickWithSet(Random random, int numHairpins, int geneSetSize) {
+        final int[] subset = new int[geneSetSize];
+        final Set<Integer> picked = new HashSet<Integer>();
+        while (picked.size() < geneSetSize) {
+            final int index = random.nextInt(numHairpins);
+            if (picked.add(index)) {
+                subset[picked.size() - 1] = index;
+            }
+        }
+        return subset;
+    }
+}
@@ -0,0 +1,55 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RigerImplAdaptiveTest {
+
+    @Test
+    public void testFirstRoundMatchesSampled() throws Exception {
+        final RigerTestInputs rigerInputs = new RigerTestInputs().setHairpinSetScoringMethod(HairpinSetScoringMethod.WEIGHTED_SUM);
+        final RigerOutputs sampledOutputs = new RigerImpl().execute(rigerInputs);
+        final RigerOutputs adaptiveOutputs = new RigerImpl().execute(rigerInputs.setNullDistributionMethod(NullDistributionMethod.ADAPTIVE)
+                                                                                .setMaxNumRandomScoresPerGeneSetSize(0));
+        RigerTestInputs.assertSameOutputs(sampledOutputs, adaptiveOutputs);
+        assertEquals(sampledOutputs.getNumRandomScoresByGeneSetSize(), adaptiveOutputs.getNumRandomScoresByGeneSetSize());
+        for (int numRandomScores : adaptiveOutputs.getNumRandomScoresByGeneSetSize().values()) {
+            assertEquals(10000, numRandomScores);
+        }
+    }
+
+    @Test
+    public void testResolvesSmallPValues() throws Exception {
+        final RigerTestInputs rigerInputs = new RigerTestInputs().setHairpinSetScoringMethod(HairpinSetScoringMethod.SECOND_BEST_RANK)
+                                                                 .setNullDistributionMethod(NullDistributionMethod.ADAPTIVE)
+                                                                 .setAdaptiveRelativePrecision(0.2)
+                                                                 .setMaxNumRandomScoresPerGeneSetSize(320000);
+        final RigerOutputs outputs = new RigerImpl().execute(rigerInputs);
+        final Map<Integer,Integer> numRandomScoresByGeneSetSize = outputs.getNumRandomScoresByGeneSetSize();
+        int maxNumRandomScores = 0;
+        for (int numRandomScores : numRandomScoresByGeneSetSize.values()) {
+            assertTrue(numRandomScores >= 10000 && numRandomScores <= 320000);
+            maxNumRandomScores = Math.max(maxNumRandomScores, numRandomScores);
+        }
+        assertEquals(320000, maxNumRandomScores);
+        assertTrue(outputs.getGeneOutput(0).getPValue() < 1e-4);
+    }
+
+    @Test
+    public void testResultsDoNotDependOnNumberOfThreads() throws Exception {
+        final RigerTestInputs rigerInputs = new RigerTestInputs().setNullDistributionMethod(NullDistributionMethod.ADAPTIVE)
+                                                                 .setMaxNumRandomScoresPerGeneSetSize(80000);
+        RigerTestInputs.assertSameOutputs(RigerTestInputs.executeOnThreads(rigerInputs, 1, false),
+                                          RigerTestInputs.executeOnThreads(rigerInputs, 3, false));
+    }
+}
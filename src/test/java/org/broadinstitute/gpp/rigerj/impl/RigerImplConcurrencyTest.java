@@ -0,0 +1,110 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerMetricsListener;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.broadinstitute.gpp.rigerj.api.RigerPhase;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RigerImplConcurrencyTest {
+
+    private static final int NUM_CALLERS = 8;
+    private static final int NUM_REPEATS = 3;
+
+    @Test
+    public void testSequentialModeUnderParallelLoad() throws Exception {
+        assertSameOutputsUnderParallelLoad(null);
+    }
+
+    @Test
+    public void testParallelModeUnderParallelLoad() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            assertSameOutputsUnderParallelLoad(executorService);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Changes the inputs once the execution is under way, which must not change its outputs
+     */
+    @Test
+    public void testInputsChangedDuringExecution() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            final RigerImpl rigerImpl = new RigerImpl(executorService);
+            final RigerTestInputs rigerInputs = new RigerTestInputs().setRandomSeed(1003);
+            final RigerOutputs expectedOutputs = rigerImpl.execute(rigerInputs);
+            final RigerOutputs actualOutputs = rigerImpl.execute(rigerInputs, new RigerMetricsListener() {
+
+                public void phaseFinished(RigerPhase phase, long elapsedNanos) {
+                    if (phase == RigerPhase.INITIALIZE) {
+                        rigerInputs.setRandomSeed(1004).setAlpha(0.5).setAdjustForHairpinSetSize(false);
+                    }
+                }
+            });
+            RigerTestInputs.assertSameOutputs(expectedOutputs, actualOutputs);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs every combination of inputs several times at once on one RigerImpl with a shared cache, all the callers
+     * starting together, and checks every output against that of the same inputs run alone
+     */
+    private void assertSameOutputsUnderParallelLoad(ExecutorService executorService) throws Exception {
+        final List<RigerTestInputs> rigerInputsList = new ArrayList<RigerTestInputs>();
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            for (NullDistributionMethod nullDistributionMethod : new NullDistributionMethod[] {
+                    NullDistributionMethod.SAMPLED, NullDistributionMethod.HISTOGRAM }) {
+                rigerInputsList.add(new RigerTestInputs().setHairpinSetScoringMethod(method)
+                                                         .setNullDistributionMethod(nullDistributionMethod)
+                                                         .setRandomSeed(1003));
+            }
+        }
+        final List<RigerOutputs> expectedOutputsList = new ArrayList<RigerOutputs>();
+        for (RigerTestInputs rigerInputs : rigerInputsList) {
+            expectedOutputsList.add(new RigerImpl(executorService).execute(rigerInputs));
+        }
+
+        final RigerImpl rigerImpl = new RigerImpl(executorService, new NullDistributionCache(1000));
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final ExecutorService callerExecutorService = Executors.newFixedThreadPool(NUM_CALLERS);
+        try {
+            final List<Future<RigerOutputs>> futures = new ArrayList<Future<RigerOutputs>>();
+            for (int repeat = 0; repeat < NUM_REPEATS; repeat++) {
+                for (final RigerTestInputs rigerInputs : rigerInputsList) {
+                    futures.add(callerExecutorService.submit(new Callable<RigerOutputs>() {
+                        public RigerOutputs call() throws InterruptedException {
+                            startLatch.await();
+                            return rigerImpl.execute(rigerInputs);
+                        }
+                    }));
+                }
+            }
+            startLatch.countDown();
+            for (int i = 0; i < futures.size(); i++) {
+                RigerTestInputs.assertSameOutputs(expectedOutputsList.get(i % rigerInputsList.size()), futures.get(i).get());
+            }
+        }
+        finally {
+            callerExecutorService.shutdownNow();
+        }
+    }
+}
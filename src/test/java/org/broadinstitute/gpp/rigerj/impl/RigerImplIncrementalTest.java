@@ -0,0 +1,179 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+import org.broadinstitute.gpp.rigerj.api.RigerMetricsListener;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RigerImplIncrementalTest {
+
+    @Test
+    public void testMatchesExecutionFromScratch() throws Exception {
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            assertMatchesExecutionFromScratch(new RigerTestInputs().setHairpinSetScoringMethod(method));
+        }
+        assertMatchesExecutionFromScratch(new RigerTestInputs().setNullDistributionMethod(NullDistributionMethod.HISTOGRAM));
+        assertMatchesExecutionFromScratch(new RigerTestInputs().setHairpinSetScoringMethod(HairpinSetScoringMethod.SECOND_BEST_RANK)
+                                                               .setNullDistributionMethod(NullDistributionMethod.ADAPTIVE)
+                                                               .setMaxNumRandomScoresPerGeneSetSize(40000));
+        assertMatchesExecutionFromScratch(new RigerTestInputs().setHairpinSetScoringMethod(HairpinSetScoringMethod.WEIGHTED_SUM)
+                                                               .setNullDistributionMethod(NullDistributionMethod.EXACT));
+    }
+
+    @Test
+    public void testOnlyComputesNewNullDistributions() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            final RigerImpl rigerImpl = new RigerImpl(executorService);
+            final RigerTestInputs rigerInputs = new RigerTestInputs();
+            final RigerRunState state = rigerImpl.executeIncrementally(rigerInputs, null);
+
+            final NullDistributionCounter renameCounter = new NullDistributionCounter();
+            rigerImpl.executeIncrementally(renameGene(rigerInputs), state, renameCounter);
+            assertEquals(0, renameCounter.numNullDistributions);
+
+            final RigerInputs remappedInputs = remap(rigerInputs);
+            final NullDistributionCounter remapCounter = new NullDistributionCounter();
+            rigerImpl.executeIncrementally(remappedInputs, state, remapCounter);
+            final int numNewGeneSetSizes = countNewGeneSetSizes(rigerInputs, remappedInputs);
+            assertTrue(numNewGeneSetSizes > 0);
+            assertEquals(numNewGeneSetSizes, remapCounter.numNullDistributions);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNothingTakenOverForOtherParameters() throws Exception {
+        final RigerImpl rigerImpl = new RigerImpl();
+        final RigerTestInputs rigerInputs = new RigerTestInputs();
+        final RigerRunState state = rigerImpl.executeIncrementally(rigerInputs, null);
+        rigerInputs.setAlpha(0.5);
+        RigerTestInputs.assertSameOutputs(rigerImpl.execute(rigerInputs), rigerImpl.executeIncrementally(rigerInputs, state).getRigerOutputs());
+    }
+
+    private void assertMatchesExecutionFromScratch(RigerTestInputs rigerInputs) throws Exception {
+        assertMatchesExecutionFromScratch(rigerInputs, new RigerImpl());
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            assertMatchesExecutionFromScratch(rigerInputs, new RigerImpl(executorService));
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Renames a gene, remaps the result, and then renames a gene again, which gives the same gene set sizes as the
+     * remapping
+     */
+    private void assertMatchesExecutionFromScratch(RigerTestInputs rigerInputs, RigerImpl rigerImpl) {
+        RigerRunState state = rigerImpl.executeIncrementally(rigerInputs, null);
+        RigerTestInputs.assertSameOutputs(rigerImpl.execute(rigerInputs), state.getRigerOutputs());
+        RigerInputs nextInputs = renameGene(rigerInputs);
+        state = rigerImpl.executeIncrementally(nextInputs, state);
+        RigerTestInputs.assertSameOutputs(rigerImpl.execute(nextInputs), state.getRigerOutputs());
+        nextInputs = remap(nextInputs);
+        state = rigerImpl.executeIncrementally(nextInputs, state);
+        RigerTestInputs.assertSameOutputs(rigerImpl.execute(nextInputs), state.getRigerOutputs());
+        nextInputs = renameGene(nextInputs);
+        state = rigerImpl.executeIncrementally(nextInputs, state);
+        RigerTestInputs.assertSameOutputs(rigerImpl.execute(nextInputs), state.getRigerOutputs());
+    }
+
+    /**
+     * @return the inputs with the hairpins of the first gene moved to a gene of a new name
+     */
+    private static RigerInputs renameGene(RigerInputs rigerInputs) {
+        final Map<String,List<String>> hairpinNamesByGeneName = getHairpinNamesByGeneName(rigerInputs);
+        final Map.Entry<String,List<String>> gene = hairpinNamesByGeneName.entrySet().iterator().next();
+        final Map<String,String> geneNamesByHairpinName = new HashMap<String,String>();
+        for (String hairpinName : gene.getValue()) {
+            geneNamesByHairpinName.put(hairpinName, gene.getKey() + "_renamed");
+        }
+        return new RemappedRigerInputs(rigerInputs, geneNamesByHairpinName);
+    }
+
+    /**
+     * @return the inputs with one hairpin moved from the first gene with at least three hairpins to the next gene,
+     * and the gene with the most hairpins merged into the gene after that, which makes a gene set size of its own
+     */
+    private static RigerInputs remap(RigerInputs rigerInputs) {
+        final List<Map.Entry<String,List<String>>> genes =
+            new ArrayList<Map.Entry<String,List<String>>>(getHairpinNamesByGeneName(rigerInputs).entrySet());
+        int i = 0;
+        while (genes.get(i).getValue().size() < 3) {
+            i++;
+        }
+        int largest = i + 3;
+        for (int j = i + 3; j < genes.size(); j++) {
+            if (genes.get(j).getValue().size() > genes.get(largest).getValue().size()) {
+                largest = j;
+            }
+        }
+        final Map<String,String> geneNamesByHairpinName = new HashMap<String,String>();
+        geneNamesByHairpinName.put(genes.get(i).getValue().get(0), genes.get(i + 1).getKey());
+        for (String hairpinName : genes.get(largest).getValue()) {
+            geneNamesByHairpinName.put(hairpinName, genes.get(i + 2).getKey());
+        }
+        return new RemappedRigerInputs(rigerInputs, geneNamesByHairpinName);
+    }
+
+    private static Map<String,List<String>> getHairpinNamesByGeneName(RigerInputs rigerInputs) {
+        final Map<String,List<String>> hairpinNamesByGeneName = new TreeMap<String,List<String>>();
+        for (int i = 0; i < rigerInputs.getNumHairpins(); i++) {
+            final HairpinInput hairpinInput = rigerInputs.getHairpinInput(i);
+            List<String> hairpinNames = hairpinNamesByGeneName.get(hairpinInput.getGeneName());
+            if (hairpinNames == null) {
+                hairpinNames = new ArrayList<String>();
+                hairpinNamesByGeneName.put(hairpinInput.getGeneName(), hairpinNames);
+            }
+            hairpinNames.add(hairpinInput.getHairpinName());
+        }
+        return hairpinNamesByGeneName;
+    }
+
+    private static int countNewGeneSetSizes(RigerInputs rigerInputs, RigerInputs remappedInputs) {
+        final List<Integer> geneSetSizes = new ArrayList<Integer>();
+        for (List<String> hairpinNames : getHairpinNamesByGeneName(rigerInputs).values()) {
+            geneSetSizes.add(hairpinNames.size());
+        }
+        final List<Integer> newGeneSetSizes = new ArrayList<Integer>();
+        for (List<String> hairpinNames : getHairpinNamesByGeneName(remappedInputs).values()) {
+            if (!geneSetSizes.contains(hairpinNames.size()) && !newGeneSetSizes.contains(hairpinNames.size())) {
+                newGeneSetSizes.add(hairpinNames.size());
+            }
+        }
+        return newGeneSetSizes.size();
+    }
+
+    private static class NullDistributionCounter implements RigerMetricsListener {
+
+        int numNullDistributions;
+
+        public synchronized void nullDistributionComputed(int geneSetSize,
+                                                          int numRandomScores,
+                                                          long numRejectedDraws,
+                                                          long numBytesAllocated,
+                                                          long elapsedNanos) {
+            numNullDistributions++;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerMetricsListener;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.broadinstitute.gpp.rigerj.api.RigerPhase;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RigerImplMetricsTest {
+
+    @Test
+    public void testReportsEveryPhaseOnceInOrder() throws Exception {
+        final RecordingMetricsListener metricsListener = new RecordingMetricsListener();
+        new RigerImpl().execute(new RigerTestInputs(), metricsListener);
+        assertEquals(Arrays.asList(RigerPhase.values()), metricsListener.startedPhases);
+        assertEquals(Arrays.asList(RigerPhase.values()), metricsListener.finishedPhases);
+    }
+
+    @Test
+    public void testReportsEveryNullDistribution() throws Exception {
+        for (NullDistributionMethod nullDistributionMethod : new NullDistributionMethod[] {
+                NullDistributionMethod.SAMPLED, NullDistributionMethod.ADAPTIVE, NullDistributionMethod.HISTOGRAM,
+                NullDistributionMethod.PERMUTATION }) {
+            final ExecutorService executorService = Executors.newFixedThreadPool(3);
+            try {
+                final RecordingMetricsListener metricsListener = new RecordingMetricsListener();
+                final RigerOutputs rigerOutputs =
+                    new RigerImpl(executorService).execute(new RigerTestInputs().setNullDistributionMethod(nullDistributionMethod),
+                                                           metricsListener);
+                assertEquals(rigerOutputs.getNumRandomScoresByGeneSetSize(), metricsListener.numRandomScoresByGeneSetSize);
+                assertTrue(metricsListener.numRejectedDraws >= 0);
+                assertTrue(metricsListener.numBytesAllocated > 0);
+            }
+            finally {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testDoesNotChangeOutputs() throws Exception {
+        final RigerTestInputs rigerInputs = new RigerTestInputs();
+        RigerTestInputs.assertSameOutputs(new RigerImpl().execute(rigerInputs),
+                                          new RigerImpl().execute(rigerInputs, new RecordingMetricsListener()));
+    }
+
+    private static class RecordingMetricsListener implements RigerMetricsListener {
+
+        final List<RigerPhase> startedPhases = new ArrayList<RigerPhase>();
+        final List<RigerPhase> finishedPhases = new ArrayList<RigerPhase>();
+        final Map<Integer,Integer> numRandomScoresByGeneSetSize = new TreeMap<Integer,Integer>();
+        long numRejectedDraws;
+        long numBytesAllocated;
+
+        public synchronized void phaseStarted(RigerPhase phase) {
+            startedPhases.add(phase);
+        }
+
+        public synchronized void phaseFinished(RigerPhase phase, long elapsedNanos) {
+            finishedPhases.add(phase);
+        }
+
+        public synchronized void nullDistributionComputed(int geneSetSize,
+                                                          int numRandomScores,
+                                                          long numRejectedDraws,
+                                                          long numBytesAllocated,
+                                                          long elapsedNanos) {
+            assertEquals(null, numRandomScoresByGeneSetSize.put(geneSetSize, numRandomScores));
+            this.numRejectedDraws += numRejectedDraws;
+            this.numBytesAllocated += numBytesAllocated;
+        }
+    }
+}
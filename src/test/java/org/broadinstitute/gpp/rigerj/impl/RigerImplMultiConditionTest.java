@@ -0,0 +1,149 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.MultiConditionRigerInputs;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerAlgorithm;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RigerImplMultiConditionTest {
+
+    private static final int NUM_CONDITIONS = 3;
+
+    @Test
+    public void testMatchesExecutionOfEachCondition() throws Exception {
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            assertMatchesExecutionOfEachCondition(new TestMultiConditionRigerInputs(new RigerTestInputs().setHairpinSetScoringMethod(method)));
+        }
+        assertMatchesExecutionOfEachCondition(new TestMultiConditionRigerInputs(new RigerTestInputs().setNullDistributionMethod(NullDistributionMethod.HISTOGRAM)));
+        assertMatchesExecutionOfEachCondition(new TestMultiConditionRigerInputs(new RigerTestInputs().setHairpinSetScoringMethod(HairpinSetScoringMethod.SECOND_BEST_RANK)
+                                                                                                     .setNullDistributionMethod(NullDistributionMethod.ADAPTIVE)));
+    }
+
+    @Test
+    public void testSharesRankNullDistributionsBetweenConditions() throws Exception {
+        final RigerTestInputs rigerInputs = new RigerTestInputs().setHairpinSetScoringMethod(HairpinSetScoringMethod.SECOND_BEST_RANK);
+        final NullDistributionCache cache = new NullDistributionCache(1000);
+        new RigerImpl(null, cache).execute(new TestMultiConditionRigerInputs(rigerInputs));
+        final long numMisses = cache.getNumMisses();
+        assertEquals(0, cache.getNumHits());
+
+        // the scores of the second condition are those of the first on other hairpins, so only the third condition
+        // has Kolmogorov-Smirnov null distributions of its own
+        final NullDistributionCache kolmogorovSmirnovCache = new NullDistributionCache(1000);
+        rigerInputs.setHairpinSetScoringMethod(HairpinSetScoringMethod.KOLMOGOROV_SMIRNOV);
+        new RigerImpl(null, kolmogorovSmirnovCache).execute(new TestMultiConditionRigerInputs(rigerInputs));
+        assertEquals(2 * numMisses, kolmogorovSmirnovCache.getNumMisses());
+    }
+
+    private void assertMatchesExecutionOfEachCondition(MultiConditionRigerInputs inputs) {
+        assertMatchesExecutionOfEachCondition(inputs, new RigerImpl());
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            assertMatchesExecutionOfEachCondition(inputs, new RigerImpl(executorService));
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void assertMatchesExecutionOfEachCondition(MultiConditionRigerInputs inputs, final RigerImpl rigerImpl) {
+        final List<RigerOutputs> rigerOutputs = rigerImpl.execute(inputs);
+        final List<RigerOutputs> expectedRigerOutputs = new RigerAlgorithm() {
+            public RigerOutputs execute(RigerInputs rigerInputs) {
+                return rigerImpl.execute(rigerInputs);
+            }
+        }.execute(inputs);
+        assertEquals(NUM_CONDITIONS, rigerOutputs.size());
+        for (int condition = 0; condition < NUM_CONDITIONS; condition++) {
+            RigerTestInputs.assertSameOutputs(expectedRigerOutputs.get(condition), rigerOutputs.get(condition));
+        }
+    }
+
+    /**
+     * The test hairpins, with their own scores in the first condition, the scores of the hairpins in reverse order in
+     * the second, and negated scores in the third
+     */
+    private static final class TestMultiConditionRigerInputs implements MultiConditionRigerInputs {
+
+        private final RigerTestInputs rigerInputs;
+
+        TestMultiConditionRigerInputs(RigerTestInputs rigerInputs) {
+            this.rigerInputs = rigerInputs;
+        }
+
+        public int getNumHairpins() {
+            return rigerInputs.getNumHairpins();
+        }
+
+        public String getHairpinName(int i) {
+            return rigerInputs.getHairpinInput(i).getHairpinName();
+        }
+
+        public String getGeneName(int i) {
+            return rigerInputs.getHairpinInput(i).getGeneName();
+        }
+
+        public double getHairpinWeight(int i) {
+            return rigerInputs.getHairpinInput(i).getHairpinWeight();
+        }
+
+        public int getNumConditions() {
+            return NUM_CONDITIONS;
+        }
+
+        public double getHairpinScore(int condition, int i) {
+            final HairpinInput hairpinInput = getConditionHairpinInput(condition, i);
+            return condition == 2 ? -hairpinInput.getHairpinScore() : hairpinInput.getHairpinScore();
+        }
+
+        public int getHairpinRank(int condition, int i) {
+            final HairpinInput hairpinInput = getConditionHairpinInput(condition, i);
+            return condition == 2 ? getNumHairpins() + 1 - hairpinInput.getHairpinRank() : hairpinInput.getHairpinRank();
+        }
+
+        private HairpinInput getConditionHairpinInput(int condition, int i) {
+            return rigerInputs.getHairpinInput(condition == 1 ? getNumHairpins() - 1 - i : i);
+        }
+
+        public HairpinSetScoringMethod getHairpinSetScoringMethod() {
+            return rigerInputs.getHairpinSetScoringMethod();
+        }
+
+        public boolean flattenWeights() {
+            return rigerInputs.flattenWeights();
+        }
+
+        public int getNumRandomScoresPerGeneSetSize() {
+            return rigerInputs.getNumRandomScoresPerGeneSetSize();
+        }
+
+        public double getAlpha() {
+            return rigerInputs.getAlpha();
+        }
+
+        public long getRandomSeed() {
+            return rigerInputs.getRandomSeed();
+        }
+
+        public boolean adjustForHairpinSetSize() {
+            return rigerInputs.adjustForHairpinSetSize();
+        }
+
+        public NullDistributionMethod getNullDistributionMethod() {
+            return rigerInputs.getNullDistributionMethod();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.junit.Test;
+
+/**
+ * Tests for the parallel mode of {@link RigerImpl}, and for concurrent executions of one {@link RigerImpl}.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RigerImplParallelTest {
+
+    @Test
+    public void testResultsDoNotDependOnNumberOfThreads() throws Exception {
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            final RigerTestInputs rigerInputs = new RigerTestInputs().setHairpinSetScoringMethod(method);
+            final RigerOutputs singleThreadOutputs = RigerTestInputs.executeOnThreads(rigerInputs, 1, false);
+            final RigerOutputs multiThreadOutputs = RigerTestInputs.executeOnThreads(rigerInputs, 4, false);
+            RigerTestInputs.assertSameOutputs(singleThreadOutputs, multiThreadOutputs);
+        }
+    }
+
+    @Test
+    public void testSplitResultsDoNotDependOnNumberOfThreads() throws Exception {
+        final List<RigerTestInputs> rigerInputsList = new ArrayList<RigerTestInputs>();
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            rigerInputsList.add(new RigerTestInputs().setHairpinSetScoringMethod(method));
+        }
+        rigerInputsList.add(new RigerTestInputs().setNullDistributionMethod(NullDistributionMethod.HISTOGRAM));
+        for (RigerTestInputs rigerInputs : rigerInputsList) {
+            final RigerOutputs singleThreadOutputs = RigerTestInputs.executeOnThreads(rigerInputs, 1, true);
+            final RigerOutputs multiThreadOutputs = RigerTestInputs.executeOnThreads(rigerInputs, 4, true);
+            RigerTestInputs.assertSameOutputs(singleThreadOutputs, multiThreadOutputs);
+        }
+    }
+
+    @Test
+    public void testMergeSortedRuns() {
+        final Random random = new Random(1003);
+        for (int length : new int[] { 1, 7, 8, 9, 100 }) {
+            final double[] values = new double[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = random.nextInt(10);
+            }
+            final double[] expected = values.clone();
+            Arrays.sort(expected);
+            for (int start = 0; start < length; start += 4) {
+                Arrays.sort(values, start, Math.min(length, start + 4));
+            }
+            assertArrayEquals(expected, RigerRun.mergeSortedRuns(values, 4), 0);
+        }
+    }
+
+    @Test
+    public void testConcurrentExecutionsShareOneRigerImpl() throws Exception {
+        final List<RigerTestInputs> rigerInputsList = new ArrayList<RigerTestInputs>();
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            for (long seed = 1003; seed < 1005; seed++) {
+                rigerInputsList.add(new RigerTestInputs().setHairpinSetScoringMethod(method).setRandomSeed(seed));
+            }
+        }
+
+        final RigerImpl rigerImpl = new RigerImpl();
+        final ExecutorService executorService = Executors.newFixedThreadPool(rigerInputsList.size());
+        try {
+            final List<Future<RigerOutputs>> futures = new ArrayList<Future<RigerOutputs>>();
+            for (final RigerTestInputs rigerInputs : rigerInputsList) {
+                futures.add(executorService.submit(new Callable<RigerOutputs>() {
+                    public RigerOutputs call() {
+                        return rigerImpl.execute(rigerInputs);
+                    }
+                }));
+            }
+            for (int i = 0; i < rigerInputsList.size(); i++) {
+                RigerTestInputs.assertSameOutputs(new RigerImpl().execute(rigerInputsList.get(i)), futures.get(i).get());
+            }
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGeneSetSizeRandomSeedsDiffer() {
+        final long seed = 1003;
+        assertNotEquals(RigerImpl.deriveGeneSetSizeRandomSeed(seed, 2), RigerImpl.deriveGeneSetSizeRandomSeed(seed, 3));
+        assertNotEquals(RigerImpl.deriveGeneSetSizeRandomSeed(seed, 2), RigerImpl.deriveGeneSetSizeRandomSeed(seed + 1, 2));
+    }
+}
@@ -0,0 +1,85 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.broadinstitute.gpp.rigerj.api.GeneOutput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.broadinstitute.gpp.rigerj.api.RigerJInputException;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class RigerImplPermutationTest {
+
+    @Test
+    public void testDrawsARandomScorePerGenePerPermutation() throws Exception {
+        final RigerTestInputs rigerInputs = new RigerTestInputs().setNullDistributionMethod(NullDistributionMethod.PERMUTATION)
+                                                                 .setNumPermutations(100);
+        final RigerOutputs outputs = new RigerImpl().execute(rigerInputs);
+        final Map<Integer,Integer> numGenesByGeneSetSize = new HashMap<Integer,Integer>();
+        for (int i = 0; i < outputs.getNumGenes(); i++) {
+            final int geneSetSize = outputs.getGeneOutput(i).getSortedHairpinRanks().length;
+            final Integer numGenes = numGenesByGeneSetSize.get(geneSetSize);
+            numGenesByGeneSetSize.put(geneSetSize, numGenes == null ? 1 : numGenes + 1);
+        }
+        assertEquals(numGenesByGeneSetSize.keySet(), outputs.getNumRandomScoresByGeneSetSize().keySet());
+        for (Map.Entry<Integer,Integer> entry : numGenesByGeneSetSize.entrySet()) {
+            assertEquals(100 * entry.getValue(), (int) outputs.getNumRandomScoresByGeneSetSize().get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testPValuesCloseToExactPValues() throws Exception {
+        for (HairpinSetScoringMethod method : new HairpinSetScoringMethod[] {
+                HairpinSetScoringMethod.SECOND_BEST_RANK, HairpinSetScoringMethod.WEIGHTED_SUM }) {
+            final RigerTestInputs rigerInputs = new RigerTestInputs().setHairpinSetScoringMethod(method)
+                                                                     .setNullDistributionMethod(NullDistributionMethod.PERMUTATION);
+            final RigerOutputs permutationOutputs = new RigerImpl().execute(rigerInputs);
+            final RigerOutputs exactOutputs = new RigerImpl().execute(rigerInputs.setNullDistributionMethod(NullDistributionMethod.EXACT));
+            final Map<String,Double> exactPValues = new TreeMap<String,Double>();
+            for (int i = 0; i < exactOutputs.getNumGenes(); i++) {
+                exactPValues.put(exactOutputs.getGeneOutput(i).getGeneName(), exactOutputs.getGeneOutput(i).getPValue());
+            }
+            // a gene set size with few genes gets few random scores, so the p-values may only be within a few standard
+            // errors of the exact ones
+            for (int i = 0; i < permutationOutputs.getNumGenes(); i++) {
+                final GeneOutput geneOutput = permutationOutputs.getGeneOutput(i);
+                final double exactPValue = exactPValues.get(geneOutput.getGeneName());
+                final int numRandomScores =
+                    permutationOutputs.getNumRandomScoresByGeneSetSize().get(geneOutput.getSortedHairpinRanks().length);
+                assertEquals(exactPValue, geneOutput.getPValue(), 4 * Math.sqrt(exactPValue * (1 - exactPValue) / numRandomScores) + 0.001);
+            }
+        }
+    }
+
+    @Test(expected = RigerJInputException.class)
+    public void testNoPermutationsRejected() throws Exception {
+        new RigerImpl().execute(new RigerTestInputs().setNullDistributionMethod(NullDistributionMethod.PERMUTATION)
+                                                     .setNumPermutations(0));
+    }
+
+    @Test
+    public void testResultsDoNotDependOnNumberOfThreads() throws Exception {
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            assertResultsDoNotDependOnNumberOfThreads(new RigerTestInputs().setHairpinSetScoringMethod(method)
+                                                                           .setNullDistributionMethod(NullDistributionMethod.PERMUTATION)
+                                                                           .setNumPermutations(100));
+        }
+        assertResultsDoNotDependOnNumberOfThreads(new RigerTestInputs().setNullDistributionMethod(NullDistributionMethod.PERMUTATION)
+                                                                       .setRandomNumberGeneratorType(RandomNumberGeneratorType.PHILOX)
+                                                                       .setNumPermutations(100));
+    }
+
+    private void assertResultsDoNotDependOnNumberOfThreads(RigerTestInputs rigerInputs) {
+        RigerTestInputs.assertSameOutputs(new RigerImpl().execute(rigerInputs),
+                                          RigerTestInputs.executeOnThreads(rigerInputs, 3, false));
+    }
+}
@@ -1,5 +1,8 @@
 package org.broadinstitute.gpp.rigerj.impl;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -25,8 +28,11 @@ public class RigerImplUnitTest {
                         data[j] = new HairpinData(1, "TRCNAN3", r.nextDouble(), "eGFP.1", 1.0);
                     }
                 }
-                HairpinData data2[] = Arrays.copyOf(data, data.length);
-                Arrays.sort(data2, new RigerImpl.HairpinScoreAscendingComparator());
+                double scores[] = new double[data.length];
+                for (int j = 0; j < data.length; j++) {
+                    scores[j] = data[j].getHairpinScore();
+                }
+                HairpinTable.sortIndexesByAscendingScore(scores);
             }
         } catch (IllegalArgumentException e) {
             System.out.println(e.getMessage());
@@ -43,7 +49,7 @@ public class RigerImplUnitTest {
     */
 
     @Test
-    public void testHairpinScoreAscendingComparator() {
+    public void testHairpinTableOrdersByAscendingScore() {
         HairpinData[] data = new HairpinData[] {
                 new HairpinData(1, "TRCN000000067", 0.5332725345472525, "eGFP.1", 1.0),
                 new HairpinData(1, "TRCN000000067", 0.7433432208106739, "eGFP.1", 1.0),
@@ -82,12 +88,16 @@ public class RigerImplUnitTest {
                 new HairpinData(1, "TRCN000000067", 0.5458281231720978, "eGFP.1", 1.0),
                 new HairpinData(1, "TRCN000000067", 0.30223706028669883, "eGFP.1", 1.0),
         };
-        Arrays.sort(data, new RigerImpl.HairpinScoreAscendingComparator());
+        double[] scores = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            scores[i] = data[i].getHairpinScore();
+        }
+        int[] orderedIndexes = HairpinTable.sortIndexesByAscendingScore(scores);
 
         // make sure the hairpin data is sorted ascendingly
-        double d1 = data[0].getHairpinScore();
-        for (final HairpinData datum : data) {
-            final double d2 = datum.getHairpinScore();
+        double d1 = scores[orderedIndexes[0]];
+        for (final int index : orderedIndexes) {
+            final double d2 = scores[index];
             if (Double.isNaN(d2)) {
                 continue;
             }
@@ -116,6 +126,17 @@ public class RigerImplUnitTest {
         assertAscending(getPValuesFromGeneData(data));
     }
 
+    @Test
+    public void testGeneDataWithAddedHairpins() {
+        GeneData gd = new GeneData();
+        assertEquals(0, gd.getNumHairpins());
+        gd.addHairpinData(new HairpinData(7, "TRCN000000067", 0.5, "eGFP.1", 1.0));
+        gd.addHairpinData(new HairpinData(2, "TRCN000000068", 1.5, "eGFP.1", 1.0));
+        assertEquals(2, gd.getNumHairpins());
+        assertArrayEquals(new int[] { 2, 7 }, gd.getSortedHairpinRanks());
+        assertEquals("2 7 ", gd.getHairpinRanks());
+    }
+
     private void assertAscending(double[] data) {
         double d1 = data[0];
         for (final double d2 : data) {
@@ -0,0 +1,222 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.broadinstitute.gpp.rigerj.api.GeneOutput;
+import org.broadinstitute.gpp.rigerj.api.HairpinInput;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetSamplingMethod;
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.broadinstitute.gpp.rigerj.api.NullDistributionMethod;
+import org.broadinstitute.gpp.rigerj.api.RandomNumberGeneratorType;
+import org.broadinstitute.gpp.rigerj.api.RigerInputs;
+import org.broadinstitute.gpp.rigerj.api.RigerOutputs;
+
+/**
+ * A {@link RigerInputs} over the hairpins in the test input file, with setters for the algorithm
+ * parameters, shared by the tests that compare the outputs of different {@link RigerImpl} runs.
+ *
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+class RigerTestInputs implements RigerInputs {
+
+    private static final String TEST_INPUT_FILENAME = "src/test/resources/inputFile.txt";
+
+    private static List<HairpinInput> testHairpinInputs;
+
+    private final List<HairpinInput> hairpinInputs;
+    private HairpinSetScoringMethod hairpinSetScoringMethod = HairpinSetScoringMethod.KOLMOGOROV_SMIRNOV;
+    private boolean flattenWeights = true;
+    private int numRandomScoresPerGeneSetSize = 10000;
+    private double alpha = 1.0;
+    private long randomSeed = 1003;
+    private boolean adjustForHairpinSetSize = true;
+    private RandomNumberGeneratorType randomNumberGeneratorType = RandomNumberGeneratorType.LEGACY;
+    private HairpinSetSamplingMethod hairpinSetSamplingMethod = HairpinSetSamplingMethod.REJECTION;
+    private NullDistributionMethod nullDistributionMethod = NullDistributionMethod.SAMPLED;
+    private double adaptiveRelativePrecision = 0.1;
+    private int maxNumRandomScoresPerGeneSetSize = 1000000;
+    private int numPermutations = 1000;
+
+    RigerTestInputs() throws IOException {
+        this(loadTestHairpinInputs());
+    }
+
+    RigerTestInputs(List<HairpinInput> hairpinInputs) {
+        this.hairpinInputs = hairpinInputs;
+    }
+
+    static synchronized List<HairpinInput> loadTestHairpinInputs() throws IOException {
+        if (testHairpinInputs == null) {
+            final List<HairpinInput> hairpinInputs = new ArrayList<HairpinInput>();
+            final BufferedReader bufferedReader = new BufferedReader(new FileReader(TEST_INPUT_FILENAME));
+            try {
+                bufferedReader.readLine();
+                String line;
+                while ((line = bufferedReader.readLine()) != null) {
+                    final String[] cells = line.split("\t", 0);
+                    hairpinInputs.add(new HairpinData(Double.valueOf(cells[3]).intValue(),
+                                                      cells[0],
+                                                      Double.parseDouble(cells[2]),
+                                                      cells[1],
+                                                      1));
+                }
+            }
+            finally {
+                bufferedReader.close();
+            }
+            testHairpinInputs = hairpinInputs;
+        }
+        return testHairpinInputs;
+    }
+
+    static void assertSameOutputs(RigerOutputs expected, RigerOutputs actual) {
+        assertEquals(expected.getNumGenes(), actual.getNumGenes());
+        for (int i = 0; i < expected.getNumGenes(); i++) {
+            final GeneOutput expectedGeneOutput = expected.getGeneOutput(i);
+            final GeneOutput actualGeneOutput = actual.getGeneOutput(i);
+            assertEquals(expectedGeneOutput.getGeneName(), actualGeneOutput.getGeneName());
+            assertEquals(expectedGeneOutput.getGeneScore(), actualGeneOutput.getGeneScore(), 0);
+            assertEquals(expectedGeneOutput.getGeneRank(), actualGeneOutput.getGeneRank());
+            assertEquals(expectedGeneOutput.getPValue(), actualGeneOutput.getPValue(), 0);
+            assertEquals(expectedGeneOutput.getPValueRank(), actualGeneOutput.getPValueRank());
+            assertEquals(expectedGeneOutput.getHairpinRanks(), actualGeneOutput.getHairpinRanks());
+        }
+    }
+
+    /**
+     * Executes the inputs in the parallel mode, on a thread pool of its own
+     */
+    static RigerOutputs executeOnThreads(RigerInputs rigerInputs, int numThreads, boolean splitGeneSetSizes) {
+        final ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            return new RigerImpl(executorService, null, splitGeneSetSizes).execute(rigerInputs);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    RigerTestInputs setHairpinSetScoringMethod(HairpinSetScoringMethod hairpinSetScoringMethod) {
+        this.hairpinSetScoringMethod = hairpinSetScoringMethod;
+        return this;
+    }
+
+    RigerTestInputs setFlattenWeights(boolean flattenWeights) {
+        this.flattenWeights = flattenWeights;
+        return this;
+    }
+
+    RigerTestInputs setNumRandomScoresPerGeneSetSize(int numRandomScoresPerGeneSetSize) {
+        this.numRandomScoresPerGeneSetSize = numRandomScoresPerGeneSetSize;
+        return this;
+    }
+
+    RigerTestInputs setAlpha(double alpha) {
+        this.alpha = alpha;
+        return this;
+    }
+
+    RigerTestInputs setRandomSeed(long randomSeed) {
+        this.randomSeed = randomSeed;
+        return this;
+    }
+
+    RigerTestInputs setAdjustForHairpinSetSize(boolean adjustForHairpinSetSize) {
+        this.adjustForHairpinSetSize = adjustForHairpinSetSize;
+        return this;
+    }
+
+    RigerTestInputs setRandomNumberGeneratorType(RandomNumberGeneratorType randomNumberGeneratorType) {
+        this.randomNumberGeneratorType = randomNumberGeneratorType;
+        return this;
+    }
+
+    RigerTestInputs setHairpinSetSamplingMethod(HairpinSetSamplingMethod hairpinSetSamplingMethod) {
+        this.hairpinSetSamplingMethod = hairpinSetSamplingMethod;
+        return this;
+    }
+
+    RigerTestInputs setNullDistributionMethod(NullDistributionMethod nullDistributionMethod) {
+        this.nullDistributionMethod = nullDistributionMethod;
+        return this;
+    }
+
+    RigerTestInputs setAdaptiveRelativePrecision(double adaptiveRelativePrecision) {
+        this.adaptiveRelativePrecision = adaptiveRelativePrecision;
+        return this;
+    }
+
+    RigerTestInputs setMaxNumRandomScoresPerGeneSetSize(int maxNumRandomScoresPerGeneSetSize) {
+        this.maxNumRandomScoresPerGeneSetSize = maxNumRandomScoresPerGeneSetSize;
+        return this;
+    }
+
+    RigerTestInputs setNumPermutations(int numPermutations) {
+        this.numPermutations = numPermutations;
+        return this;
+    }
+
+    public int getNumHairpins() {
+        return hairpinInputs.size();
+    }
+
+    public HairpinInput getHairpinInput(int i) {
+        return hairpinInputs.get(i);
+    }
+
+    public HairpinSetScoringMethod getHairpinSetScoringMethod() {
+        return hairpinSetScoringMethod;
+    }
+
+    public boolean flattenWeights() {
+        return flattenWeights;
+    }
+
+    public int getNumRandomScoresPerGeneSetSize() {
+        return numRandomScoresPerGeneSetSize;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
+    public boolean adjustForHairpinSetSize() {
+        return adjustForHairpinSetSize;
+    }
+
+    public RandomNumberGeneratorType getRandomNumberGeneratorType() {
+        return randomNumberGeneratorType;
+    }
+
+    public HairpinSetSamplingMethod getHairpinSetSamplingMethod() {
+        return hairpinSetSamplingMethod;
+    }
+
+    public NullDistributionMethod getNullDistributionMethod() {
+        return nullDistributionMethod;
+    }
+
+    public double getAdaptiveRelativePrecision() {
+        return adaptiveRelativePrecision;
+    }
+
+    public int getMaxNumRandomScoresPerGeneSetSize() {
+        return maxNumRandomScoresPerGeneSetSize;
+    }
+
+    public int getNumPermutations() {
+        return numPermutations;
+    }
+}
@@ -0,0 +1,62 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.broadinstitute.gpp.rigerj.api.HairpinSetScoringMethod;
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class SampledNullDistributionTest {
+
+    @Test
+    public void testPValuesMatchBinarySearchWithTies() {
+        final Random random = new Random(17);
+        for (HairpinSetScoringMethod method : HairpinSetScoringMethod.values()) {
+            final HairpinSetScoringAlgorithm algorithm = new HairpinSetScoringAlgorithmFactory().createHairpinSetScoringAlgorithm(method);
+            for (int numDistinctScores : new int[] { 1, 3, 50, 100000 }) {
+                final double[] sortedRandomScores = new double[2000];
+                for (int i = 0; i < sortedRandomScores.length; i++) {
+                    sortedRandomScores[i] = random.nextInt(numDistinctScores) * 0.5;
+                }
+                Arrays.sort(sortedRandomScores);
+                final double[] geneScores = new double[300];
+                for (int i = 0; i < geneScores.length; i++) {
+                    geneScores[i] = random.nextInt(numDistinctScores + 2) * 0.5 - 0.25 * random.nextInt(2) - 0.5;
+                }
+
+                final SampledNullDistribution nullDistribution = new SampledNullDistribution(sortedRandomScores, algorithm);
+                final double[] pValues = nullDistribution.computePValues(geneScores);
+                for (int i = 0; i < geneScores.length; i++) {
+                    final double expectedPValue = computePValueByBinarySearch(sortedRandomScores, algorithm, geneScores[i]);
+                    assertEquals(expectedPValue, pValues[i], 0);
+                    assertEquals(expectedPValue, nullDistribution.computePValue(geneScores[i]), 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * The binary search and scan over ties that used to compute the p-values one gene at a time
+     */
+    private static double computePValueByBinarySearch(double[] sortedRandomScores, HairpinSetScoringAlgorithm algorithm, double geneScore) {
+        int randomScoresInsertionPoint = Arrays.binarySearch(sortedRandomScores, geneScore);
+        if (randomScoresInsertionPoint >= 0) {
+            while (randomScoresInsertionPoint + 1 < sortedRandomScores.length &&
+                sortedRandomScores[randomScoresInsertionPoint + 1] == geneScore) {
+                randomScoresInsertionPoint++;
+            }
+        }
+        else {
+            randomScoresInsertionPoint = -1 * randomScoresInsertionPoint - 1;
+        }
+        final int numberBetterRandomScores = algorithm.lowScoresRankFirst() ?
+                                             randomScoresInsertionPoint + 1 :
+                                             sortedRandomScores.length - randomScoresInsertionPoint - 1;
+        return (double) numberBetterRandomScores / sortedRandomScores.length;
+    }
+}
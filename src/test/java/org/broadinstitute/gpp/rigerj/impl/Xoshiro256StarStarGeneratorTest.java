@@ -0,0 +1,36 @@
+package org.broadinstitute.gpp.rigerj.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author <a href="http://www.broadinstitute.org/genetic-perturbation-platform">Broad Institute, Genetic Perturbation Platform</a>
+ */
+public class Xoshiro256StarStarGeneratorTest {
+
+    /**
+     * The first outputs of the reference C implementation, starting from the state {1, 2, 3, 4}
+     */
+    @Test
+    public void testMatchesReferenceImplementation() {
+        final Xoshiro256StarStarGenerator generator = new Xoshiro256StarStarGenerator(1, 2, 3, 4);
+        assertEquals(11520L, generator.nextLong());
+        assertEquals(0L, generator.nextLong());
+        assertEquals(1509978240L, generator.nextLong());
+        assertEquals(1215971899390074240L, generator.nextLong());
+    }
+
+    @Test
+    public void testNextIntIsWithinBoundAndCoversRange() {
+        final Xoshiro256StarStarGenerator generator = new Xoshiro256StarStarGenerator(1003);
+        final int[] counts = new int[7];
+        for (int i = 0; i < 70000; i++) {
+            counts[generator.nextInt(7)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 9000 && count < 11000);
+        }
+    }
+}